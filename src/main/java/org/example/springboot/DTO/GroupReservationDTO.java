@@ -0,0 +1,37 @@
+package org.example.springboot.DTO;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Data
+@Schema(description = "团体预订DTO")
+public class GroupReservationDTO {
+    @Schema(description = "分配模式(ALL_OR_NOTHING:全部成功或全部失败,BEST_EFFORT:尽量分配并返回报告)")
+    private String mode;
+    @Schema(description = "入住日期")
+    private LocalDate startDate;
+    @Schema(description = "退房日期")
+    private LocalDate endDate;
+    @Schema(description = "联系人姓名")
+    private String guestName;
+    @Schema(description = "联系人电话")
+    private String guestPhone;
+    @Schema(description = "备注信息")
+    private String notes;
+    @Schema(description = "各房型的预订数量")
+    private List<Item> items;
+
+    @Data
+    @Schema(description = "团体预订房型明细")
+    public static class Item {
+        @Schema(description = "房间类型ID")
+        private Long roomTypeId;
+        @Schema(description = "房间数量")
+        private Integer count;
+        @Schema(description = "每间入住人数")
+        private Integer guestCount;
+    }
+}
@@ -0,0 +1,53 @@
+package org.example.springboot.DTO;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+@Data
+@Schema(description = "订单列表项DTO，只包含 fields 参数请求的字段")
+public class OrderSummaryDTO {
+    @Schema(description = "订单ID")
+    private Long id;
+    @Schema(description = "订单编号")
+    private String orderNo;
+    @Schema(description = "用户ID")
+    private Long userId;
+    @Schema(description = "用户名")
+    private String username;
+    @Schema(description = "预订ID")
+    private Long reservationId;
+    @Schema(description = "订单金额")
+    private BigDecimal amount;
+    @Schema(description = "订单状态(0-未支付，1-已支付，2-已取消，3-已退款)")
+    private Integer status;
+    @Schema(description = "支付时间")
+    private LocalDateTime payTime;
+    @Schema(description = "支付方式")
+    private String payMethod;
+    @Schema(description = "房间号")
+    private String roomNumber;
+    @Schema(description = "房型名称")
+    private String roomTypeName;
+    @Schema(description = "入住日期")
+    private LocalDate startDate;
+    @Schema(description = "退房日期")
+    private LocalDate endDate;
+    @Schema(description = "创建时间")
+    private LocalDateTime createTime;
+
+    @Schema(description = "订单状态名称，请求 status 时返回")
+    public String getStatusName() {
+        if (status == null) return "";
+        switch (status) {
+            case 0: return "未支付";
+            case 1: return "已支付";
+            case 2: return "已取消";
+            case 3: return "已退款";
+            default: return "未知";
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package org.example.springboot.DTO;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+@Data
+@Schema(description = "预订列表项DTO，只包含 fields 参数请求的字段")
+public class ReservationSummaryDTO {
+    @Schema(description = "预订ID")
+    private Long id;
+    @Schema(description = "用户ID")
+    private Long userId;
+    @Schema(description = "用户名")
+    private String username;
+    @Schema(description = "房间ID")
+    private Long roomId;
+    @Schema(description = "房间号")
+    private String roomNumber;
+    @Schema(description = "房型名称")
+    private String roomTypeName;
+    @Schema(description = "入住日期")
+    private LocalDate startDate;
+    @Schema(description = "退房日期")
+    private LocalDate endDate;
+    @Schema(description = "入住人姓名")
+    private String guestName;
+    @Schema(description = "入住人电话")
+    private String guestPhone;
+    @Schema(description = "入住人数")
+    private Integer guestCount;
+    @Schema(description = "预订总价")
+    private BigDecimal price;
+    @Schema(description = "预订状态(0:待确认,1:已确认,2:已取消,3:已完成)")
+    private Integer status;
+    @Schema(description = "支付状态(0:未支付,1:已支付,2:已退款)")
+    private Integer payStatus;
+    @Schema(description = "创建时间")
+    private LocalDateTime createTime;
+
+    @Schema(description = "预订状态名称，请求 status 时返回")
+    public String getStatusName() {
+        if (status == null) return "";
+        switch (status) {
+            case 0: return "待确认";
+            case 1: return "已确认";
+            case 2: return "已取消";
+            case 3: return "已完成";
+            default: return "未知状态";
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package org.example.springboot.DTO;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+@Data
+@Schema(description = "经营趋势DTO，一个统计周期（及房型）一行，由每日汇总表计算")
+public class RevenueTrendDTO {
+    @Schema(description = "统计周期，按天为 yyyy-MM-dd，按月为 yyyy-MM")
+    private String period;
+    @Schema(description = "房型ID，按房型分组时返回")
+    private Long roomTypeId;
+    @Schema(description = "售出房晚数")
+    private Integer nightsSold;
+    @Schema(description = "房费收入")
+    private BigDecimal revenue;
+    @Schema(description = "已取消预订的房晚数")
+    private Integer cancelledNights;
+    @Schema(description = "有退款订单的房晚数")
+    private Integer refundedNights;
+    @Schema(description = "退款金额")
+    private BigDecimal refundAmount;
+    @Schema(description = "平均房价（收入/售出房晚），没有售出时为空")
+    private BigDecimal averageRate;
+    @Schema(description = "入住率（售出房晚/可售房晚），按当前房间数计算，没有房间时为空")
+    private BigDecimal occupancyRate;
+}
@@ -0,0 +1,25 @@
+package org.example.springboot.config;
+
+import org.example.springboot.service.CatalogVersionService;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 标注目录数据的GET接口，由 ConditionalGetInterceptor 和 ConditionalGetResponseAdvice 根据所列表的版本设置 ETag 和 Last-Modified，
+ * 客户端携带的 If-None-Match 或 If-Modified-Since 仍然有效时直接返回 304。
+ * 只能用于响应内容完全由所列表决定、且与当前用户无关的接口。
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ConditionalGet {
+
+    /**
+     * 响应内容依赖的表，任意一张表变化都会生成新的 ETag
+     */
+    CatalogVersionService.Table[] value();
+}
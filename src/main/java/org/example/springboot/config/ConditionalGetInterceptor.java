@@ -0,0 +1,66 @@
+package org.example.springboot.config;
+
+import jakarta.annotation.Resource;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.example.springboot.service.CatalogVersionService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+/**
+ * 条件GET拦截器
+ * 在执行接口之前计算 @ConditionalGet 所列表的当前版本：校验值未变化时返回 304 且不执行接口，
+ * 否则写入 Cache-Control: no-cache 并执行接口，由 ConditionalGetResponseAdvice 按实际返回内容的版本
+ * 写入 ETag 和 Last-Modified，客户端下次请求时重新校验。
+ * 版本先于响应内容计算，期间提交的修改只会让客户端下次多取一次完整内容；
+ * 修改目录表的写操作都必须先清除对应缓存、再调用 CatalogVersionService.touch 推进版本，
+ * 否则旧内容会带上新版本的校验值，或修改后仍返回 304。
+ */
+@Component
+public class ConditionalGetInterceptor implements HandlerInterceptor {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConditionalGetInterceptor.class);
+
+    // 执行接口前计算的当前版本
+    static final String VERSION_ATTRIBUTE = ConditionalGetInterceptor.class.getName() + ".version";
+
+    @Resource
+    private CatalogVersionService catalogVersionService;
+
+    @Value("${hotel.conditional-get.enabled:true}")
+    private boolean enabled;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!enabled || !"GET".equals(request.getMethod()) || !(handler instanceof HandlerMethod)) {
+            return true;
+        }
+        ConditionalGet conditionalGet = ((HandlerMethod) handler).getMethodAnnotation(ConditionalGet.class);
+        if (conditionalGet == null) {
+            return true;
+        }
+
+        CatalogVersionService.Version version;
+        try {
+            version = catalogVersionService.getVersion(conditionalGet.value());
+        } catch (RuntimeException e) {
+            // 校验值只是优化，查询失败时照常返回完整内容
+            LOGGER.warn("计算目录版本失败，跳过条件GET: {}", request.getRequestURI(), e);
+            return true;
+        }
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.noCache().getHeaderValue());
+        // 只做判断，不写响应头：返回完整内容时的校验值要等内容生成后才能确定
+        if (new ServletWebRequest(request).checkNotModified(version.getEtag(), version.getLastModified())) {
+            new ServletWebRequest(request, response).checkNotModified(version.getEtag(), version.getLastModified());
+            return false;
+        }
+        request.setAttribute(VERSION_ATTRIBUTE, version);
+        return true;
+    }
+}
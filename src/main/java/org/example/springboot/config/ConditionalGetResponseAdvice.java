@@ -0,0 +1,59 @@
+package org.example.springboot.config;
+
+import jakarta.annotation.Resource;
+import jakarta.servlet.http.HttpServletRequest;
+import org.example.springboot.service.CatalogVersionService;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+/**
+ * 为 @ConditionalGet 接口的完整响应写入 ETag 和 Last-Modified
+ * 内容来自一级缓存时按缓存条目加载时的目录版本计算 ETag：其他节点的修改已推进版本、
+ * 但本节点还没收到失效通知时返回的旧内容带的是旧 ETag，客户端下次请求会重新获取。
+ * 此时 Last-Modified（当前最大更新时间）比内容新，不再写入。
+ */
+@ControllerAdvice
+public class ConditionalGetResponseAdvice implements ResponseBodyAdvice<Object> {
+
+    @Resource
+    private CatalogVersionService catalogVersionService;
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return returnType.hasMethodAnnotation(ConditionalGet.class);
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        if (!(request instanceof ServletServerHttpRequest)) {
+            return body;
+        }
+        HttpServletRequest servletRequest = ((ServletServerHttpRequest) request).getServletRequest();
+        Object attribute = servletRequest.getAttribute(ConditionalGetInterceptor.VERSION_ATTRIBUTE);
+        if (!(attribute instanceof CatalogVersionService.Version)) {
+            return body;
+        }
+        CatalogVersionService.Version version = (CatalogVersionService.Version) attribute;
+
+        CatalogVersionService.Stamp served = catalogVersionService.getServedStamp(servletRequest);
+        String etag = served == null
+            ? version.getEtag()
+            : catalogVersionService.getEtag(served, returnType.getMethodAnnotation(ConditionalGet.class).value());
+        if (etag == null) {
+            return body;
+        }
+        response.getHeaders().setETag(etag);
+        if (etag.equals(version.getEtag()) && version.getLastModified() >= 0) {
+            response.getHeaders().setLastModified(version.getLastModified());
+        }
+        return body;
+    }
+}
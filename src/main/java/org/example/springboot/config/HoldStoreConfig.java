@@ -0,0 +1,30 @@
+package org.example.springboot.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.springboot.service.HoldStore;
+import org.example.springboot.service.InMemoryHoldStore;
+import org.example.springboot.service.RedisHoldStore;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+/**
+ * 预订保留存储配置
+ * hotel.hold.store=redis（默认）用于多实例部署，hotel.hold.store=memory 用于单机或本地开发
+ */
+@Configuration
+public class HoldStoreConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "hotel.hold.store", havingValue = "redis", matchIfMissing = true)
+    public HoldStore redisHoldStore(StringRedisTemplate stringRedisTemplate, ObjectMapper objectMapper) {
+        return new RedisHoldStore(stringRedisTemplate, objectMapper);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "hotel.hold.store", havingValue = "memory")
+    public HoldStore inMemoryHoldStore() {
+        return new InMemoryHoldStore();
+    }
+}
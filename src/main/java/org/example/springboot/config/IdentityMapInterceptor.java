@@ -0,0 +1,85 @@
+package org.example.springboot.config;
+
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.example.springboot.mapper.ReservationMapper;
+import org.example.springboot.mapper.RoomMapper;
+import org.example.springboot.mapper.RoomTypeMapper;
+import org.example.springboot.mapper.UserMapper;
+import org.example.springboot.util.RequestIdentityMap;
+import org.example.springboot.util.TransactionUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 请求级身份映射拦截器
+ * 缓存用户、房间、房型和预订 Mapper 的 selectById 结果，同一请求内重复按ID查询时不再访问数据库；
+ * 这些 Mapper 执行任何写入后清空对应缓存，写入所在事务结束后再清空一次，避免回滚后留下未提交的数据
+ */
+@Component
+@Intercepts({
+    @Signature(type = Executor.class, method = "query",
+        args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class}),
+    @Signature(type = Executor.class, method = "update",
+        args = {MappedStatement.class, Object.class})
+})
+public class IdentityMapInterceptor implements Interceptor {
+
+    private static final String SELECT_BY_ID = ".selectById";
+
+    private static final Set<String> CACHED_NAMESPACES = Set.of(
+        UserMapper.class.getName(),
+        RoomMapper.class.getName(),
+        RoomTypeMapper.class.getName(),
+        ReservationMapper.class.getName()
+    );
+
+    @Value("${hotel.identity-map.enabled:true}")
+    private boolean enabled;
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Object intercept(Invocation invocation) throws Throwable {
+        Object[] args = invocation.getArgs();
+        MappedStatement ms = (MappedStatement) args[0];
+        String statementId = ms.getId();
+        String namespace = statementId.substring(0, statementId.lastIndexOf('.'));
+        if (!enabled || !CACHED_NAMESPACES.contains(namespace)) {
+            return invocation.proceed();
+        }
+
+        if ("update".equals(invocation.getMethod().getName())) {
+            RequestIdentityMap identityMap = RequestIdentityMap.current(false);
+            if (identityMap != null) {
+                identityMap.invalidate(namespace);
+                TransactionUtils.afterCompletion(() -> identityMap.invalidate(namespace));
+            }
+            return invocation.proceed();
+        }
+
+        Object id = args[1];
+        if (!statementId.endsWith(SELECT_BY_ID) || id == null || args[3] != null) {
+            return invocation.proceed();
+        }
+        RequestIdentityMap identityMap = RequestIdentityMap.current(true);
+        if (identityMap == null) {
+            return invocation.proceed();
+        }
+        List<Object> cached = identityMap.get(namespace, id);
+        if (cached != null) {
+            return cached;
+        }
+        List<Object> result = (List<Object>) invocation.proceed();
+        identityMap.put(namespace, id, result);
+        return result;
+    }
+}
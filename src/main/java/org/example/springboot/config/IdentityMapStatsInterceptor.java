@@ -0,0 +1,26 @@
+package org.example.springboot.config;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.example.springboot.util.RequestIdentityMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+/**
+ * 请求结束时输出本次请求身份映射的命中和未命中次数，命中次数即节省的按ID查询次数
+ */
+@Component
+public class IdentityMapStatsInterceptor implements HandlerInterceptor {
+    private static final Logger LOGGER = LoggerFactory.getLogger(IdentityMapStatsInterceptor.class);
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        RequestIdentityMap identityMap = RequestIdentityMap.current(false);
+        if (identityMap != null) {
+            LOGGER.debug("{} {} 按ID查询缓存命中 {} 次，未命中 {} 次",
+                request.getMethod(), request.getRequestURI(), identityMap.getHits(), identityMap.getMisses());
+        }
+    }
+}
@@ -15,6 +15,7 @@ import jakarta.servlet.http.HttpServletResponse;
 import org.example.springboot.entity.User;
 import org.example.springboot.service.UserCacheService;
 import org.example.springboot.service.UserService;
+import org.example.springboot.util.JwtTokenUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
@@ -57,7 +58,7 @@ public class JwtInterceptor implements HandlerInterceptor {
                 return false;
             }
 
-            user = userService.getUserById(userId);
+            user = userService.getCachedUser(userId);
         } catch (Exception e) {
             String errMsg = "token失效，重新登录！";
             LOGGER.error(errMsg + " ,token=" + token, e);
@@ -78,6 +79,7 @@ public class JwtInterceptor implements HandlerInterceptor {
             response.getWriter().print("token认证失败，重新登录！");
             return false;
         }
+        JwtTokenUtils.setCurrentUser(request, user);
         LOGGER.info("验证成功，允许放行。{}",user);
         return HandlerInterceptor.super.preHandle(request, response, handler);
     }
@@ -0,0 +1,29 @@
+package org.example.springboot.config;
+
+import org.example.springboot.service.InMemoryLockStore;
+import org.example.springboot.service.LockStore;
+import org.example.springboot.service.RedisLockStore;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+/**
+ * 分布式锁存储配置
+ * hotel.lock.store=redis（默认）用于多实例部署，hotel.lock.store=memory 用于单机或本地开发
+ */
+@Configuration
+public class LockStoreConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "hotel.lock.store", havingValue = "redis", matchIfMissing = true)
+    public LockStore redisLockStore(StringRedisTemplate stringRedisTemplate) {
+        return new RedisLockStore(stringRedisTemplate);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "hotel.lock.store", havingValue = "memory")
+    public LockStore inMemoryLockStore() {
+        return new InMemoryLockStore();
+    }
+}
@@ -1,10 +1,14 @@
 package org.example.springboot.config;
 
+import org.example.springboot.util.CompactRedisCodec;
+import org.example.springboot.util.JsonRedisCodec;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
 /**
@@ -46,4 +50,38 @@ public class RedisConfig {
         template.afterPropertiesSet();
         return template;
     }
+
+    /**
+     * 配置存取字节数组的RedisTemplate
+     * 对象类型的缓存由 RedisService 用编解码器编码成带版本头的字节数组后写入
+     */
+    @Bean
+    public RedisTemplate<String, byte[]> binaryRedisTemplate(RedisConnectionFactory connectionFactory) {
+        RedisTemplate<String, byte[]> template = new RedisTemplate<>();
+        template.setConnectionFactory(connectionFactory);
+        template.setKeySerializer(new StringRedisSerializer());
+        template.setValueSerializer(RedisSerializer.byteArray());
+        template.afterPropertiesSet();
+        return template;
+    }
+
+    /**
+     * 配置Redis消息监听容器，用于接收缓存失效通知
+     */
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory connectionFactory) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        return container;
+    }
+
+    @Bean
+    public JsonRedisCodec jsonRedisCodec() {
+        return new JsonRedisCodec();
+    }
+
+    @Bean
+    public CompactRedisCodec compactRedisCodec(JsonRedisCodec jsonRedisCodec) {
+        return new CompactRedisCodec(jsonRedisCodec);
+    }
 }
@@ -42,6 +42,12 @@ public class WebConfig implements WebMvcConfigurer {
     @Resource
     private JwtInterceptor jwtInterceptor;
 
+    @Resource
+    private IdentityMapStatsInterceptor identityMapStatsInterceptor;
+
+    @Resource
+    private ConditionalGetInterceptor conditionalGetInterceptor;
+
 
 
     /**
@@ -71,5 +77,13 @@ public class WebConfig implements WebMvcConfigurer {
                 .addPathPatterns(API_PREFIX + "/**")    // 拦截所有API请求
                 .excludePathPatterns("/api/**")
                 .excludePathPatterns(PUBLIC_PATHS);     // 排除公开接口
+
+        // 统计每个请求的按ID查询缓存命中情况
+        registry.addInterceptor(identityMapStatsInterceptor)
+                .addPathPatterns("/**");
+
+        // 目录数据的条件GET，放在JWT拦截器之后，未通过验证的请求不会得到304
+        registry.addInterceptor(conditionalGetInterceptor)
+                .addPathPatterns(API_PREFIX + "/**");
     }
 }
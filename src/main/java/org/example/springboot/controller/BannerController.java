@@ -4,8 +4,10 @@ import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.annotation.Resource;
 import org.example.springboot.common.Result;
+import org.example.springboot.config.ConditionalGet;
 import org.example.springboot.entity.Banner;
 import org.example.springboot.service.BannerService;
+import org.example.springboot.service.CatalogVersionService.Table;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.web.bind.annotation.*;
@@ -26,6 +28,7 @@ public class BannerController {
     private BannerService bannerService;
     
     @Operation(summary = "分页查询轮播图")
+    @ConditionalGet(Table.BANNER)
     @GetMapping("/page")
     public Result<?> getBannersByPage(
             @RequestParam(required = false) String title,
@@ -38,6 +41,7 @@ public class BannerController {
     }
     
     @Operation(summary = "获取启用的轮播图")
+    @ConditionalGet(Table.BANNER)
     @GetMapping("/enabled")
     public Result<?> getEnabledBanners() {
         LOGGER.info("获取启用的轮播图");
@@ -56,6 +60,7 @@ public class BannerController {
     }
     
     @Operation(summary = "获取轮播图详情")
+    @ConditionalGet(Table.BANNER)
     @GetMapping("/{id}")
     public Result<?> getBannerById(@PathVariable Long id) {
         LOGGER.info("获取轮播图详情: id={}", id);
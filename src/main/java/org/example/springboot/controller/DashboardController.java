@@ -3,17 +3,25 @@ package org.example.springboot.controller;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.annotation.Resource;
+import jakarta.servlet.http.HttpServletResponse;
+import org.example.springboot.DTO.RevenueTrendDTO;
 import org.example.springboot.common.Result;
 import org.example.springboot.entity.User;
-import org.example.springboot.mapper.UserMapper;
-import org.example.springboot.service.*;
+import org.example.springboot.service.DashboardService;
+import org.example.springboot.service.DashboardStreamService;
+import org.example.springboot.service.StatsRollupService;
 import org.example.springboot.util.JwtTokenUtils;
-import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import java.util.HashMap;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.List;
 import java.util.Map;
 
 @Tag(name = "后台管理首页接口")
@@ -22,24 +30,15 @@ import java.util.Map;
 public class DashboardController {
     
     @Resource
-    private UserService userService;
+    private DashboardService dashboardService;
 
     @Resource
-    private UserMapper userMapper;
+    private StatsRollupService statsRollupService;
 
     @Resource
-    private RoomService roomService;
+    private DashboardStreamService dashboardStreamService;
     
-    @Resource
-    private ReservationService reservationService;
-    
-    @Resource
-    private OrderService orderService;
-    
-    @Resource
-    private ReviewService reviewService;
-    
-    @Operation(summary = "获取后台管理首页统计数据")
+    @Operation(summary = "获取后台管理首页统计数据（快照，snapshotTime 为计算时间）")
     @GetMapping("/stats")
     public Result<?> getDashboardStats() {
         // 只有管理员可以查看统计数据
@@ -48,60 +47,68 @@ public class DashboardController {
             return Result.error("无权查看统计数据");
         }
         
-        Map<String, Object> dashboardStats = new HashMap<>();
-        
         try {
-            // 用户统计
-            Map<String, Integer> userStats = getUserStats();
-            dashboardStats.put("userStats", userStats);
-            
-            // 房间统计
-            Map<String, Object> roomStats = roomService.getRoomUsageStatistics();
-            dashboardStats.put("roomStats", roomStats);
-            
-            // 预订统计
-            Map<String, Object> reservationStats = reservationService.getReservationStatistics();
-            dashboardStats.put("reservationStats", reservationStats);
-            
-            // 订单统计
-            Map<String, Object> orderStats = orderService.getOrderStatistics();
-            dashboardStats.put("orderStats", orderStats);
-            
-            // 评价统计
-            Map<String, Object> reviewStats = reviewService.getReviewStatistics();
-            dashboardStats.put("reviewStats", reviewStats);
-            
+            Map<String, Object> dashboardStats = dashboardService.getDashboardStats();
             return Result.success(dashboardStats);
         } catch (Exception e) {
             return Result.error("获取统计数据失败：" + e.getMessage());
         }
     }
-    
-    /**
-     * 获取用户统计数据
-     */
-    private Map<String, Integer> getUserStats() {
-        Map<String, Integer> stats = new HashMap<>();
 
-        // 获取总用户数
-        int totalUsers = Math.toIntExact(userMapper.selectCount(null));
+    @Operation(summary = "订阅首页统计推送（SSE，先发送 snapshot 事件，数据变更后发送 delta 事件；EventSource 可通过 token 参数认证）")
+    @GetMapping("/stream")
+    public SseEmitter streamDashboardStats(HttpServletResponse response) throws IOException {
+        User currentUser = JwtTokenUtils.getCurrentUser();
+        if (currentUser == null) {
+            response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+            response.getWriter().print("用户未登录");
+            return null;
+        }
+        if (!"ADMIN".equals(currentUser.getRoleCode())) {
+            response.setStatus(HttpServletResponse.SC_FORBIDDEN);
+            response.getWriter().print("无权查看统计数据");
+            return null;
+        }
+        return dashboardStreamService.subscribe();
+    }
 
-        // 获取普通用户数
-        int normalUsers = Math.toIntExact(userMapper.selectCount(
-                new LambdaQueryWrapper<User>()
-                        .eq(User::getRoleCode, "USER")
-        ));
+    @Operation(summary = "获取经营趋势（读取每日汇总，日期含两端；granularity 为 day 或 month；groupByRoomType 为 true 时按房型分别返回）")
+    @GetMapping("/trends")
+    public Result<?> getTrends(
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate startDate,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate endDate,
+            @RequestParam(defaultValue = "day") String granularity,
+            @RequestParam(required = false) Long roomTypeId,
+            @RequestParam(defaultValue = "false") boolean groupByRoomType) {
+        User currentUser = JwtTokenUtils.getCurrentUser();
+        if (!"ADMIN".equals(currentUser.getRoleCode())) {
+            return Result.error("无权查看统计数据");
+        }
 
-        // 获取管理员数
-        int adminUsers = Math.toIntExact(userMapper.selectCount(
-                new LambdaQueryWrapper<User>()
-                        .eq(User::getRoleCode, "ADMIN")
-        ));
+        try {
+            List<RevenueTrendDTO> trends = statsRollupService.getTrends(startDate, endDate, granularity,
+                    roomTypeId, groupByRoomType);
+            return Result.success(trends);
+        } catch (Exception e) {
+            return Result.error("获取经营趋势失败：" + e.getMessage());
+        }
+    }
 
-        stats.put("totalUsers", totalUsers);
-        stats.put("normalUsers", normalUsers);
-        stats.put("adminUsers", adminUsers);
+    @Operation(summary = "重算指定日期范围（含两端）的每日汇总")
+    @PostMapping("/trends/rebuild")
+    public Result<?> rebuildTrends(
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate startDate,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate endDate) {
+        User currentUser = JwtTokenUtils.getCurrentUser();
+        if (!"ADMIN".equals(currentUser.getRoleCode())) {
+            return Result.error("无权重算统计数据");
+        }
 
-        return stats;
+        try {
+            int rows = statsRollupService.rebuild(startDate, endDate);
+            return Result.success(rows);
+        } catch (Exception e) {
+            return Result.error("重算汇总失败：" + e.getMessage());
+        }
     }
-}
+}
\ No newline at end of file
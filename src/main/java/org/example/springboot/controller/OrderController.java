@@ -26,14 +26,15 @@ public class OrderController {
     @Resource
     private OrderService orderService;
     
-    @Operation(summary = "分页查询订单")
+    @Operation(summary = "分页查询订单（fields 指定返回的字段，如 id,status,roomNumber 或 summary；为空时返回完整的订单及关联信息）")
     @GetMapping("/page")
     public Result<?> getOrdersByPage(
             @RequestParam(required = false) String orderNo,
             @RequestParam(required = false) Long userId,
             @RequestParam(required = false) Integer status,
             @RequestParam(defaultValue = "1") Integer currentPage,
-            @RequestParam(defaultValue = "10") Integer size) {
+            @RequestParam(defaultValue = "10") Integer size,
+            @RequestParam(required = false) String fields) {
         
         // 非管理员只能查询自己的订单
         User currentUser = JwtTokenUtils.getCurrentUser();
@@ -41,6 +42,9 @@ public class OrderController {
             userId = currentUser.getId();
         }
         
+        if (fields != null && !fields.isBlank()) {
+            return Result.success(orderService.getOrderSummaryPage(orderNo, userId, status, currentPage, size, fields));
+        }
         Page<Order> page = orderService.getOrdersByPage(orderNo, userId, status, currentPage, size);
         return Result.success(page);
     }
@@ -4,12 +4,16 @@ import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.annotation.Resource;
+import org.example.springboot.DTO.GroupReservationDTO;
 import org.example.springboot.common.Result;
+import org.example.springboot.entity.BookingHold;
 import org.example.springboot.entity.Reservation;
 import org.example.springboot.entity.Room;
 import org.example.springboot.entity.User;
 import org.example.springboot.exception.ServiceException;
+import org.example.springboot.service.BookingHoldService;
 import org.example.springboot.service.ReservationService;
+import org.example.springboot.service.RoomLockService;
 import org.example.springboot.service.RoomService;
 import org.example.springboot.util.JwtTokenUtils;
 import org.slf4j.Logger;
@@ -33,7 +37,13 @@ public class ReservationController {
     @Resource
     private RoomService roomService;
     
-    @Operation(summary = "分页查询预订")
+    @Resource
+    private RoomLockService roomLockService;
+    
+    @Resource
+    private BookingHoldService bookingHoldService;
+    
+    @Operation(summary = "分页查询预订（fields 指定返回的字段，如 id,status,roomNumber 或 summary；为空时返回完整的预订及关联信息）")
     @GetMapping("/page")
     public Result<?> getReservationsByPage(
             @RequestParam(required = false) Long userId,
@@ -44,7 +54,8 @@ public class ReservationController {
             @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate startDate,
             @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate endDate,
             @RequestParam(defaultValue = "1") Integer currentPage,
-            @RequestParam(defaultValue = "10") Integer size) {
+            @RequestParam(defaultValue = "10") Integer size,
+            @RequestParam(required = false) String fields) {
         
         // 非管理员只能查询自己的预订
         User currentUser = JwtTokenUtils.getCurrentUser();
@@ -65,6 +76,10 @@ public class ReservationController {
             }
         }
         
+        if (fields != null && !fields.isBlank()) {
+            return Result.success(reservationService.getReservationSummaryPage(
+                userId, roomId, status, payStatus, startDate, endDate, currentPage, size, fields));
+        }
         Page<Reservation> page = reservationService.getReservationsByPage(
             userId, roomId, status, payStatus, startDate, endDate, currentPage, size);
         return Result.success(page);
@@ -109,12 +124,8 @@ public class ReservationController {
             reservation.setGuestPhone(guestPhone);
             reservation.setNotes(notes);
 
-            // 使用Service层的智能房间分配功能
-            Room allocatedRoom = roomService.allocateRoom(roomTypeId, startDate, endDate, guestCount);
-            reservation.setRoomId(allocatedRoom.getId());
-
-            // 创建预订（Service层会进行最终的可用性检查）
-            Reservation createdReservation = reservationService.createReservation(reservation);
+            // 分配房间并创建预订（Service层按优先级逐个尝试候选房间，被并发占用时自动换下一间）
+            Reservation createdReservation = reservationService.createReservationForRoomType(roomTypeId, reservation);
 
             return Result.success(createdReservation);
 
@@ -125,6 +136,72 @@ public class ReservationController {
         }
     }
     
+    @Operation(summary = "保留房间（结账期间临时占用库存，到期自动释放）")
+    @PostMapping("/hold")
+    public Result<?> createHold(@RequestBody Map<String, Object> params) {
+        try {
+            Long roomTypeId = params.containsKey("roomTypeId") ? Long.valueOf(params.get("roomTypeId").toString()) : null;
+            LocalDate startDate = params.containsKey("startDate") ? LocalDate.parse(params.get("startDate").toString()) : null;
+            LocalDate endDate = params.containsKey("endDate") ? LocalDate.parse(params.get("endDate").toString()) : null;
+            Integer guestCount = params.containsKey("guestCount") ? Integer.valueOf(params.get("guestCount").toString()) : null;
+
+            BookingHold hold = bookingHoldService.createHold(roomTypeId, startDate, endDate, guestCount);
+            return Result.success(hold);
+        } catch (ServiceException e) {
+            return Result.error(e.getMessage());
+        } catch (Exception e) {
+            return Result.error("保留房间失败：" + e.getMessage());
+        }
+    }
+    
+    @Operation(summary = "查询房间保留")
+    @GetMapping("/hold/{holdId}")
+    public Result<?> getHold(@PathVariable String holdId) {
+        BookingHold hold = bookingHoldService.getHold(holdId);
+        if (hold == null) {
+            return Result.error("保留不存在或已过期");
+        }
+        return Result.success(hold);
+    }
+    
+    @Operation(summary = "确认房间保留，转为正式预订和订单")
+    @PostMapping("/hold/{holdId}/confirm")
+    public Result<?> confirmHold(@PathVariable String holdId, @RequestBody Map<String, Object> params) {
+        try {
+            String guestName = params.containsKey("guestName") ? params.get("guestName").toString() : null;
+            String guestPhone = params.containsKey("guestPhone") ? params.get("guestPhone").toString() : null;
+            String notes = params.containsKey("notes") ? params.get("notes").toString() : null;
+
+            Reservation reservation = reservationService.confirmHold(holdId, guestName, guestPhone, notes);
+            return Result.success(reservation);
+        } catch (ServiceException e) {
+            return Result.error(e.getMessage());
+        } catch (Exception e) {
+            return Result.error("确认保留失败：" + e.getMessage());
+        }
+    }
+    
+    @Operation(summary = "放弃房间保留")
+    @DeleteMapping("/hold/{holdId}")
+    public Result<?> releaseHold(@PathVariable String holdId) {
+        bookingHoldService.releaseHold(holdId);
+        return Result.success("已释放保留");
+    }
+    
+    @Operation(summary = "团体预订（一次预订多个房型的多间房）")
+    @PostMapping("/group")
+    public Result<?> createGroupReservation(@RequestBody GroupReservationDTO request) {
+        try {
+            Map<String, Object> result = reservationService.createGroupReservation(request);
+            return Result.success(result);
+        } catch (ServiceException e) {
+            return Result.error(e.getMessage());
+        } catch (Exception e) {
+            LOGGER.error("团体预订失败", e);
+            return Result.error("团体预订失败：" + e.getMessage());
+        }
+    }
+    
     @Operation(summary = "更新预订")
     @PutMapping("/{id}")
     public Result<?> updateReservation(@PathVariable Long id, @RequestBody Reservation reservation) {
@@ -221,4 +298,16 @@ public class ReservationController {
         Map<String, Object> statistics = reservationService.getReservationStatistics();
         return Result.success(statistics);
     }
+
+    @Operation(summary = "获取房间锁统计")
+    @GetMapping("/lock-stats")
+    public Result<?> getLockStats() {
+        // 只有管理员可以查看统计数据
+        User currentUser = JwtTokenUtils.getCurrentUser();
+        if (!"ADMIN".equals(currentUser.getRoleCode())) {
+            return Result.error("无权查看统计数据");
+        }
+
+        return Result.success(roomLockService.getStatistics());
+    }
 }
\ No newline at end of file
@@ -33,7 +33,8 @@ public class ReviewController {
             @RequestParam(required = false) Long reservationId,
             @RequestParam(required = false) Integer status,
             @RequestParam(defaultValue = "1") Integer currentPage,
-            @RequestParam(defaultValue = "10") Integer size) {
+            @RequestParam(defaultValue = "10") Integer size,
+            @RequestParam(required = false) String include) {
         
         // 非管理员只能查询公开的评价或自己的评价
         User currentUser = JwtTokenUtils.getCurrentUser();
@@ -46,7 +47,8 @@ public class ReviewController {
             }
         }
         
-        Page<Review> page = reviewService.getReviewsByPage(userId, roomTypeId, reservationId, status, currentPage, size);
+        Page<Review> page = reviewService.getReviewsByPage(userId, roomTypeId, reservationId, status, currentPage, size,
+                reviewService.parseIncludes(include));
         return Result.success(page);
     }
     
@@ -181,9 +183,18 @@ public class ReviewController {
         return Result.success(reviews);
     }
     
-    @Operation(summary = "获取房型的评价列表")
+    @Operation(summary = "获取房型的评价列表（传入 currentPage 时分页返回，include 指定回填的关联，如 user,roomType）")
     @GetMapping("/roomType/{roomTypeId}")
-    public Result<?> getRoomTypeReviews(@PathVariable Long roomTypeId) {
+    public Result<?> getRoomTypeReviews(
+            @PathVariable Long roomTypeId,
+            @RequestParam(required = false) Integer currentPage,
+            @RequestParam(defaultValue = "10") Integer size,
+            @RequestParam(required = false) String include) {
+        if (currentPage != null) {
+            Page<Review> page = reviewService.getRoomTypeReviewsPage(roomTypeId, currentPage, size,
+                    reviewService.parseIncludes(include));
+            return Result.success(page);
+        }
         List<Review> reviews = reviewService.getRoomTypeReviews(roomTypeId);
         return Result.success(reviews);
     }
@@ -194,6 +205,12 @@ public class ReviewController {
         double score = reviewService.calculateRoomTypeAverageScore(roomTypeId);
         return Result.success(score);
     }
+    
+    @Operation(summary = "批量获取房型的评分汇总（评价数、平均分和各星级数量），用于房型列表")
+    @GetMapping("/scores")
+    public Result<?> getRoomTypeRatings(@RequestParam List<Long> roomTypeIds) {
+        return Result.success(reviewService.getRoomTypeRatings(roomTypeIds));
+    }
 
     @Operation(summary = "获取评价统计")
     @GetMapping("/stats")
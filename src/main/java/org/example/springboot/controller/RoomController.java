@@ -5,8 +5,11 @@ import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.annotation.Resource;
 import org.example.springboot.common.Result;
+import org.example.springboot.config.ConditionalGet;
 import org.example.springboot.entity.Room;
 import org.example.springboot.entity.User;
+import org.example.springboot.service.CatalogVersionService.Table;
+import org.example.springboot.service.RoomAllocationSimulator;
 import org.example.springboot.service.RoomService;
 
 import org.example.springboot.util.JwtTokenUtils;
@@ -16,6 +19,7 @@ import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.LocalDate;
+import java.time.YearMonth;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -29,7 +33,11 @@ public class RoomController {
     @Resource
     private RoomService roomService;
     
+    @Resource
+    private RoomAllocationSimulator roomAllocationSimulator;
+    
     @Operation(summary = "分页查询房间")
+    @ConditionalGet({Table.ROOM, Table.ROOM_TYPE})
     @GetMapping("/page")
     public Result<?> getRoomsByPage(
             @RequestParam(required = false) String roomNumber,
@@ -61,14 +69,14 @@ public class RoomController {
             @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate startDate,
             @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate endDate) {
         try {
-            List<Room> availableRooms = roomService.getAvailableRooms(roomTypeId, startDate, endDate);
+            int availableCount = roomService.countAvailableRooms(roomTypeId, startDate, endDate);
 
             Map<String, Object> result = new HashMap<>();
-            result.put("available", !availableRooms.isEmpty());
-            result.put("availableCount", availableRooms.size());
-            result.put("message", availableRooms.isEmpty() ?
+            result.put("available", availableCount > 0);
+            result.put("availableCount", availableCount);
+            result.put("message", availableCount == 0 ?
                 "该时间段内所选房型暂无可用房间" :
-                "该时间段内有 " + availableRooms.size() + " 间可用房间");
+                "该时间段内有 " + availableCount + " 间可用房间");
 
             return Result.success(result);
         } catch (Exception e) {
@@ -76,7 +84,27 @@ public class RoomController {
         }
     }
     
+    @Operation(summary = "按日期和入住人数搜索所有房型的可用情况（仅供展示）")
+    @GetMapping("/search")
+    public Result<?> searchAvailability(
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate startDate,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate endDate,
+            @RequestParam(required = false) Integer guestCount) {
+        List<Map<String, Object>> results = roomService.searchAvailability(startDate, endDate, guestCount);
+        return Result.success(results);
+    }
+    
+    @Operation(summary = "获取房型月历可用房间数（仅供展示）")
+    @GetMapping("/calendar/{roomTypeId}")
+    public Result<?> getAvailabilityCalendar(
+            @PathVariable Long roomTypeId,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM") YearMonth month) {
+        Map<String, Object> calendar = roomService.getAvailabilityCalendar(roomTypeId, month);
+        return Result.success(calendar);
+    }
+    
     @Operation(summary = "根据id获取房间")
+    @ConditionalGet({Table.ROOM, Table.ROOM_TYPE})
     @GetMapping("/{id}")
     public Result<?> getRoomById(@PathVariable Long id) {
         Room room = roomService.getRoomById(id);
@@ -136,4 +164,20 @@ public class RoomController {
         Map<String, Object> statistics = roomService.getRoomUsageStatistics();
         return Result.success(statistics);
     }
+
+    @Operation(summary = "回放历史预订比较房间分配策略")
+    @GetMapping("/allocation/simulate")
+    public Result<?> simulateAllocation(
+            @RequestParam Long roomTypeId,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate startDate,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate endDate) {
+        // 只有管理员可以运行模拟
+        User currentUser = JwtTokenUtils.getCurrentUser();
+        if (currentUser == null || !"ADMIN".equals(currentUser.getRoleCode())) {
+            return Result.error("无权运行分配模拟");
+        }
+
+        Map<String, Object> simulation = roomAllocationSimulator.simulate(roomTypeId, startDate, endDate);
+        return Result.success(simulation);
+    }
 }
\ No newline at end of file
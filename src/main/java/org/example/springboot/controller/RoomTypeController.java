@@ -5,7 +5,9 @@ import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.annotation.Resource;
 import org.example.springboot.common.Result;
+import org.example.springboot.config.ConditionalGet;
 import org.example.springboot.entity.RoomType;
+import org.example.springboot.service.CatalogVersionService.Table;
 import org.example.springboot.service.RoomTypeService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -23,6 +25,7 @@ public class RoomTypeController {
     private RoomTypeService roomTypeService;
     
     @Operation(summary = "分页查询房间类型")
+    @ConditionalGet({Table.ROOM_TYPE, Table.ROOM_TYPE_IMAGE, Table.ROOM})
     @GetMapping("/page")
     public Result<?> getRoomTypesByPage(
             @RequestParam(required = false) String name,
@@ -36,6 +39,7 @@ public class RoomTypeController {
     }
     
     @Operation(summary = "获取所有房间类型")
+    @ConditionalGet({Table.ROOM_TYPE, Table.ROOM_TYPE_IMAGE, Table.ROOM})
     @GetMapping("/all")
     public Result<?> getAllRoomTypes() {
         List<RoomType> roomTypes = roomTypeService.getAllRoomTypes();
@@ -43,6 +47,7 @@ public class RoomTypeController {
     }
     
     @Operation(summary = "根据id获取房间类型")
+    @ConditionalGet({Table.ROOM_TYPE, Table.ROOM_TYPE_IMAGE, Table.ROOM})
     @GetMapping("/{id}")
     public Result<?> getRoomTypeById(@PathVariable Long id) {
         RoomType roomType = roomTypeService.getRoomTypeById(id);
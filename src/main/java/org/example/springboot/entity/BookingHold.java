@@ -0,0 +1,56 @@
+package org.example.springboot.entity;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * 预订保留（结账期间的临时库存占用），保存在 Redis 或内存中，不写数据库
+ */
+@Data
+@Schema(description = "预订保留")
+public class BookingHold {
+    @Schema(description = "保留ID")
+    private String id;
+
+    @Schema(description = "用户ID")
+    private Long userId;
+
+    @Schema(description = "房间类型ID")
+    private Long roomTypeId;
+
+    @Schema(description = "房间ID")
+    private Long roomId;
+
+    @Schema(description = "入住日期")
+    private LocalDate startDate;
+
+    @Schema(description = "退房日期")
+    private LocalDate endDate;
+
+    @Schema(description = "入住人数")
+    private Integer guestCount;
+
+    @Schema(description = "预计总价")
+    private BigDecimal price;
+
+    @Schema(description = "创建时间")
+    private LocalDateTime createTime;
+
+    @Schema(description = "过期时间")
+    private LocalDateTime expireTime;
+
+    /**
+     * 与 [startDate, endDate) 是否有重叠的夜晚
+     */
+    public boolean overlaps(LocalDate from, LocalDate to) {
+        return startDate.isBefore(to) && from.isBefore(endDate);
+    }
+
+    public boolean isExpired() {
+        return !LocalDateTime.now().isBefore(expireTime);
+    }
+}
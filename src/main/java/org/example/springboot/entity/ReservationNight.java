@@ -0,0 +1,26 @@
+package org.example.springboot.entity;
+
+import com.baomidou.mybatisplus.annotation.TableName;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+import java.time.LocalDate;
+
+/**
+ * 预订房晚占用实体类
+ * 有效预订（待确认、已确认）的每一晚对应一行，(room_id, night) 唯一，
+ * 同一房间同一晚被重复占用时插入会因唯一键冲突而失败
+ */
+@Data
+@TableName("reservation_night")
+@Schema(description = "预订房晚占用实体类")
+public class ReservationNight {
+    @Schema(description = "房间ID")
+    private Long roomId;
+
+    @Schema(description = "入住的某一晚")
+    private LocalDate night;
+
+    @Schema(description = "预订ID")
+    private Long reservationId;
+}
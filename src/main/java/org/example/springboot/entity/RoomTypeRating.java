@@ -0,0 +1,86 @@
+package org.example.springboot.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 房型评分汇总实体类
+ * 只统计显示中的评价，由评价的写操作在同一事务内增量更新
+ */
+@Data
+@TableName("room_type_rating")
+@Schema(description = "房型评分汇总实体类")
+public class RoomTypeRating {
+    @TableId(type = IdType.INPUT)
+    @Schema(description = "房型ID")
+    private Long roomTypeId;
+
+    @Schema(description = "显示中的评价数")
+    private Integer reviewCount;
+
+    @Schema(description = "评分总和")
+    private Long scoreSum;
+
+    @Schema(description = "1星评价数")
+    private Integer score1;
+
+    @Schema(description = "2星评价数")
+    private Integer score2;
+
+    @Schema(description = "3星评价数")
+    private Integer score3;
+
+    @Schema(description = "4星评价数")
+    private Integer score4;
+
+    @Schema(description = "5星评价数")
+    private Integer score5;
+
+    @Schema(description = "更新时间")
+    private LocalDateTime updateTime;
+
+    /**
+     * 没有评价的房型的空汇总
+     */
+    public static RoomTypeRating empty(Long roomTypeId) {
+        RoomTypeRating rating = new RoomTypeRating();
+        rating.setRoomTypeId(roomTypeId);
+        rating.setReviewCount(0);
+        rating.setScoreSum(0L);
+        rating.setScore1(0);
+        rating.setScore2(0);
+        rating.setScore3(0);
+        rating.setScore4(0);
+        rating.setScore5(0);
+        return rating;
+    }
+
+    @Schema(description = "平均评分，没有评价时为0")
+    public double getAverageScore() {
+        if (reviewCount == null || reviewCount == 0 || scoreSum == null) {
+            return 0;
+        }
+        return (double) scoreSum / reviewCount;
+    }
+
+    /**
+     * 某个星级的评价数
+     */
+    public int getScoreCount(int score) {
+        Integer count;
+        switch (score) {
+            case 1: count = score1; break;
+            case 2: count = score2; break;
+            case 3: count = score3; break;
+            case 4: count = score4; break;
+            case 5: count = score5; break;
+            default: count = 0;
+        }
+        return count == null ? 0 : count;
+    }
+}
@@ -0,0 +1,24 @@
+package org.example.springboot.mapper;
+
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Select;
+
+import java.util.Map;
+
+/**
+ * 目录数据版本查询接口，为条件GET提供 Last-Modified
+ */
+@Mapper
+public interface CatalogVersionMapper {
+
+    /**
+     * 一次查询房型、房型图片、房间和轮播图四张表的最近更新时间
+     * 只做聚合不读取行内容，目录表数据量小，开销与返回内容的大小无关
+     */
+    @Select("SELECT " +
+            "(SELECT MAX(update_time) FROM room_type) AS roomTypeModified, " +
+            "(SELECT MAX(update_time) FROM room_type_image) AS roomTypeImageModified, " +
+            "(SELECT MAX(update_time) FROM room) AS roomModified, " +
+            "(SELECT MAX(update_time) FROM banner) AS bannerModified")
+    Map<String, Object> selectLastModified();
+}
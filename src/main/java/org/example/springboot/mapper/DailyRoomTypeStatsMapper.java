@@ -0,0 +1,79 @@
+package org.example.springboot.mapper;
+
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.example.springboot.DTO.RevenueTrendDTO;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 每日房型经营汇总数据访问接口，重算和趋势查询的 SQL 见 DailyRoomTypeStatsMapper.xml
+ */
+@Mapper
+public interface DailyRoomTypeStatsMapper {
+
+    /**
+     * 数据库当前时间，作为本次汇总的水位线，避免应用与数据库的时钟偏差
+     */
+    @Select("SELECT NOW()")
+    LocalDateTime selectDatabaseTime();
+
+    @Select("SELECT watermark FROM rollup_watermark WHERE name = #{name}")
+    LocalDateTime selectWatermark(@Param("name") String name);
+
+    @Insert("INSERT INTO rollup_watermark (name, watermark, update_time) VALUES (#{name}, #{watermark}, NOW()) " +
+            "ON DUPLICATE KEY UPDATE watermark = VALUES(watermark), update_time = NOW()")
+    int saveWatermark(@Param("name") String name, @Param("watermark") LocalDateTime watermark);
+
+    /**
+     * 所有预订覆盖的入住日期范围，用于首次全量汇总
+     * @return startDate、endDate，没有预订时都为 null
+     */
+    Map<String, Object> selectStayRange();
+
+    /**
+     * 记录需要重算的日期范围 [startDate, endDate)
+     */
+    @Insert("INSERT INTO rollup_dirty_range (start_date, end_date, create_time) VALUES (#{startDate}, #{endDate}, NOW())")
+    int insertDirtyRange(@Param("startDate") LocalDate startDate, @Param("endDate") LocalDate endDate);
+
+    /**
+     * 删除指定时间之前记录的待重算范围
+     */
+    @Delete("DELETE FROM rollup_dirty_range WHERE create_time <= #{before}")
+    int deleteDirtyRanges(@Param("before") LocalDateTime before);
+
+    /**
+     * 指定时间之后有变更的预订（包括其订单有变更的预订）覆盖的入住日期范围，以及之后记录的待重算范围
+     * @return startDate、endDate，没有变更时都为 null
+     */
+    Map<String, Object> selectChangedStayRange(@Param("since") LocalDateTime since);
+
+    /**
+     * 删除 [startDate, endDate) 内的汇总行
+     */
+    int deleteRange(@Param("startDate") LocalDate startDate, @Param("endDate") LocalDate endDate);
+
+    /**
+     * 从预订和订单重新汇总 [startDate, endDate) 内每一晚每个房型的数据
+     */
+    int insertRange(@Param("startDate") LocalDate startDate, @Param("endDate") LocalDate endDate);
+
+    /**
+     * 按天或按月查询 [startDate, endDate) 内的汇总
+     * @param month true 按月，false 按天
+     * @param roomTypeId 只统计该房型，为 null 时统计所有房型
+     * @param groupByRoomType 是否按房型分别返回
+     */
+    List<RevenueTrendDTO> selectTrends(@Param("startDate") LocalDate startDate,
+                                       @Param("endDate") LocalDate endDate,
+                                       @Param("month") boolean month,
+                                       @Param("roomTypeId") Long roomTypeId,
+                                       @Param("groupByRoomType") boolean groupByRoomType);
+}
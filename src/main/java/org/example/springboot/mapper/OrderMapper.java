@@ -1,12 +1,48 @@
 package org.example.springboot.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.example.springboot.DTO.OrderSummaryDTO;
 import org.example.springboot.entity.Order;
+import org.example.springboot.util.Projection;
+
+import java.util.List;
+import java.util.Map;
 
 /**
  * 订单数据访问接口
+ * selectDetail* 查询在 mapper/OrderMapper.xml 中，一条连接查询返回订单及其用户、预订、房间和房型
  */
 @Mapper
 public interface OrderMapper extends BaseMapper<Order> {
-} 
\ No newline at end of file
+
+    Order selectDetailById(@Param("id") Long id);
+
+    Order selectDetailByOrderNo(@Param("orderNo") String orderNo);
+
+    /**
+     * 按用户或预订查询订单（条件为空时不筛选），最新的在前
+     */
+    List<Order> selectDetailList(@Param("userId") Long userId, @Param("reservationId") Long reservationId);
+
+    /**
+     * 分页查询订单，订单号模糊匹配
+     */
+    Page<Order> selectDetailPage(Page<Order> page, @Param("orderNo") String orderNo,
+                                 @Param("userId") Long userId, @Param("status") Integer status);
+
+    /**
+     * 分页查询订单的投影字段，条件与 selectDetailPage 相同
+     */
+    Page<OrderSummaryDTO> selectSummaryPage(Page<OrderSummaryDTO> page, @Param("projection") Projection projection,
+                                            @Param("orderNo") String orderNo, @Param("userId") Long userId,
+                                            @Param("status") Integer status);
+
+    /**
+     * 按状态分组统计订单数和金额
+     * @return 每个状态一行：status、orderCount、totalAmount
+     */
+    List<Map<String, Object>> selectStatusTotals();
+}
@@ -1,12 +1,46 @@
 package org.example.springboot.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.example.springboot.DTO.ReservationSummaryDTO;
 import org.example.springboot.entity.Reservation;
+import org.example.springboot.util.Projection;
+
+import java.time.LocalDate;
+import java.util.List;
 
 /**
  * 预订数据访问接口
+ * selectDetail* 查询在 mapper/ReservationMapper.xml 中，一条连接查询返回预订及其关联数据
  */
 @Mapper
 public interface ReservationMapper extends BaseMapper<Reservation> {
-} 
\ No newline at end of file
+
+    /**
+     * 查询预订详情，包含用户、房间、房型和最新的订单
+     */
+    Reservation selectDetailById(@Param("id") Long id);
+
+    /**
+     * 分页查询预订，包含用户、房间和房型
+     */
+    Page<Reservation> selectDetailPage(Page<Reservation> page, @Param("userId") Long userId,
+                                       @Param("roomId") Long roomId, @Param("status") Integer status,
+                                       @Param("payStatus") Integer payStatus, @Param("startDate") LocalDate startDate,
+                                       @Param("endDate") LocalDate endDate);
+
+    /**
+     * 分页查询预订的投影字段，条件与 selectDetailPage 相同
+     */
+    Page<ReservationSummaryDTO> selectSummaryPage(Page<ReservationSummaryDTO> page, @Param("projection") Projection projection,
+                                                  @Param("userId") Long userId, @Param("roomId") Long roomId,
+                                                  @Param("status") Integer status, @Param("payStatus") Integer payStatus,
+                                                  @Param("startDate") LocalDate startDate, @Param("endDate") LocalDate endDate);
+
+    /**
+     * 查询用户的预订（状态为空时不筛选），包含房间和房型，最新的在前
+     */
+    List<Reservation> selectUserDetailList(@Param("userId") Long userId, @Param("status") Integer status);
+}
@@ -0,0 +1,27 @@
+package org.example.springboot.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.example.springboot.entity.ReservationNight;
+
+import java.util.List;
+
+/**
+ * 预订房晚占用数据访问接口
+ */
+@Mapper
+public interface ReservationNightMapper extends BaseMapper<ReservationNight> {
+
+    /**
+     * 批量插入房晚占用，一条语句完成，任一晚冲突时整条语句失败
+     */
+    @Insert("<script>" +
+            "INSERT INTO reservation_night (room_id, night, reservation_id) VALUES " +
+            "<foreach collection='nights' item='item' separator=','>" +
+            "(#{item.roomId}, #{item.night}, #{item.reservationId})" +
+            "</foreach>" +
+            "</script>")
+    int insertBatch(@Param("nights") List<ReservationNight> nights);
+}
@@ -0,0 +1,35 @@
+package org.example.springboot.mapper;
+
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+/**
+ * 房间栅栏令牌数据访问接口
+ * 房间的每个租约分段记录最近一次写入使用的栅栏令牌，拒绝令牌更小（租约已过期）的写入
+ */
+@Mapper
+public interface RoomFenceMapper {
+
+    /**
+     * 初始化房间分段的栅栏记录（已存在时忽略）
+     */
+    @Insert("INSERT IGNORE INTO room_fence (room_id, stripe, fence_token) VALUES (#{roomId}, #{stripe}, 0)")
+    int init(@Param("roomId") Long roomId, @Param("stripe") long stripe);
+
+    /**
+     * 令牌大于已记录的令牌时更新，并持有该行锁直到事务结束
+     * @return 影响行数，0 表示令牌已过期
+     */
+    @Update("UPDATE room_fence SET fence_token = #{fenceToken}, update_time = NOW() " +
+            "WHERE room_id = #{roomId} AND stripe = #{stripe} AND fence_token < #{fenceToken}")
+    int advance(@Param("roomId") Long roomId, @Param("stripe") long stripe, @Param("fenceToken") long fenceToken);
+
+    /**
+     * 读取房间分段已记录的栅栏令牌并锁定该行直到事务结束
+     */
+    @Select("SELECT fence_token FROM room_fence WHERE room_id = #{roomId} AND stripe = #{stripe} FOR UPDATE")
+    Long selectFenceForUpdate(@Param("roomId") Long roomId, @Param("stripe") long stripe);
+}
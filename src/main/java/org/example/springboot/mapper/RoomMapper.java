@@ -2,11 +2,30 @@ package org.example.springboot.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
 import org.example.springboot.entity.Room;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
 /**
  * 房间数据访问接口
  */
 @Mapper
 public interface RoomMapper extends BaseMapper<Room> {
-} 
\ No newline at end of file
+
+    /**
+     * 按房型分组统计房间总数和可用房间数，一条语句覆盖所有房型
+     * @return 每个有房间的房型一行：roomTypeId、roomCount、availableRoomCount
+     */
+    @Select("<script>" +
+            "SELECT room_type_id AS roomTypeId, COUNT(*) AS roomCount, " +
+            "SUM(CASE WHEN status = 1 THEN 1 ELSE 0 END) AS availableRoomCount " +
+            "FROM room WHERE room_type_id IN " +
+            "<foreach collection='roomTypeIds' item='id' open='(' separator=',' close=')'>#{id}</foreach> " +
+            "GROUP BY room_type_id" +
+            "</script>")
+    List<Map<String, Object>> countByRoomType(@Param("roomTypeIds") Collection<Long> roomTypeIds);
+}
@@ -0,0 +1,35 @@
+package org.example.springboot.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Select;
+import org.example.springboot.entity.RoomTypeRating;
+
+/**
+ * 房型评分汇总数据访问接口
+ */
+@Mapper
+public interface RoomTypeRatingMapper extends BaseMapper<RoomTypeRating> {
+
+    /**
+     * 把增量累加到房型的汇总行上，行不存在时以增量创建
+     * @param delta 各字段为要累加的增量（可为负数）
+     */
+    @Insert("INSERT INTO room_type_rating (room_type_id, review_count, score_sum, score1, score2, score3, score4, score5, update_time) " +
+            "VALUES (#{roomTypeId}, #{reviewCount}, #{scoreSum}, #{score1}, #{score2}, #{score3}, #{score4}, #{score5}, NOW()) " +
+            "ON DUPLICATE KEY UPDATE review_count = review_count + VALUES(review_count), " +
+            "score_sum = score_sum + VALUES(score_sum), score1 = score1 + VALUES(score1), " +
+            "score2 = score2 + VALUES(score2), score3 = score3 + VALUES(score3), " +
+            "score4 = score4 + VALUES(score4), score5 = score5 + VALUES(score5), update_time = NOW()")
+    int applyDelta(RoomTypeRating delta);
+
+    /**
+     * 所有房型的汇总之和
+     */
+    @Select("SELECT COALESCE(SUM(review_count), 0) AS reviewCount, COALESCE(SUM(score_sum), 0) AS scoreSum, " +
+            "COALESCE(SUM(score1), 0) AS score1, COALESCE(SUM(score2), 0) AS score2, COALESCE(SUM(score3), 0) AS score3, " +
+            "COALESCE(SUM(score4), 0) AS score4, COALESCE(SUM(score5), 0) AS score5 " +
+            "FROM room_type_rating")
+    RoomTypeRating selectTotal();
+}
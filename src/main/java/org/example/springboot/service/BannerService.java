@@ -8,6 +8,7 @@ import org.example.springboot.entity.Banner;
 import org.example.springboot.mapper.BannerMapper;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 /**
@@ -18,6 +19,15 @@ public class BannerService {
     
     @Resource
     private BannerMapper bannerMapper;
+
+    @Resource
+    private TwoLevelCache twoLevelCache;
+
+    @Resource
+    private CatalogVersionService catalogVersionService;
+
+    // 启用的轮播图列表在两级缓存中的键
+    private static final String ENABLED_BANNERS_KEY = "banner:enabled";
     
     /**
      * 获取轮播图列表（分页）
@@ -45,15 +55,17 @@ public class BannerService {
     }
     
     /**
-     * 获取启用的轮播图列表
+     * 获取启用的轮播图列表（两级缓存，返回的对象不能修改）
      * @return 轮播图列表
      */
     public List<Banner> getEnabledBanners() {
-        LambdaQueryWrapper<Banner> queryWrapper = new LambdaQueryWrapper<>();
-        queryWrapper.eq(Banner::getStatus, 1)  // 1表示启用
-                   .orderByAsc(Banner::getSortOrder);
-        
-        return bannerMapper.selectList(queryWrapper);
+        return twoLevelCache.getList(ENABLED_BANNERS_KEY, Banner[].class, () -> {
+            LambdaQueryWrapper<Banner> queryWrapper = new LambdaQueryWrapper<>();
+            queryWrapper.eq(Banner::getStatus, 1)  // 1表示启用
+                       .orderByAsc(Banner::getSortOrder);
+
+            return bannerMapper.selectList(queryWrapper);
+        });
     }
     
     /**
@@ -62,13 +74,18 @@ public class BannerService {
      * @return 是否成功
      */
     public boolean saveBanner(Banner banner) {
+        boolean saved;
         if (banner.getId() == null) {
             // 新增
-            return bannerMapper.insert(banner) > 0;
+            banner.setUpdateTime(LocalDateTime.now());
+            saved = bannerMapper.insert(banner) > 0;
         } else {
             // 更新
-            return bannerMapper.updateById(banner) > 0;
+            banner.setUpdateTime(LocalDateTime.now());
+            saved = bannerMapper.updateById(banner) > 0;
         }
+        evictBannerCache();
+        return saved;
     }
     
     /**
@@ -77,7 +94,9 @@ public class BannerService {
      * @return 是否成功
      */
     public boolean deleteBanner(Long id) {
-        return bannerMapper.deleteById(id) > 0;
+        boolean deleted = bannerMapper.deleteById(id) > 0;
+        evictBannerCache();
+        return deleted;
     }
     
     /**
@@ -90,7 +109,10 @@ public class BannerService {
         Banner banner = new Banner();
         banner.setId(id);
         banner.setStatus(status);
-        return bannerMapper.updateById(banner) > 0;
+        banner.setUpdateTime(LocalDateTime.now());
+        boolean updated = bannerMapper.updateById(banner) > 0;
+        evictBannerCache();
+        return updated;
     }
     
     /**
@@ -101,4 +123,12 @@ public class BannerService {
     public Banner getBannerById(Long id) {
         return bannerMapper.selectById(id);
     }
-} 
\ No newline at end of file
+
+    /**
+     * 轮播图变化后清除缓存并推进目录版本
+     */
+    private void evictBannerCache() {
+        twoLevelCache.evict(ENABLED_BANNERS_KEY);
+        catalogVersionService.touch(CatalogVersionService.Table.BANNER);
+    }
+}
\ No newline at end of file
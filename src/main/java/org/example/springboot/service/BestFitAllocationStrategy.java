@@ -0,0 +1,64 @@
+package org.example.springboot.service;
+
+import org.example.springboot.entity.Room;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 最佳适配分配：优先分配入住前后空档最小的房间
+ * 新预订紧贴已有预订时不会在房间日历上留下难以售出的零散空档，
+ * 完全空闲的房间留给后续的长住预订。空档相同时保持低楼层优先的顺序。
+ */
+@Component
+public class BestFitAllocationStrategy implements RoomAllocationStrategy {
+
+    public static final String NAME = "best-fit";
+
+    // 前后各检查的晚数，超出范围的空档按该值计算
+    private static final int GAP_WINDOW_NIGHTS = 30;
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public List<Room> rank(List<Room> candidates, LocalDate startDate, LocalDate endDate, OccupancyLookup occupancy) {
+        if (candidates.size() <= 1) {
+            return candidates;
+        }
+        Map<Long, Integer> gaps = new HashMap<>();
+        for (Room room : candidates) {
+            gaps.put(room.getId(), gapNights(room.getId(), startDate, endDate, occupancy));
+        }
+        List<Room> ranked = new ArrayList<>(candidates);
+        ranked.sort(Comparator.comparingInt(room -> gaps.get(room.getId())));
+        return ranked;
+    }
+
+    /**
+     * 计算入住后房间在 [startDate, endDate) 前后留下的空档晚数之和
+     */
+    private int gapNights(Long roomId, LocalDate startDate, LocalDate endDate, OccupancyLookup occupancy) {
+        int nights = (int) (endDate.toEpochDay() - startDate.toEpochDay());
+        BitSet occupied = occupancy.getOccupiedNights(roomId,
+            startDate.minusDays(GAP_WINDOW_NIGHTS), endDate.plusDays(GAP_WINDOW_NIGHTS));
+
+        // 第 GAP_WINDOW_NIGHTS 位对应入住第一晚
+        int previous = occupied.previousSetBit(GAP_WINDOW_NIGHTS - 1);
+        int gapBefore = previous < 0 ? GAP_WINDOW_NIGHTS : GAP_WINDOW_NIGHTS - 1 - previous;
+
+        int after = GAP_WINDOW_NIGHTS + nights;
+        int next = occupied.nextSetBit(after);
+        int gapAfter = next < 0 ? GAP_WINDOW_NIGHTS : Math.min(next - after, GAP_WINDOW_NIGHTS);
+
+        return gapBefore + gapAfter;
+    }
+}
@@ -0,0 +1,352 @@
+package org.example.springboot.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import org.example.springboot.entity.BookingHold;
+import org.example.springboot.entity.Room;
+import org.example.springboot.entity.RoomType;
+import org.example.springboot.entity.User;
+import org.example.springboot.exception.ServiceException;
+import org.example.springboot.mapper.RoomTypeMapper;
+import org.example.springboot.util.JwtTokenUtils;
+import org.example.springboot.util.TransactionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 预订保留服务
+ * 客人选定房型到完成支付之间，为其临时保留一间房：保留只写入保留存储和本实例的房间占用索引，
+ * 不写预订、订单和房间表；确认时转为正式预订和订单，放弃或到期后自动释放。
+ * 保留计入可用性：占用索引、房型日历和候选房间会排除被保留的房间，加锁后的可用性检查也会查询保留存储。
+ * 保留创建和释放后通过 Redis 发布订阅通知其他实例，其他实例按保留存储中的最新状态同步各自的占用索引。
+ */
+@Service
+public class BookingHoldService implements RoomOccupancyIndex.OccupancyListener, MessageListener {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BookingHoldService.class);
+
+    private static final String CHANGED_CHANNEL = "hotel:hold:changed";
+
+    @Resource
+    private RoomTypeMapper roomTypeMapper;
+
+    @Resource
+    private RoomService roomService;
+
+    @Resource
+    private RoomOccupancyIndex roomOccupancyIndex;
+
+    @Resource
+    private RoomLockService roomLockService;
+
+    @Resource
+    private RoomFenceService roomFenceService;
+
+    @Resource
+    private ReservationNightService reservationNightService;
+
+    @Resource
+    private HoldStore holdStore;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    // 保留有效期
+    @Value("${hotel.hold.ttl-seconds:600}")
+    private long ttlSeconds;
+
+    // 每个用户同时有效的保留数量上限
+    @Value("${hotel.hold.max-per-user:3}")
+    private int maxPerUser;
+
+    @Value("${hotel.lock.enabled:true}")
+    private boolean lockEnabled;
+
+    @Value("${hotel.lock.distributed-enabled:true}")
+    private boolean distributedLockEnabled;
+
+    // 已写入本实例占用索引的保留（包括其他实例通知的）：保留ID -> 占用索引中的记录
+    private final Map<String, LocalHold> localHolds = new ConcurrentHashMap<>();
+
+    // 本实例标识，用于忽略自己发出的变更通知
+    private final String nodeId = UUID.randomUUID().toString();
+
+    // 保留在占用索引中使用负数占用ID，与预订ID区分
+    private final AtomicLong occupantSequence = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        roomOccupancyIndex.addListener(this);
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(CHANGED_CHANNEL));
+    }
+
+    /**
+     * 为当前用户保留一间指定房型的房间
+     * 候选房间按分配策略排序，逐个不等待地加锁检查，被锁定、已预订或已保留的房间直接跳过
+     * @throws ServiceException 用户同时有效的保留数量已达上限
+     */
+    public BookingHold createHold(Long roomTypeId, LocalDate startDate, LocalDate endDate, Integer guestCount) {
+        User currentUser = JwtTokenUtils.getCurrentUser();
+        if (currentUser == null) {
+            throw new ServiceException("用户未登录");
+        }
+        if (roomTypeId == null || startDate == null || endDate == null) {
+            throw new ServiceException("房间类型和日期不能为空");
+        }
+        if (!startDate.isBefore(endDate)) {
+            throw new ServiceException("入住天数必须大于0");
+        }
+        if (startDate.isBefore(LocalDate.now())) {
+            throw new ServiceException("入住日期不能早于今天");
+        }
+        if (guestCount == null || guestCount <= 0) {
+            throw new ServiceException("入住人数必须大于0");
+        }
+
+        RoomType roomType = roomTypeMapper.selectById(roomTypeId);
+        if (roomType == null) {
+            throw new ServiceException("房间类型不存在");
+        }
+        if (roomType.getMaxPeople() < guestCount) {
+            throw new ServiceException("没有满足入住人数要求的可用房间");
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        BookingHold hold = new BookingHold();
+        hold.setUserId(currentUser.getId());
+        hold.setRoomTypeId(roomTypeId);
+        hold.setStartDate(startDate);
+        hold.setEndDate(endDate);
+        hold.setGuestCount(guestCount);
+        hold.setPrice(roomType.getPrice().multiply(new BigDecimal(ChronoUnit.DAYS.between(startDate, endDate))));
+        hold.setCreateTime(now);
+        hold.setExpireTime(now.plusSeconds(ttlSeconds));
+
+        List<Room> candidates = roomService.getCandidateRooms(roomTypeId, startDate, endDate);
+        for (Room room : candidates) {
+            hold.setId(UUID.randomUUID().toString().replace("-", ""));
+            hold.setRoomId(room.getId());
+            if (tryHoldRoom(hold)) {
+                return hold;
+            }
+        }
+        throw new ServiceException("该房型在所选日期没有可用房间");
+    }
+
+    /**
+     * 获取当前用户的保留（管理员可查看所有保留）
+     * @return 保留；不存在或已过期返回 null
+     */
+    public BookingHold getHold(String holdId) {
+        BookingHold hold = holdStore.get(holdId);
+        if (hold != null) {
+            checkOwner(hold);
+        }
+        return hold;
+    }
+
+    /**
+     * 放弃保留，立即释放房间
+     */
+    public void releaseHold(String holdId) {
+        BookingHold hold = holdStore.get(holdId);
+        if (hold == null) {
+            return;
+        }
+        checkOwner(hold);
+        release(holdId);
+    }
+
+    /**
+     * 事务提交后移除保留（保留已转为正式预订）；事务回滚时保留继续有效
+     */
+    public void releaseAfterCommit(String holdId) {
+        TransactionUtils.afterCommit(() -> release(holdId));
+    }
+
+    /**
+     * 房间在 [startDate, endDate) 内是否有未过期的保留
+     * 调用方应持有该房间的锁，保证检查后不会有新的保留
+     */
+    public boolean isHeld(Long roomId, LocalDate startDate, LocalDate endDate) {
+        for (BookingHold hold : holdStore.findByRoom(roomId)) {
+            if (hold.overlaps(startDate, endDate)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 收到其他实例的保留变更通知，按保留存储中的状态写入或释放本实例的占用
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String[] parts = new String(message.getBody(), StandardCharsets.UTF_8).split(",", 2);
+        if (parts.length < 2 || nodeId.equals(parts[0])) {
+            return;
+        }
+        String holdId = parts[1];
+        try {
+            BookingHold hold = holdStore.get(holdId);
+            if (hold != null && !hold.isExpired()) {
+                LocalHold localHold = new LocalHold(-occupantSequence.incrementAndGet(), hold);
+                if (localHolds.putIfAbsent(holdId, localHold) == null) {
+                    roomOccupancyIndex.occupy(localHold.occupantId, hold.getRoomId(), hold.getStartDate(), hold.getEndDate());
+                }
+            } else {
+                LocalHold localHold = localHolds.remove(holdId);
+                if (localHold != null) {
+                    roomOccupancyIndex.release(localHold.occupantId);
+                }
+            }
+        } catch (Exception e) {
+            LOGGER.error("同步其他实例的预订保留失败, holdId={}: {}", holdId, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 从占用索引中释放已过期或已被其他实例确认、放弃的保留
+     */
+    public void releaseExpiredHolds() {
+        int released = 0;
+        for (Map.Entry<String, LocalHold> entry : localHolds.entrySet()) {
+            BookingHold hold = entry.getValue().hold;
+            if (hold.isExpired() || holdStore.get(hold.getId()) == null) {
+                if (localHolds.remove(entry.getKey(), entry.getValue())) {
+                    roomOccupancyIndex.release(entry.getValue().occupantId);
+                    released++;
+                }
+            }
+        }
+        if (released > 0) {
+            LOGGER.info("释放过期的预订保留 {} 个", released);
+        }
+    }
+
+    @Override
+    public void onNightsChanged(Long roomId, LocalDate from, LocalDate to, boolean occupied) {
+    }
+
+    /**
+     * 索引从预订表重建后不包含保留，重新写入已知的有效保留
+     */
+    @Override
+    public void onIndexRebuilt() {
+        for (LocalHold localHold : localHolds.values()) {
+            BookingHold hold = localHold.hold;
+            if (!hold.isExpired()) {
+                roomOccupancyIndex.occupy(localHold.occupantId, hold.getRoomId(), hold.getStartDate(), hold.getEndDate());
+            }
+        }
+    }
+
+    /**
+     * 锁定房间后确认没有预订和保留，再写入保留
+     * @return 是否保留成功
+     * @throws ServiceException 用户同时有效的保留数量已达上限
+     */
+    private boolean tryHoldRoom(BookingHold hold) {
+        Long roomId = hold.getRoomId();
+        RoomLockService.RoomLock localLock = null;
+        RoomFenceService.RoomLease lease = null;
+        try {
+            if (lockEnabled) {
+                localLock = roomLockService.tryLock(roomId, hold.getStartDate(), hold.getEndDate(), 0, TimeUnit.MILLISECONDS);
+                if (localLock == null) {
+                    return false;
+                }
+                if (distributedLockEnabled) {
+                    lease = roomFenceService.tryLease(roomId, hold.getStartDate(), hold.getEndDate(), 0);
+                    if (lease == null) {
+                        return false;
+                    }
+                }
+            }
+            if (reservationNightService.countClaimedNights(roomId, hold.getStartDate(), hold.getEndDate(), null) > 0
+                    || isHeld(roomId, hold.getStartDate(), hold.getEndDate())) {
+                return false;
+            }
+
+            if (!holdStore.save(hold, TimeUnit.SECONDS.toMillis(ttlSeconds), maxPerUser)) {
+                throw new ServiceException("同时保留的房间已达上限，请先完成或放弃已有的保留");
+            }
+            LocalHold localHold = new LocalHold(-occupantSequence.incrementAndGet(), hold);
+            localHolds.put(hold.getId(), localHold);
+            roomOccupancyIndex.occupy(localHold.occupantId, roomId, hold.getStartDate(), hold.getEndDate());
+            publish(hold.getId());
+            return true;
+        } finally {
+            if (lease != null) {
+                lease.close();
+            }
+            if (localLock != null) {
+                localLock.close();
+            }
+        }
+    }
+
+    private void release(String holdId) {
+        holdStore.take(holdId);
+        LocalHold localHold = localHolds.remove(holdId);
+        if (localHold != null) {
+            roomOccupancyIndex.release(localHold.occupantId);
+        }
+        publish(holdId);
+    }
+
+    /**
+     * 通知其他实例保留已变更；发送失败时其他实例在保留过期后的清理中释放
+     */
+    private void publish(String holdId) {
+        try {
+            stringRedisTemplate.convertAndSend(CHANGED_CHANNEL, nodeId + "," + holdId);
+        } catch (RuntimeException e) {
+            LOGGER.warn("发送预订保留变更通知失败, holdId={}: {}", holdId, e.getMessage());
+        }
+    }
+
+    private void checkOwner(BookingHold hold) {
+        User currentUser = JwtTokenUtils.getCurrentUser();
+        if (currentUser == null) {
+            throw new ServiceException("用户未登录");
+        }
+        if (!"ADMIN".equals(currentUser.getRoleCode()) && !hold.getUserId().equals(currentUser.getId())) {
+            throw new ServiceException("无权操作此保留");
+        }
+    }
+
+    /**
+     * 已写入占用索引的保留及其占用ID
+     */
+    private static final class LocalHold {
+        private final long occupantId;
+        private final BookingHold hold;
+
+        private LocalHold(long occupantId, BookingHold hold) {
+            this.occupantId = occupantId;
+            this.hold = hold;
+        }
+    }
+}
@@ -30,6 +30,15 @@ public class BusinessSyncService {
     
     @Resource
     private RoomMapper roomMapper;
+
+    @Resource
+    private RoomOccupancyIndex roomOccupancyIndex;
+
+    @Resource
+    private ReservationNightService reservationNightService;
+
+    @Resource
+    private RoomTypeService roomTypeService;
     
     /**
      * 同步订单和预订状态
@@ -56,6 +65,8 @@ public class BusinessSyncService {
                 reservation.setStatus(2); // 同时取消预订
                 reservation.setUpdateTime(LocalDateTime.now());
                 reservationMapper.updateById(reservation);
+                reservationNightService.release(reservation.getId());
+                roomOccupancyIndex.syncReservation(reservation);
             }
             
         } catch (Exception e) {
@@ -93,6 +104,7 @@ public class BusinessSyncService {
                 }
                 
                 reservationMapper.updateById(reservation);
+                roomOccupancyIndex.syncReservation(reservation);
             }
             
         } catch (Exception e) {
@@ -111,6 +123,10 @@ public class BusinessSyncService {
             if (reservation == null || reservation.getStatus() != 2) {
                 return; // 预订不存在或未取消，无需处理
             }
+
+            // 确保房晚占用和房间占用索引已释放
+            reservationNightService.release(reservationId);
+            roomOccupancyIndex.syncReservation(reservation);
             
             // 释放房间资源（如果有房间锁定机制）
             Room room = roomMapper.selectById(reservation.getRoomId());
@@ -119,6 +135,7 @@ public class BusinessSyncService {
                 room.setStatus(1);
                 room.setUpdateTime(LocalDateTime.now());
                 roomMapper.updateById(room);
+                roomTypeService.evictRoomTypeCache(room.getRoomTypeId());
 
 
             }
@@ -248,6 +265,8 @@ public class BusinessSyncService {
                     reservation.setUpdateTime(LocalDateTime.now());
                     handleReservationCancelCompensation(reservation.getId());
                     reservationMapper.updateById(reservation);
+                    reservationNightService.release(reservation.getId());
+                    roomOccupancyIndex.syncReservation(reservation);
                 }
                 
             } catch (Exception e) {
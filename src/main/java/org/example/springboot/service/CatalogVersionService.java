@@ -0,0 +1,248 @@
+package org.example.springboot.service;
+
+import jakarta.annotation.Resource;
+import jakarta.servlet.http.HttpServletRequest;
+import org.example.springboot.mapper.CatalogVersionMapper;
+import org.example.springboot.util.TransactionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 目录数据版本服务
+ * ETag 由每张表在 Redis 中的版本计数器计算：目录写操作在事务提交后调用 touch 把计数器加一，
+ * 同一秒内的多次修改也会得到不同的 ETag。计数器与一个随机的纪元值一起参与计算，
+ * Redis 数据丢失后纪元值重新生成，不会与丢失前发出的 ETag 重复。
+ * Last-Modified 取相关表的最大更新时间（精确到秒），只用于不支持 ETag 的客户端。
+ * 各节点的一级缓存在收到失效通知前仍会返回旧内容，因此缓存条目记录加载时的目录版本（Stamp），
+ * 响应的 ETag 按实际返回的内容所基于的版本计算，而不是计数器的当前值。
+ */
+@Service
+public class CatalogVersionService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CatalogVersionService.class);
+
+    private static final String VERSION_KEY_PREFIX = "hotel:catalog:version:";
+
+    private static final String EPOCH_KEY = "hotel:catalog:epoch";
+
+    // 本次请求返回的缓存内容所基于的目录版本
+    private static final String SERVED_STAMP_ATTRIBUTE = CatalogVersionService.class.getName() + ".servedStamp";
+
+    /**
+     * 参与计算版本的目录表
+     */
+    public enum Table {
+        ROOM_TYPE("roomType"),
+        ROOM_TYPE_IMAGE("roomTypeImage"),
+        ROOM("room"),
+        BANNER("banner");
+
+        private final String column;
+
+        Table(String column) {
+            this.column = column;
+        }
+    }
+
+    /**
+     * 一组表的版本
+     */
+    public static final class Version {
+        private final String etag;
+        private final long lastModified;
+
+        private Version(String etag, long lastModified) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+        }
+
+        /**
+         * 弱 ETag，响应内容只在语义上等价（如压缩与否）
+         */
+        public String getEtag() {
+            return etag;
+        }
+
+        /**
+         * 最近更新时间的毫秒数，表中没有更新时间时为 -1
+         */
+        public long getLastModified() {
+            return lastModified;
+        }
+    }
+
+    /**
+     * 某一时刻全部目录表的版本计数器
+     */
+    public static final class Stamp {
+        // 版本未知（读取失败或纪元值不一致），据此计算不出有效的 ETag
+        static final Stamp UNKNOWN = new Stamp("", new long[0]);
+
+        private final String epoch;
+        // 按 Table 的顺序排列
+        private final long[] counters;
+
+        private Stamp(String epoch, long[] counters) {
+            this.epoch = epoch;
+            this.counters = counters;
+        }
+
+        private boolean isKnown() {
+            return counters.length > 0;
+        }
+
+        /**
+         * 两个版本中每张表各取较旧的计数器，内容由多份缓存拼成时以最旧的为准
+         */
+        private Stamp oldest(Stamp other) {
+            if (!isKnown() || !other.isKnown() || !epoch.equals(other.epoch)) {
+                return UNKNOWN;
+            }
+            long[] merged = new long[counters.length];
+            for (int i = 0; i < counters.length; i++) {
+                merged[i] = Math.min(counters[i], other.counters[i]);
+            }
+            return new Stamp(epoch, merged);
+        }
+    }
+
+    @Resource
+    private CatalogVersionMapper catalogVersionMapper;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 目录表已修改，事务提交后推进版本；应在清除对应缓存之后调用
+     */
+    public void touch(Table... tables) {
+        TransactionUtils.afterCommit(() -> {
+            try {
+                for (Table table : tables) {
+                    stringRedisTemplate.opsForValue().increment(VERSION_KEY_PREFIX + table.column);
+                }
+            } catch (RuntimeException e) {
+                LOGGER.warn("推进目录版本失败，客户端可能继续使用旧内容直到下次修改", e);
+            }
+        });
+    }
+
+    /**
+     * 计算给定表的当前版本
+     * @throws RuntimeException Redis 或数据库不可用，调用方应跳过条件GET
+     */
+    public Version getVersion(Table... tables) {
+        return new Version(getEtag(currentStamp(), tables), getLastModified(tables));
+    }
+
+    /**
+     * 读取全部目录表的当前版本计数器
+     * @throws RuntimeException Redis 不可用
+     */
+    public Stamp currentStamp() {
+        Table[] tables = Table.values();
+        List<String> keys = new ArrayList<>(tables.length + 1);
+        keys.add(EPOCH_KEY);
+        for (Table table : tables) {
+            keys.add(VERSION_KEY_PREFIX + table.column);
+        }
+        List<String> values = stringRedisTemplate.opsForValue().multiGet(keys);
+        if (values == null) {
+            throw new IllegalStateException("failed to read catalog versions");
+        }
+        String epoch = values.get(0) != null ? values.get(0) : initEpoch();
+
+        long[] counters = new long[tables.length];
+        for (int i = 0; i < tables.length; i++) {
+            String counter = values.get(i + 1);
+            counters[i] = counter == null ? 0 : Long.parseLong(counter);
+        }
+        return new Stamp(epoch, counters);
+    }
+
+    /**
+     * 按给定版本计算一组表的弱 ETag
+     * @return ETag；版本未知时返回 null
+     */
+    public String getEtag(Stamp stamp, Table... tables) {
+        if (!stamp.isKnown()) {
+            return null;
+        }
+        StringBuilder source = new StringBuilder(stamp.epoch).append(';');
+        for (Table table : tables) {
+            source.append(table.name()).append(':').append(stamp.counters[table.ordinal()]).append(';');
+        }
+        return "W/\"" + DigestUtils.md5DigestAsHex(source.toString().getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+
+    /**
+     * 记录本次请求返回了基于 stamp 加载的缓存内容；不在请求中时忽略
+     * @param stamp 为 null 表示加载时版本未知
+     */
+    public void recordServed(Stamp stamp) {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            return;
+        }
+        Stamp served = stamp == null ? Stamp.UNKNOWN : stamp;
+        Stamp previous = (Stamp) attributes.getAttribute(SERVED_STAMP_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        attributes.setAttribute(SERVED_STAMP_ATTRIBUTE, previous == null ? served : previous.oldest(served),
+            RequestAttributes.SCOPE_REQUEST);
+    }
+
+    /**
+     * 本次请求返回的缓存内容所基于的版本
+     * @return 版本；请求没有读取缓存时返回 null
+     */
+    public Stamp getServedStamp(HttpServletRequest request) {
+        return (Stamp) request.getAttribute(SERVED_STAMP_ATTRIBUTE);
+    }
+
+    private String initEpoch() {
+        stringRedisTemplate.opsForValue().setIfAbsent(EPOCH_KEY, UUID.randomUUID().toString());
+        String epoch = stringRedisTemplate.opsForValue().get(EPOCH_KEY);
+        if (epoch == null) {
+            throw new IllegalStateException("failed to initialize catalog version epoch");
+        }
+        return epoch;
+    }
+
+    private long getLastModified(Table... tables) {
+        Map<String, Object> modifiedTimes = catalogVersionMapper.selectLastModified();
+        LocalDateTime lastModified = null;
+        for (Table table : tables) {
+            LocalDateTime modified = toLocalDateTime(modifiedTimes == null ? null : modifiedTimes.get(table.column + "Modified"));
+            if (modified != null && (lastModified == null || modified.isAfter(lastModified))) {
+                lastModified = modified;
+            }
+        }
+        return lastModified == null ? -1 : lastModified.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private LocalDateTime toLocalDateTime(Object value) {
+        if (value instanceof LocalDateTime) {
+            return (LocalDateTime) value;
+        }
+        if (value instanceof Timestamp) {
+            return ((Timestamp) value).toLocalDateTime();
+        }
+        if (value instanceof Date) {
+            return LocalDateTime.ofInstant(((Date) value).toInstant(), ZoneId.systemDefault());
+        }
+        return value == null ? null : LocalDateTime.parse(value.toString().replace(' ', 'T'));
+    }
+}
@@ -0,0 +1,55 @@
+package org.example.springboot.service;
+
+import java.util.List;
+
+/**
+ * 业务数据变更事件，由预订、订单、评价和房间的写操作发布，
+ * 事务提交后由 DashboardStreamService 汇总并推送首页统计的增量
+ */
+public class DashboardChangeEvent {
+
+    /**
+     * 变更的数据类型及其影响的首页统计部分
+     */
+    public enum Entity {
+        RESERVATION("reservationStats", "roomStats"),
+        ORDER("orderStats", "reservationStats"),
+        REVIEW("reviewStats"),
+        ROOM("roomStats");
+
+        private final List<String> sections;
+
+        Entity(String... sections) {
+            this.sections = List.of(sections);
+        }
+
+        public List<String> getSections() {
+            return sections;
+        }
+    }
+
+    private final Entity entity;
+    private final Long id;
+    private final String action;
+
+    public DashboardChangeEvent(Entity entity, Long id, String action) {
+        this.entity = entity;
+        this.id = id;
+        this.action = action;
+    }
+
+    public Entity getEntity() {
+        return entity;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    /**
+     * 变更动作，如 create、cancel、pay
+     */
+    public String getAction() {
+        return action;
+    }
+}
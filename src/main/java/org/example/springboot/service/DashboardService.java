@@ -0,0 +1,265 @@
+package org.example.springboot.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import org.example.springboot.entity.User;
+import org.example.springboot.exception.ServiceException;
+import org.example.springboot.mapper.UserMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * 后台首页统计服务
+ * 用户、房间、预订、订单和评价五部分统计在有界线程池中并发计算，每部分有独立的超时；
+ * 结果作为快照缓存，超过刷新间隔后在后台重新计算并先返回旧快照，超过最大陈旧时间才等待新结果。
+ * 同一时刻只有一次计算，并发的请求共享同一个计算结果。
+ */
+@Service
+public class DashboardService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DashboardService.class);
+
+    private static final int SECTION_COUNT = 5;
+
+    @Resource
+    private UserMapper userMapper;
+
+    @Resource
+    private RoomService roomService;
+
+    @Resource
+    private ReservationService reservationService;
+
+    @Resource
+    private OrderService orderService;
+
+    @Resource
+    private ReviewService reviewService;
+
+    // 快照超过该时间后在后台刷新
+    @Value("${hotel.dashboard.refresh-ms:30000}")
+    private long refreshMillis;
+
+    // 快照超过该时间后不再返回，请求等待重新计算
+    @Value("${hotel.dashboard.max-stale-ms:120000}")
+    private long maxStaleMillis;
+
+    // 单个统计部分的超时时间，超时后沿用上一个快照中的该部分
+    @Value("${hotel.dashboard.section-timeout-ms:5000}")
+    private long sectionTimeoutMillis;
+
+    private final ExecutorService executor;
+
+    private volatile Snapshot snapshot;
+
+    // 正在进行的计算
+    private final AtomicReference<CompletableFuture<Snapshot>> refreshing = new AtomicReference<>();
+
+    public DashboardService() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(SECTION_COUNT, SECTION_COUNT, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(SECTION_COUNT * 2), runnable -> {
+                Thread thread = new Thread(runnable, "dashboard-stats-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 获取首页统计快照
+     */
+    public Map<String, Object> getDashboardStats() {
+        Snapshot current = snapshot;
+        long age = current == null ? Long.MAX_VALUE : System.currentTimeMillis() - current.computedAt;
+        if (age < refreshMillis) {
+            return current.stats;
+        }
+        CompletableFuture<Snapshot> refresh = refresh();
+        if (age < maxStaleMillis) {
+            return current.stats;
+        }
+        try {
+            return refresh.join().stats;
+        } catch (CompletionException e) {
+            LOGGER.error("计算首页统计失败", e.getCause());
+            throw new ServiceException("获取统计数据失败：" + e.getCause().getMessage());
+        }
+    }
+
+    /**
+     * 开始一次计算；已有计算在进行时返回该计算
+     */
+    private CompletableFuture<Snapshot> refresh() {
+        CompletableFuture<Snapshot> future = new CompletableFuture<>();
+        CompletableFuture<Snapshot> existing = refreshing.compareAndExchange(null, future);
+        if (existing != null) {
+            return existing;
+        }
+        compute().whenComplete((result, error) -> {
+            if (result != null) {
+                snapshot = result;
+            }
+            refreshing.set(null);
+            if (error != null) {
+                future.completeExceptionally(error);
+            } else {
+                future.complete(result);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * 只重新计算指定的统计部分并合并到当前快照，快照的计算时间不变
+     * @param names 统计部分名称，如 orderStats
+     * @return 统计部分名称 -> 新的统计结果，计算失败或超时的部分不返回
+     */
+    public Map<String, Object> refreshSections(Collection<String> names) {
+        Map<String, Supplier<Object>> sections = sections();
+        Map<String, CompletableFuture<Object>> futures = new LinkedHashMap<>();
+        for (String name : names) {
+            Supplier<Object> section = sections.get(name);
+            if (section == null) {
+                continue;
+            }
+            try {
+                futures.put(name, CompletableFuture.supplyAsync(section, executor)
+                    .orTimeout(sectionTimeoutMillis, TimeUnit.MILLISECONDS));
+            } catch (RuntimeException e) {
+                LOGGER.warn("首页统计 {} 计算失败", name, e);
+            }
+        }
+
+        Map<String, Object> updated = new LinkedHashMap<>();
+        futures.forEach((name, future) -> {
+            try {
+                updated.put(name, future.join());
+            } catch (CompletionException e) {
+                LOGGER.warn("首页统计 {} 计算失败", name, e.getCause());
+            }
+        });
+
+        Snapshot current = snapshot;
+        if (current != null && !updated.isEmpty()) {
+            Map<String, Object> stats = new HashMap<>(current.stats);
+            stats.putAll(updated);
+            snapshot = new Snapshot(Collections.unmodifiableMap(stats), current.computedAt);
+        }
+        return updated;
+    }
+
+    private Map<String, Supplier<Object>> sections() {
+        Map<String, Supplier<Object>> sections = new LinkedHashMap<>();
+        sections.put("userStats", this::getUserStats);
+        sections.put("roomStats", roomService::getRoomUsageStatistics);
+        sections.put("reservationStats", reservationService::getReservationStatistics);
+        sections.put("orderStats", orderService::getOrderStatistics);
+        sections.put("reviewStats", reviewService::getReviewStatistics);
+        return sections;
+    }
+
+    private CompletableFuture<Snapshot> compute() {
+        Map<String, Supplier<Object>> sections = sections();
+
+        Snapshot previous = snapshot;
+        List<String> failed = Collections.synchronizedList(new ArrayList<>());
+        Map<String, CompletableFuture<Object>> futures = new LinkedHashMap<>();
+        for (Map.Entry<String, Supplier<Object>> section : sections.entrySet()) {
+            String name = section.getKey();
+            Object fallback = previous == null ? null : previous.stats.get(name);
+            CompletableFuture<Object> future;
+            try {
+                future = CompletableFuture.supplyAsync(section.getValue(), executor)
+                    .orTimeout(sectionTimeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (RuntimeException e) {
+                future = CompletableFuture.failedFuture(e);
+            }
+            futures.put(name, future.exceptionally(error -> {
+                LOGGER.warn("首页统计 {} 计算失败，沿用上一次的结果", name, error);
+                failed.add(name);
+                return fallback;
+            }));
+        }
+
+        return CompletableFuture.allOf(futures.values().toArray(new CompletableFuture[0])).thenApply(ignored -> {
+            Map<String, Object> stats = new HashMap<>();
+            futures.forEach((name, future) -> {
+                Object value = future.join();
+                if (value != null) {
+                    stats.put(name, value);
+                }
+            });
+            stats.put("snapshotTime", LocalDateTime.now());
+            if (!failed.isEmpty()) {
+                stats.put("failedSections", new ArrayList<>(failed));
+            }
+            return new Snapshot(Collections.unmodifiableMap(stats), System.currentTimeMillis());
+        });
+    }
+
+    /**
+     * 获取用户统计数据
+     */
+    private Map<String, Integer> getUserStats() {
+        Map<String, Integer> stats = new HashMap<>();
+
+        // 获取总用户数
+        int totalUsers = Math.toIntExact(userMapper.selectCount(null));
+
+        // 获取普通用户数
+        int normalUsers = Math.toIntExact(userMapper.selectCount(
+                new LambdaQueryWrapper<User>()
+                        .eq(User::getRoleCode, "USER")
+        ));
+
+        // 获取管理员数
+        int adminUsers = Math.toIntExact(userMapper.selectCount(
+                new LambdaQueryWrapper<User>()
+                        .eq(User::getRoleCode, "ADMIN")
+        ));
+
+        stats.put("totalUsers", totalUsers);
+        stats.put("normalUsers", normalUsers);
+        stats.put("adminUsers", adminUsers);
+
+        return stats;
+    }
+
+    /**
+     * 统计快照及其计算完成时间
+     */
+    private static final class Snapshot {
+        private final Map<String, Object> stats;
+        private final long computedAt;
+
+        private Snapshot(Map<String, Object> stats, long computedAt) {
+            this.stats = stats;
+            this.computedAt = computedAt;
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package org.example.springboot.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import org.example.springboot.exception.ServiceException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * 后台首页统计推送服务（SSE）
+ * 连接建立时推送一次当前快照；之后业务写操作提交的变更事件只标记受影响的统计部分，
+ * 由推送线程按固定间隔合并，只重新计算这些部分一次并广播给所有连接。
+ * 没有变更时连接上只有心跳，打开多少个页面都不会触发额外的统计计算。
+ * 变更事件同时通过 Redis 发布订阅转发给其他实例，连接在任一实例上都能收到所有实例的写入。
+ */
+@Service
+public class DashboardStreamService implements MessageListener {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DashboardStreamService.class);
+
+    private static final String CHANGED_CHANNEL = "hotel:dashboard:changed";
+
+    // 每次增量中最多附带的变更明细条数，超出的只体现在统计结果中
+    private static final int MAX_CHANGES = 50;
+
+    @Resource
+    private DashboardService dashboardService;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    // 合并变更并推送增量的间隔
+    @Value("${hotel.dashboard.push-interval-ms:2000}")
+    private long pushIntervalMillis;
+
+    // 心跳间隔，及时发现已断开的连接
+    @Value("${hotel.dashboard.heartbeat-ms:30000}")
+    private long heartbeatMillis;
+
+    // 连接超时时间，超时后浏览器 EventSource 会自动重连并重新获取快照
+    @Value("${hotel.dashboard.stream-timeout-ms:1800000}")
+    private long streamTimeoutMillis;
+
+    @Value("${hotel.dashboard.max-streams:100}")
+    private int maxStreams;
+
+    private final List<Stream> streams = new CopyOnWriteArrayList<>();
+
+    // 连接名额，建立连接前先占用，连接关闭时归还
+    private Semaphore streamSlots;
+
+    // 本实例标识，用于忽略自己转发的变更事件
+    private final String nodeId = UUID.randomUUID().toString();
+
+    // 自上次推送以来需要重新计算的统计部分
+    private final Set<String> dirtySections = ConcurrentHashMap.newKeySet();
+
+    private final BlockingQueue<Map<String, Object>> pendingChanges = new LinkedBlockingQueue<>(MAX_CHANGES);
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "dashboard-stream");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PostConstruct
+    public void start() {
+        streamSlots = new Semaphore(maxStreams);
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(CHANGED_CHANNEL));
+        scheduler.scheduleWithFixedDelay(this::pushDelta, pushIntervalMillis, pushIntervalMillis, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::heartbeat, heartbeatMillis, heartbeatMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        for (Stream stream : streams) {
+            stream.emitter.complete();
+            stream.close();
+        }
+    }
+
+    /**
+     * 建立推送连接，先发送 snapshot 事件，之后发送 delta 事件
+     */
+    public SseEmitter subscribe() {
+        if (!streamSlots.tryAcquire()) {
+            throw new ServiceException("实时统计连接数已达上限，请稍后重试");
+        }
+        Stream stream = new Stream(new SseEmitter(streamTimeoutMillis));
+        SseEmitter emitter = stream.emitter;
+        emitter.onCompletion(stream::close);
+        emitter.onTimeout(stream::close);
+        emitter.onError(error -> stream.close());
+
+        try {
+            Map<String, Object> snapshot = dashboardService.getDashboardStats();
+            emitter.send(SseEmitter.event().name("snapshot").data(snapshot));
+        } catch (IOException e) {
+            stream.close();
+            emitter.completeWithError(e);
+            return emitter;
+        } catch (RuntimeException e) {
+            stream.close();
+            throw e;
+        }
+        streams.add(stream);
+        return emitter;
+    }
+
+    /**
+     * 记录提交的变更并转发给其他实例，不在事务中发布时立即处理
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onChange(DashboardChangeEvent event) {
+        record(event.getEntity(), event.getId(), event.getAction());
+        try {
+            stringRedisTemplate.convertAndSend(CHANGED_CHANNEL, String.join(",", nodeId, event.getEntity().name(),
+                String.valueOf(event.getId()), String.valueOf(event.getAction())));
+        } catch (RuntimeException e) {
+            LOGGER.warn("转发首页统计变更失败，其他实例的连接收不到本次变更: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 收到其他实例转发的变更
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String[] parts = new String(message.getBody(), StandardCharsets.UTF_8).split(",", 4);
+        if (parts.length < 4 || nodeId.equals(parts[0])) {
+            return;
+        }
+        try {
+            Long id = "null".equals(parts[2]) ? null : Long.valueOf(parts[2]);
+            record(DashboardChangeEvent.Entity.valueOf(parts[1]), id, parts[3]);
+        } catch (IllegalArgumentException e) {
+            LOGGER.warn("忽略无法解析的首页统计变更: {}", String.join(",", parts));
+        }
+    }
+
+    private void record(DashboardChangeEvent.Entity entity, Long id, String action) {
+        if (streams.isEmpty()) {
+            return;
+        }
+        dirtySections.addAll(entity.getSections());
+        Map<String, Object> change = new HashMap<>();
+        change.put("entity", entity.name().toLowerCase());
+        change.put("id", id);
+        change.put("action", action);
+        pendingChanges.offer(change);
+    }
+
+    /**
+     * 重新计算有变更的统计部分并广播
+     */
+    private void pushDelta() {
+        if (dirtySections.isEmpty()) {
+            return;
+        }
+        Set<String> sections = new HashSet<>(dirtySections);
+        dirtySections.removeAll(sections);
+        List<Map<String, Object>> changes = new ArrayList<>();
+        pendingChanges.drainTo(changes);
+        if (streams.isEmpty()) {
+            return;
+        }
+        try {
+            Map<String, Object> delta = new HashMap<>();
+            delta.put("sections", dashboardService.refreshSections(sections));
+            delta.put("changes", changes);
+            delta.put("time", LocalDateTime.now());
+            broadcast(() -> SseEmitter.event().name("delta").data(delta));
+        } catch (RuntimeException e) {
+            LOGGER.warn("推送首页统计增量失败", e);
+        }
+    }
+
+    private void heartbeat() {
+        broadcast(() -> SseEmitter.event().comment("ping"));
+    }
+
+    /**
+     * 向所有连接发送事件，事件构建器只能发送一次，每个连接单独构建
+     */
+    private void broadcast(Supplier<SseEmitter.SseEventBuilder> event) {
+        for (Stream stream : streams) {
+            try {
+                stream.emitter.send(event.get());
+            } catch (IOException | IllegalStateException e) {
+                stream.close();
+            }
+        }
+    }
+
+    /**
+     * 推送连接，close 可重复调用，只归还一次连接名额
+     */
+    private final class Stream {
+        private final SseEmitter emitter;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Stream(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        private void close() {
+            streams.remove(this);
+            if (closed.compareAndSet(false, true)) {
+                streamSlots.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package org.example.springboot.service;
+
+import jakarta.annotation.PreDestroy;
+import org.example.springboot.exception.ServiceException;
+import org.example.springboot.util.TransactionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 分布式租约锁服务
+ * 多实例部署时保证同一资源同一时刻只有一个节点在写：
+ * 获取锁后由后台线程按租约的 1/3 周期续约，释放时校验持有者令牌；
+ * 每次获取锁都会得到一个递增的栅栏令牌，写数据库时据此拒绝租约已过期的旧持有者。
+ */
+@Service
+public class DistributedLockService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DistributedLockService.class);
+
+    private static final String LOCK_KEY_PREFIX = "hotel:lock:";
+    private static final String FENCE_KEY_PREFIX = "hotel:fence:";
+
+    private final LockStore lockStore;
+    private final long leaseMillis;
+    private final long timeoutMillis;
+    private final ScheduledExecutorService renewExecutor;
+
+    public DistributedLockService(LockStore lockStore,
+                                  @Value("${hotel.lock.lease-ms:10000}") long leaseMillis,
+                                  @Value("${hotel.lock.timeout-ms:3000}") long timeoutMillis) {
+        this.lockStore = lockStore;
+        this.leaseMillis = leaseMillis;
+        this.timeoutMillis = timeoutMillis;
+        this.renewExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "distributed-lock-renew");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        renewExecutor.shutdownNow();
+    }
+
+    /**
+     * 获取锁直到当前事务结束（提交或回滚）后自动释放
+     * @param name 资源名称，如 room:1
+     * @return 锁句柄，用于读取栅栏令牌
+     */
+    public DistributedLock lockUntilTransactionEnd(String name) {
+        if (!TransactionUtils.isInTransaction()) {
+            throw new IllegalStateException("lockUntilTransactionEnd must be called inside a transaction");
+        }
+        DistributedLock lock = lock(name);
+        TransactionUtils.afterCompletion(lock::close);
+        return lock;
+    }
+
+    /**
+     * 把已获取的锁延长到当前事务结束（提交或回滚）后释放
+     */
+    public void holdUntilTransactionEnd(DistributedLock lock) {
+        if (!TransactionUtils.isInTransaction()) {
+            throw new IllegalStateException("holdUntilTransactionEnd must be called inside a transaction");
+        }
+        TransactionUtils.afterCompletion(lock::close);
+    }
+
+    /**
+     * 获取锁，等待不超过配置的超时时间
+     * @param name 资源名称，如 room:1
+     * @return 锁句柄，使用完毕后调用 close 释放
+     * @throws ServiceException 等待超时、被中断或锁存储不可用
+     */
+    public DistributedLock lock(String name) {
+        DistributedLock lock = tryLock(name, timeoutMillis);
+        if (lock == null) {
+            LOGGER.warn("获取分布式锁超时: {}", LOCK_KEY_PREFIX + name);
+            throw new ServiceException("该房间正在被其他用户预订，请稍后重试");
+        }
+        return lock;
+    }
+
+    /**
+     * 尝试获取锁，timeoutMillis 为 0 时只尝试一次
+     * @param name 资源名称，如 room:1
+     * @return 锁句柄；等待超时返回 null
+     * @throws ServiceException 被中断或锁存储不可用
+     */
+    public DistributedLock tryLock(String name, long timeoutMillis) {
+        String key = LOCK_KEY_PREFIX + name;
+        String token = UUID.randomUUID().toString();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+
+        int attempt = 0;
+        try {
+            while (!lockStore.tryAcquire(key, token, leaseMillis)) {
+                if (System.nanoTime() - deadline >= 0) {
+                    return null;
+                }
+                // 退避重试，加入随机抖动避免多个节点同时重试
+                long backoff = Math.min(200, 20L << Math.min(attempt++, 3));
+                Thread.sleep(backoff + ThreadLocalRandom.current().nextLong(backoff));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceException("获取分布式锁被中断");
+        } catch (Exception e) {
+            LOGGER.error("获取分布式锁失败: {}: {}", key, e.getMessage(), e);
+            throw new ServiceException("系统繁忙，请稍后重试");
+        }
+
+        String fenceKey = FENCE_KEY_PREFIX + name;
+        long fence;
+        try {
+            fence = lockStore.nextFence(fenceKey);
+        } catch (Exception e) {
+            lockStore.release(key, token);
+            LOGGER.error("生成栅栏令牌失败: {}: {}", key, e.getMessage(), e);
+            throw new ServiceException("系统繁忙，请稍后重试");
+        }
+
+        DistributedLock lock = new DistributedLock(key, token, fenceKey, fence);
+        long period = Math.max(1, leaseMillis / 3);
+        lock.renewal = renewExecutor.scheduleAtFixedRate(() -> renew(lock), period, period, TimeUnit.MILLISECONDS);
+        return lock;
+    }
+
+    /**
+     * 锁存储中的栅栏计数器落后于数据库记录时（如 Redis 清空、故障切换后计数器从头开始），
+     * 在确认仍持有租约后把计数器抬高到 floor 之上，并为锁换发新的栅栏令牌
+     * @param floor 数据库中已记录的栅栏令牌
+     * @return 是否换发成功；租约已丢失（锁已被其他节点获取）时返回 false
+     */
+    public boolean reseedFence(DistributedLock lock, long floor) {
+        try {
+            if (!lockStore.renew(lock.key, lock.token, leaseMillis)) {
+                return false;
+            }
+            lockStore.raiseFence(lock.fenceKey, floor);
+            lock.fence = lockStore.nextFence(lock.fenceKey);
+            LOGGER.warn("栅栏令牌计数器落后于数据库记录 {}，已重新设置: {}", floor, lock.fenceKey);
+            return true;
+        } catch (Exception e) {
+            LOGGER.error("重新设置栅栏令牌失败: {}: {}", lock.fenceKey, e.getMessage(), e);
+            return false;
+        }
+    }
+
+    private void renew(DistributedLock lock) {
+        try {
+            if (!lockStore.renew(lock.key, lock.token, leaseMillis)) {
+                // 租约已丢失，后续写入会被栅栏令牌拒绝
+                LOGGER.warn("分布式锁续约失败，租约已丢失: {}", lock.key);
+                lock.renewal.cancel(false);
+            }
+        } catch (Exception e) {
+            LOGGER.error("分布式锁续约异常: {}: {}", lock.key, e.getMessage());
+        }
+    }
+
+    /**
+     * 分布式锁句柄，close 可重复调用
+     */
+    public final class DistributedLock implements AutoCloseable {
+        private final String key;
+        private final String token;
+        private final String fenceKey;
+        private volatile long fence;
+        private volatile ScheduledFuture<?> renewal;
+        private boolean released;
+
+        private DistributedLock(String key, String token, String fenceKey, long fence) {
+            this.key = key;
+            this.token = token;
+            this.fenceKey = fenceKey;
+            this.fence = fence;
+        }
+
+        /**
+         * 栅栏令牌
+         */
+        public long getFence() {
+            return fence;
+        }
+
+        @Override
+        public synchronized void close() {
+            if (released) {
+                return;
+            }
+            released = true;
+            if (renewal != null) {
+                renewal.cancel(false);
+            }
+            try {
+                if (!lockStore.release(key, token)) {
+                    LOGGER.warn("释放分布式锁时租约已过期: {}", key);
+                }
+            } catch (Exception e) {
+                // 释放失败时依赖租约过期
+                LOGGER.error("释放分布式锁失败: {}: {}", key, e.getMessage());
+            }
+        }
+    }
+}
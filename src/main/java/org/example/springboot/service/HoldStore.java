@@ -0,0 +1,37 @@
+package org.example.springboot.service;
+
+import org.example.springboot.entity.BookingHold;
+
+import java.util.List;
+
+/**
+ * 预订保留存储
+ * 保留到期后自动失效；多实例部署使用 Redis 实现，单机开发和测试可使用进程内实现。
+ */
+public interface HoldStore {
+
+    /**
+     * 保存保留，ttlMillis 后自动失效
+     * 检查用户未过期的保留数量和写入在同一原子操作中完成，并发创建也不会超过上限
+     * @param maxPerUser 每个用户同时有效的保留数量上限
+     * @return 是否保存成功；用户的保留数量已达上限时返回 false
+     */
+    boolean save(BookingHold hold, long ttlMillis, int maxPerUser);
+
+    /**
+     * 获取未过期的保留
+     * @return 保留；不存在或已过期返回 null
+     */
+    BookingHold get(String holdId);
+
+    /**
+     * 原子地取出并删除保留，同一保留只会被取出一次
+     * @return 保留；不存在或已过期返回 null
+     */
+    BookingHold take(String holdId);
+
+    /**
+     * 获取房间上所有未过期的保留
+     */
+    List<BookingHold> findByRoom(Long roomId);
+}
@@ -0,0 +1,75 @@
+package org.example.springboot.service;
+
+import org.example.springboot.entity.BookingHold;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 进程内保留存储，语义与 {@link RedisHoldStore} 一致
+ * 过期的保留在读取时清理，用于单机部署和本地开发
+ */
+public class InMemoryHoldStore implements HoldStore {
+
+    private final Map<String, Entry> holds = new ConcurrentHashMap<>();
+
+    @Override
+    public synchronized boolean save(BookingHold hold, long ttlMillis, int maxPerUser) {
+        long now = System.nanoTime();
+        holds.values().removeIf(entry -> entry.isExpired(now));
+        long active = holds.values().stream().filter(entry -> entry.hold.getUserId().equals(hold.getUserId())).count();
+        if (active >= maxPerUser) {
+            return false;
+        }
+        holds.put(hold.getId(), new Entry(hold, now + ttlMillis * 1_000_000L));
+        return true;
+    }
+
+    @Override
+    public BookingHold get(String holdId) {
+        Entry entry = holds.get(holdId);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.isExpired(System.nanoTime())) {
+            holds.remove(holdId, entry);
+            return null;
+        }
+        return entry.hold;
+    }
+
+    @Override
+    public BookingHold take(String holdId) {
+        Entry entry = holds.remove(holdId);
+        return entry == null || entry.isExpired(System.nanoTime()) ? null : entry.hold;
+    }
+
+    @Override
+    public List<BookingHold> findByRoom(Long roomId) {
+        long now = System.nanoTime();
+        List<BookingHold> result = new ArrayList<>();
+        holds.values().removeIf(entry -> entry.isExpired(now));
+        for (Entry entry : holds.values()) {
+            if (entry.hold.getRoomId().equals(roomId)) {
+                result.add(entry.hold);
+            }
+        }
+        return result;
+    }
+
+    private static final class Entry {
+        private final BookingHold hold;
+        private final long expiresAtNanos;
+
+        private Entry(BookingHold hold, long expiresAtNanos) {
+            this.hold = hold;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+
+        private boolean isExpired(long now) {
+            return now - expiresAtNanos >= 0;
+        }
+    }
+}
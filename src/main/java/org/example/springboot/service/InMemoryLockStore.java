@@ -0,0 +1,75 @@
+package org.example.springboot.service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 进程内锁存储，语义与 {@link RedisLockStore} 一致（租约过期、令牌比较、递增栅栏令牌）
+ * 用于单机部署、本地开发，以及在一台机器上模拟多个节点争抢同一把锁
+ */
+public class InMemoryLockStore implements LockStore {
+
+    private final Map<String, Lease> leases = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> fences = new ConcurrentHashMap<>();
+
+    @Override
+    public boolean tryAcquire(String key, String token, long leaseMillis) {
+        long now = System.nanoTime();
+        Lease newLease = new Lease(token, now + leaseMillis * 1_000_000L);
+        Lease result = leases.compute(key, (k, current) ->
+            current == null || current.isExpired(now) ? newLease : current);
+        return result == newLease;
+    }
+
+    @Override
+    public boolean release(String key, String token) {
+        boolean[] released = {false};
+        leases.computeIfPresent(key, (k, current) -> {
+            if (current.token.equals(token) && !current.isExpired(System.nanoTime())) {
+                released[0] = true;
+                return null;
+            }
+            return current;
+        });
+        return released[0];
+    }
+
+    @Override
+    public boolean renew(String key, String token, long leaseMillis) {
+        boolean[] renewed = {false};
+        leases.computeIfPresent(key, (k, current) -> {
+            long now = System.nanoTime();
+            if (current.token.equals(token) && !current.isExpired(now)) {
+                renewed[0] = true;
+                return new Lease(token, now + leaseMillis * 1_000_000L);
+            }
+            return current;
+        });
+        return renewed[0];
+    }
+
+    @Override
+    public long nextFence(String key) {
+        return fences.computeIfAbsent(key, k -> new AtomicLong()).incrementAndGet();
+    }
+
+    @Override
+    public void raiseFence(String key, long floor) {
+        fences.computeIfAbsent(key, k -> new AtomicLong()).accumulateAndGet(floor, Math::max);
+    }
+
+    private static final class Lease {
+        private final String token;
+        private final long expiresAtNanos;
+
+        private Lease(String token, long expiresAtNanos) {
+            this.token = token;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+
+        private boolean isExpired(long now) {
+            return now - expiresAtNanos >= 0;
+        }
+    }
+}
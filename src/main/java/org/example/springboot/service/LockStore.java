@@ -0,0 +1,37 @@
+package org.example.springboot.service;
+
+/**
+ * 分布式锁存储
+ * 提供租约锁的原子操作和单调递增的栅栏令牌（fencing token），
+ * 生产环境使用 Redis 实现，单机开发和测试可使用进程内实现。
+ */
+public interface LockStore {
+
+    /**
+     * 尝试获取租约锁（等价于 SET key token NX PX leaseMillis）
+     * @return 是否获取成功
+     */
+    boolean tryAcquire(String key, String token, long leaseMillis);
+
+    /**
+     * 释放锁，只有持有者令牌匹配时才会删除
+     * @return 是否释放成功
+     */
+    boolean release(String key, String token);
+
+    /**
+     * 续约，只有持有者令牌匹配时才会延长租约
+     * @return 是否续约成功
+     */
+    boolean renew(String key, String token, long leaseMillis);
+
+    /**
+     * 生成下一个栅栏令牌，同一个 key 的令牌严格递增
+     */
+    long nextFence(String key);
+
+    /**
+     * 保证之后生成的栅栏令牌大于 floor，用于计数器丢失（如 Redis 清空、故障切换）后从数据库记录恢复
+     */
+    void raiseFence(String key, long floor);
+}
@@ -0,0 +1,27 @@
+package org.example.springboot.service;
+
+import org.example.springboot.entity.Room;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * 低楼层优先分配：优先分配低楼层、房间号较小的房间
+ * 候选房间查询时已按此顺序排序，不需要读取占用
+ */
+@Component
+public class LowestFloorAllocationStrategy implements RoomAllocationStrategy {
+
+    public static final String NAME = "lowest-floor";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public List<Room> rank(List<Room> candidates, LocalDate startDate, LocalDate endDate, OccupancyLookup occupancy) {
+        return candidates;
+    }
+}
@@ -1,21 +1,20 @@
 package org.example.springboot.service;
 
-import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
-import com.baomidou.mybatisplus.core.toolkit.StringUtils;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.baomidou.mybatisplus.extension.toolkit.Db;
 import jakarta.annotation.Resource;
+import org.example.springboot.DTO.OrderSummaryDTO;
 import org.example.springboot.entity.Order;
 import org.example.springboot.entity.Reservation;
 import org.example.springboot.entity.Room;
-import org.example.springboot.entity.RoomType;
 import org.example.springboot.entity.User;
 import org.example.springboot.exception.ServiceException;
 import org.example.springboot.mapper.OrderMapper;
 import org.example.springboot.mapper.ReservationMapper;
 import org.example.springboot.mapper.RoomMapper;
-import org.example.springboot.mapper.RoomTypeMapper;
-import org.example.springboot.mapper.UserMapper;
 import org.example.springboot.util.JwtTokenUtils;
+import org.example.springboot.util.Projection;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -24,7 +23,9 @@ import java.math.RoundingMode;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -40,61 +41,72 @@ public class OrderService {
     @Resource
     private ReservationMapper reservationMapper;
     
-    @Resource
-    private UserMapper userMapper;
-    
     @Resource
     private RoomMapper roomMapper;
-    
-    @Resource
-    private RoomTypeMapper roomTypeMapper;
 
     @Resource
     private BusinessSyncService businessSyncService;
+
+    @Resource
+    private RoomOccupancyIndex roomOccupancyIndex;
+
+    @Resource
+    private ReservationNightService reservationNightService;
+
+    @Resource
+    private ApplicationEventPublisher eventPublisher;
+
+    @Resource
+    private RoomTypeService roomTypeService;
+
+    // 订单列表可投影的字段 -> 列
+    private static final Map<String, String> SUMMARY_COLUMNS = new LinkedHashMap<>();
+
+    static {
+        SUMMARY_COLUMNS.put("id", "o.id");
+        SUMMARY_COLUMNS.put("orderNo", "o.order_no");
+        SUMMARY_COLUMNS.put("userId", "o.user_id");
+        SUMMARY_COLUMNS.put("username", "u.username");
+        SUMMARY_COLUMNS.put("reservationId", "o.reservation_id");
+        SUMMARY_COLUMNS.put("amount", "o.amount");
+        SUMMARY_COLUMNS.put("status", "o.status");
+        SUMMARY_COLUMNS.put("payTime", "o.pay_time");
+        SUMMARY_COLUMNS.put("payMethod", "o.pay_method");
+        SUMMARY_COLUMNS.put("roomNumber", "rm.room_number");
+        SUMMARY_COLUMNS.put("roomTypeName", "rt.name");
+        SUMMARY_COLUMNS.put("startDate", "r.start_date");
+        SUMMARY_COLUMNS.put("endDate", "r.end_date");
+        SUMMARY_COLUMNS.put("createTime", "o.create_time");
+    }
     
     /**
      * 分页查询订单
      */
     public Page<Order> getOrdersByPage(String orderNo, Long userId, Integer status, 
                                     Integer currentPage, Integer size) {
-        LambdaQueryWrapper<Order> queryWrapper = new LambdaQueryWrapper<>();
-        
-        // 添加查询条件
-        if (StringUtils.isNotBlank(orderNo)) {
-            queryWrapper.like(Order::getOrderNo, orderNo);
-        }
-        if (userId != null) {
-            queryWrapper.eq(Order::getUserId, userId);
-        }
-        if (status != null) {
-            queryWrapper.eq(Order::getStatus, status);
-        }
-        
-        // 按创建时间降序排序
-        queryWrapper.orderByDesc(Order::getCreateTime);
-        
-        Page<Order> page = orderMapper.selectPage(new Page<>(currentPage, size), queryWrapper);
-        
-        // 查询关联数据
-        for (Order order : page.getRecords()) {
-            loadOrderAssociations(order);
-        }
-        
-        return page;
+        // 一条连接查询返回订单及其用户、预订、房间和房型
+        return orderMapper.selectDetailPage(new Page<>(currentPage, size), orderNo, userId, status);
+    }
+    
+    /**
+     * 分页查询订单的部分字段，只查询 fields 中的列
+     * @param fields 逗号分隔的 OrderSummaryDTO 字段名，或 summary 表示全部字段
+     */
+    public Page<OrderSummaryDTO> getOrderSummaryPage(String orderNo, Long userId, Integer status,
+                                                     Integer currentPage, Integer size, String fields) {
+        return orderMapper.selectSummaryPage(new Page<>(currentPage, size), Projection.of(SUMMARY_COLUMNS, fields),
+            orderNo, userId, status);
     }
     
     /**
      * 根据ID获取订单
      */
     public Order getOrderById(Long id) {
-        Order order = orderMapper.selectById(id);
+        Order order = orderMapper.selectDetailById(id);
         if (order == null) {
             throw new ServiceException("订单不存在");
         }
         
-        // 查询关联数据
-        loadOrderAssociations(order);
-        
         return order;
     }
     
@@ -102,17 +114,11 @@ public class OrderService {
      * 根据订单号获取订单
      */
     public Order getOrderByOrderNo(String orderNo) {
-        LambdaQueryWrapper<Order> queryWrapper = new LambdaQueryWrapper<>();
-        queryWrapper.eq(Order::getOrderNo, orderNo);
-        
-        Order order = orderMapper.selectOne(queryWrapper);
+        Order order = orderMapper.selectDetailByOrderNo(orderNo);
         if (order == null) {
             throw new ServiceException("订单不存在");
         }
         
-        // 查询关联数据
-        loadOrderAssociations(order);
-        
         return order;
     }
     
@@ -120,16 +126,9 @@ public class OrderService {
      * 查询预订的订单
      */
     public Order getOrderByReservationId(Long reservationId) {
-        LambdaQueryWrapper<Order> queryWrapper = new LambdaQueryWrapper<>();
-        queryWrapper.eq(Order::getReservationId, reservationId);
-        
-        Order order = orderMapper.selectOne(queryWrapper);
-        if (order != null) {
-            // 查询关联数据
-            loadOrderAssociations(order);
-        }
-        
-        return order;
+        // 同一预订有多个订单时取最新的
+        List<Order> orders = orderMapper.selectDetailList(null, reservationId);
+        return orders.isEmpty() ? null : orders.get(0);
     }
     
     /**
@@ -172,10 +171,38 @@ public class OrderService {
         if (orderMapper.insert(order) <= 0) {
             throw new ServiceException("创建订单失败");
         }
+        eventPublisher.publishEvent(new DashboardChangeEvent(DashboardChangeEvent.Entity.ORDER, order.getId(), "create"));
         
         return order;
     }
     
+    /**
+     * 为一批新建的预订创建订单（团体预订），使用 JDBC 批量插入
+     * 调用方负责校验预订归属，预订需包含 id、userId、price
+     */
+    @Transactional
+    public List<Order> createOrdersForReservations(List<Reservation> reservations) {
+        List<Order> orders = new ArrayList<>(reservations.size());
+        LocalDateTime now = LocalDateTime.now();
+        for (Reservation reservation : reservations) {
+            Order order = new Order();
+            order.setOrderNo(generateOrderNo());
+            order.setUserId(reservation.getUserId());
+            order.setReservationId(reservation.getId());
+            order.setAmount(reservation.getPrice());
+            order.setStatus(0); // 未支付
+            order.setCreateTime(now);
+            order.setUpdateTime(now);
+            orders.add(order);
+        }
+        
+        if (!orders.isEmpty() && !Db.saveBatch(orders)) {
+            throw new ServiceException("创建订单失败");
+        }
+        eventPublisher.publishEvent(new DashboardChangeEvent(DashboardChangeEvent.Entity.ORDER, null, "batchCreate"));
+        return orders;
+    }
+    
     /**
      * 更新订单状态
      */
@@ -212,6 +239,7 @@ public class OrderService {
         if (orderMapper.updateById(updateOrder) <= 0) {
             throw new ServiceException("更新订单状态失败");
         }
+        eventPublisher.publishEvent(new DashboardChangeEvent(DashboardChangeEvent.Entity.ORDER, id, "status"));
         
         // 同时更新预订的支付状态
         updateReservationPayStatus(order.getReservationId(), status);
@@ -273,6 +301,7 @@ public class OrderService {
         if (orderMapper.updateById(updateOrder) <= 0) {
             throw new ServiceException("支付订单失败");
         }
+        eventPublisher.publishEvent(new DashboardChangeEvent(DashboardChangeEvent.Entity.ORDER, id, "pay"));
 
         // 同时更新预订的支付状态
         updateReservationPayStatus(order.getReservationId(), 1);
@@ -321,6 +350,7 @@ public class OrderService {
         if (orderMapper.updateById(updateOrder) <= 0) {
             throw new ServiceException("取消订单失败");
         }
+        eventPublisher.publishEvent(new DashboardChangeEvent(DashboardChangeEvent.Entity.ORDER, id, "cancel"));
         
         // 同时更新预订的支付状态
         Reservation reservation = reservationMapper.selectById(order.getReservationId());
@@ -333,13 +363,19 @@ public class OrderService {
             Room room = roomMapper.selectById(reservation.getRoomId());
             if(room!=null){
                 room.setStatus(1);//释放房间占用状态
+                room.setUpdateTime(LocalDateTime.now());
                 roomMapper.updateById(room);
+                roomTypeService.evictRoomTypeCache(room.getRoomTypeId());
 
             }
 
             if (reservationMapper.updateById(updateReservation) <= 0) {
                 throw new ServiceException("更新预订状态失败");
             }
+
+            // 释放房晚占用和房间占用索引
+            reservationNightService.release(reservation.getId());
+            roomOccupancyIndex.refreshReservation(reservation.getId());
         }
     }
     
@@ -397,6 +433,7 @@ public class OrderService {
         if (orderMapper.updateById(updateOrder) <= 0) {
             throw new ServiceException("退款操作失败");
         }
+        eventPublisher.publishEvent(new DashboardChangeEvent(DashboardChangeEvent.Entity.ORDER, id, "refund"));
 
         // 更新预订状态
         Reservation updateReservation = new Reservation();
@@ -405,7 +442,9 @@ public class OrderService {
         Room room = roomMapper.selectById(reservation.getRoomId());
         if (room != null) {
             room.setStatus(1);
+            room.setUpdateTime(LocalDateTime.now());
             roomMapper.updateById(room);//释放房间
+            roomTypeService.evictRoomTypeCache(room.getRoomTypeId());
         }
 
         // 如果预订还未开始，自动取消预订
@@ -417,72 +456,35 @@ public class OrderService {
         if (reservationMapper.updateById(updateReservation) <= 0) {
             throw new ServiceException("更新预订状态失败");
         }
+
+        // 预订被取消时释放房晚占用和房间占用索引
+        if (updateReservation.getStatus() != null && updateReservation.getStatus() == 2) {
+            reservationNightService.release(reservation.getId());
+        }
+        roomOccupancyIndex.refreshReservation(reservation.getId());
     }
     
     /**
      * 获取用户的订单列表
      */
     public List<Order> getUserOrders(Long userId) {
-        LambdaQueryWrapper<Order> queryWrapper = new LambdaQueryWrapper<>();
-        queryWrapper.eq(Order::getUserId, userId);
-        queryWrapper.orderByDesc(Order::getCreateTime);
-        
-        List<Order> orders = orderMapper.selectList(queryWrapper);
-        
-        // 查询关联数据
-        for (Order order : orders) {
-            loadOrderAssociations(order);
-        }
-        
-        return orders;
+        return orderMapper.selectDetailList(userId, null);
     }
     
     /**
      * 统计订单
      */
     public BigDecimal calculateTotalAmount(Integer status) {
-        LambdaQueryWrapper<Order> queryWrapper = new LambdaQueryWrapper<>();
-        if (status != null) {
-            queryWrapper.eq(Order::getStatus, status);
-        }
-        
-        List<Order> orders = orderMapper.selectList(queryWrapper);
-        
         BigDecimal totalAmount = BigDecimal.ZERO;
-        for (Order order : orders) {
-            if (order.getAmount() != null) {
-                totalAmount = totalAmount.add(order.getAmount());
+        for (Map<String, Object> row : orderMapper.selectStatusTotals()) {
+            Object rowStatus = row.get("status");
+            if (status == null || rowStatus != null && status == ((Number) rowStatus).intValue()) {
+                totalAmount = totalAmount.add(toBigDecimal(row.get("totalAmount")));
             }
         }
-        
         return totalAmount;
     }
     
-    /**
-     * 查询关联数据
-     */
-    private void loadOrderAssociations(Order order) {
-        // 查询用户
-        User user = userMapper.selectById(order.getUserId());
-        order.setUser(user);
-        
-        // 查询预订
-        Reservation reservation = reservationMapper.selectById(order.getReservationId());
-        order.setReservation(reservation);
-        
-        // 加载预订关联的房间和房型信息
-        if (reservation != null) {
-            // 查询房间信息
-            Room room = roomMapper.selectById(reservation.getRoomId());
-            if (room != null) {
-                // 查询房间类型信息
-                RoomType roomType = roomTypeMapper.selectById(room.getRoomTypeId());
-                room.setRoomType(roomType);
-                reservation.setRoom(room);
-            }
-        }
-    }
-    
     /**
      * 更新预订的支付状态
      */
@@ -652,48 +654,37 @@ public class OrderService {
      * 获取订单统计
      */
     public Map<String, Object> getOrderStatistics() {
-        Map<String, Object> statistics = new HashMap<>();
+        // 一条分组查询取回各状态的订单数和金额
+        long[] counts = new long[4];
+        BigDecimal[] amounts = {BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO};
+        long totalOrders = 0;
+        BigDecimal totalAmount = BigDecimal.ZERO;
+        for (Map<String, Object> row : orderMapper.selectStatusTotals()) {
+            long count = ((Number) row.get("orderCount")).longValue();
+            BigDecimal amount = toBigDecimal(row.get("totalAmount"));
+            totalOrders += count;
+            totalAmount = totalAmount.add(amount);
+            Object status = row.get("status");
+            int index = status == null ? -1 : ((Number) status).intValue();
+            if (index >= 0 && index < counts.length) {
+                counts[index] = count;
+                amounts[index] = amount;
+            }
+        }
 
-        // 总订单数
-        long totalOrders = orderMapper.selectCount(null);
+        Map<String, Object> statistics = new HashMap<>();
         statistics.put("totalOrders", totalOrders);
-
-        // 待支付订单数
-        long pendingOrders = orderMapper.selectCount(
-            new LambdaQueryWrapper<Order>().eq(Order::getStatus, 0)
-        );
-        statistics.put("pendingOrders", pendingOrders);
-
-        // 已支付订单数
-        long paidOrders = orderMapper.selectCount(
-            new LambdaQueryWrapper<Order>().eq(Order::getStatus, 1)
-        );
-        statistics.put("paidOrders", paidOrders);
-
-        // 已取消订单数
-        long cancelledOrders = orderMapper.selectCount(
-            new LambdaQueryWrapper<Order>().eq(Order::getStatus, 2)
-        );
-        statistics.put("cancelledOrders", cancelledOrders);
-
-        // 已退款订单数
-        long refundedOrders = orderMapper.selectCount(
-            new LambdaQueryWrapper<Order>().eq(Order::getStatus, 3)
-        );
-        statistics.put("refundedOrders", refundedOrders);
-
-        // 总金额统计
-        BigDecimal totalAmount = calculateTotalAmount(null);
+        statistics.put("pendingOrders", counts[0]);
+        statistics.put("paidOrders", counts[1]);
+        statistics.put("cancelledOrders", counts[2]);
+        statistics.put("refundedOrders", counts[3]);
         statistics.put("totalAmount", totalAmount);
-
-        // 已支付金额
-        BigDecimal paidAmount = calculateTotalAmount(1);
-        statistics.put("paidAmount", paidAmount);
-
-        // 已退款金额
-        BigDecimal refundedAmount = calculateTotalAmount(3);
-        statistics.put("refundedAmount", refundedAmount);
-
+        statistics.put("paidAmount", amounts[1]);
+        statistics.put("refundedAmount", amounts[3]);
         return statistics;
     }
+
+    private BigDecimal toBigDecimal(Object value) {
+        return value instanceof BigDecimal ? (BigDecimal) value : new BigDecimal(String.valueOf(value));
+    }
 }
\ No newline at end of file
@@ -0,0 +1,106 @@
+package org.example.springboot.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.springboot.entity.BookingHold;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * 基于 Redis 的保留存储
+ * 每个保留是一个带过期时间的 JSON 字符串；每个房间、每个用户各用一个按过期时间排序的 ZSET 记录其上的保留ID，
+ * 查询时先清掉已过期的成员。保存用一个 Lua 脚本完成用户保留数量检查和全部写入，
+ * 不会留下没有索引或没有过期时间的键。取出保留使用 GETDEL，保证同一保留只能被确认一次。
+ */
+public class RedisHoldStore implements HoldStore {
+
+    private static final String HOLD_KEY_PREFIX = "hotel:hold:";
+    private static final String ROOM_KEY_PREFIX = "hotel:hold:room:";
+    private static final String USER_KEY_PREFIX = "hotel:hold:user:";
+
+    // KEYS: 保留、房间索引、用户索引；ARGV: 保留JSON、有效期毫秒、保留ID、当前时间毫秒、用户保留上限
+    private static final DefaultRedisScript<Long> SAVE_SCRIPT = new DefaultRedisScript<>(
+        "redis.call('zremrangebyscore', KEYS[3], '-inf', ARGV[4]) " +
+        "if redis.call('zcard', KEYS[3]) >= tonumber(ARGV[5]) then return 0 end " +
+        "local expireAt = tonumber(ARGV[4]) + tonumber(ARGV[2]) " +
+        "redis.call('set', KEYS[1], ARGV[1], 'PX', ARGV[2]) " +
+        "redis.call('zadd', KEYS[2], expireAt, ARGV[3]) " +
+        "redis.call('pexpire', KEYS[2], ARGV[2]) " +
+        "redis.call('zadd', KEYS[3], expireAt, ARGV[3]) " +
+        "redis.call('pexpire', KEYS[3], ARGV[2]) " +
+        "return 1",
+        Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+
+    public RedisHoldStore(StringRedisTemplate redisTemplate, ObjectMapper objectMapper) {
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public boolean save(BookingHold hold, long ttlMillis, int maxPerUser) {
+        Long saved = redisTemplate.execute(SAVE_SCRIPT,
+            List.of(HOLD_KEY_PREFIX + hold.getId(), ROOM_KEY_PREFIX + hold.getRoomId(), USER_KEY_PREFIX + hold.getUserId()),
+            encode(hold), String.valueOf(ttlMillis), hold.getId(),
+            String.valueOf(System.currentTimeMillis()), String.valueOf(maxPerUser));
+        return saved != null && saved == 1;
+    }
+
+    @Override
+    public BookingHold get(String holdId) {
+        return decode(redisTemplate.opsForValue().get(HOLD_KEY_PREFIX + holdId));
+    }
+
+    @Override
+    public BookingHold take(String holdId) {
+        BookingHold hold = decode(redisTemplate.opsForValue().getAndDelete(HOLD_KEY_PREFIX + holdId));
+        if (hold != null) {
+            redisTemplate.opsForZSet().remove(ROOM_KEY_PREFIX + hold.getRoomId(), holdId);
+            redisTemplate.opsForZSet().remove(USER_KEY_PREFIX + hold.getUserId(), holdId);
+        }
+        return hold;
+    }
+
+    @Override
+    public List<BookingHold> findByRoom(Long roomId) {
+        String roomKey = ROOM_KEY_PREFIX + roomId;
+        redisTemplate.opsForZSet().removeRangeByScore(roomKey, 0, System.currentTimeMillis());
+        Set<String> holdIds = redisTemplate.opsForZSet().range(roomKey, 0, -1);
+        if (holdIds == null || holdIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<String> keys = holdIds.stream().map(id -> HOLD_KEY_PREFIX + id).collect(Collectors.toList());
+        List<String> values = redisTemplate.opsForValue().multiGet(keys);
+        if (values == null) {
+            return new ArrayList<>();
+        }
+        return values.stream().map(this::decode).filter(Objects::nonNull).collect(Collectors.toList());
+    }
+
+    private String encode(BookingHold hold) {
+        try {
+            return objectMapper.writeValueAsString(hold);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to encode booking hold " + hold.getId(), e);
+        }
+    }
+
+    private BookingHold decode(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(value, BookingHold.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to decode booking hold", e);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package org.example.springboot.service;
+
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+
+import java.time.Duration;
+import java.util.Collections;
+
+/**
+ * 基于 Redis 的锁存储
+ * 获取锁使用 SET NX PX，释放和续约使用 Lua 脚本保证"比较令牌再操作"的原子性，
+ * 栅栏令牌使用 INCR 生成，计数器落后时用 Lua 脚本只增不减地抬高。
+ */
+public class RedisLockStore implements LockStore {
+
+    private static final DefaultRedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+        "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+        Long.class);
+
+    private static final DefaultRedisScript<Long> RENEW_SCRIPT = new DefaultRedisScript<>(
+        "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('pexpire', KEYS[1], ARGV[2]) else return 0 end",
+        Long.class);
+
+    private static final DefaultRedisScript<Long> RAISE_SCRIPT = new DefaultRedisScript<>(
+        "local current = tonumber(redis.call('get', KEYS[1]) or '0') " +
+        "if current < tonumber(ARGV[1]) then redis.call('set', KEYS[1], ARGV[1]) return 1 else return 0 end",
+        Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+
+    public RedisLockStore(StringRedisTemplate redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    @Override
+    public boolean tryAcquire(String key, String token, long leaseMillis) {
+        Boolean acquired = redisTemplate.opsForValue().setIfAbsent(key, token, Duration.ofMillis(leaseMillis));
+        return Boolean.TRUE.equals(acquired);
+    }
+
+    @Override
+    public boolean release(String key, String token) {
+        Long result = redisTemplate.execute(RELEASE_SCRIPT, Collections.singletonList(key), token);
+        return result != null && result > 0;
+    }
+
+    @Override
+    public boolean renew(String key, String token, long leaseMillis) {
+        Long result = redisTemplate.execute(RENEW_SCRIPT, Collections.singletonList(key), token, String.valueOf(leaseMillis));
+        return result != null && result > 0;
+    }
+
+    @Override
+    public long nextFence(String key) {
+        Long fence = redisTemplate.opsForValue().increment(key);
+        if (fence == null) {
+            throw new IllegalStateException("failed to generate fencing token for " + key);
+        }
+        return fence;
+    }
+
+    @Override
+    public void raiseFence(String key, long floor) {
+        redisTemplate.execute(RAISE_SCRIPT, Collections.singletonList(key), String.valueOf(floor));
+    }
+}
@@ -1,28 +1,93 @@
 package org.example.springboot.service;
 
+import jakarta.annotation.PostConstruct;
 import jakarta.annotation.Resource;
+import org.example.springboot.util.JsonRedisCodec;
+import org.example.springboot.util.RedisCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 /**
  * Redis通用缓存服务类
  * 提供基础的缓存操作方法
+ * 字符串、数字和布尔值按字符串存储，可以直接递增或被其他客户端读取；
+ * 其他对象用 hotel.redis.codec 指定的编解码器编码，前面加上 4 字节版本头（标记、格式版本、编解码器ID、数据版本），
+ * 版本头不匹配或解码失败的值按未命中处理，修改缓存对象的结构后调大 hotel.redis.schema-version 即可让旧值失效
  */
 @Service
 public class RedisService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RedisService.class);
+
+    private static final byte MAGIC = 'H';
+    private static final byte FORMAT_VERSION = 1;
+    private static final int HEADER_LENGTH = 4;
+
+    // 版本号与加载前读取的一致时才写入缓存
+    private static final DefaultRedisScript<Long> SET_IF_VERSION_SCRIPT = new DefaultRedisScript<>(
+        "if (redis.call('get', KEYS[2]) or '0') == ARGV[2] then " +
+        "redis.call('set', KEYS[1], ARGV[1], 'PX', ARGV[3]) return 1 else return 0 end",
+        Long.class);
 
     @Resource
     private RedisTemplate<String, Object> redisTemplate;
 
+    @Resource
+    private RedisTemplate<String, byte[]> binaryRedisTemplate;
+
+    @Resource
+    private List<RedisCodec> redisCodecs;
+
+    @Resource
+    private JsonRedisCodec jsonRedisCodec;
+
+    // 写入对象使用的编解码器：json 或 compact
+    @Value("${hotel.redis.codec:json}")
+    private String codecName;
+
+    // 缓存对象的数据版本，取值 0-127
+    @Value("${hotel.redis.schema-version:1}")
+    private byte schemaVersion;
+
+    private RedisCodec writeCodec;
+
+    private final Map<Byte, RedisCodec> codecsById = new HashMap<>();
+
+    @PostConstruct
+    public void init() {
+        for (RedisCodec codec : redisCodecs) {
+            codecsById.put(codec.getId(), codec);
+            if (codec.getName().equals(codecName)) {
+                writeCodec = codec;
+            }
+        }
+        if (writeCodec == null) {
+            throw new IllegalStateException("Unknown hotel.redis.codec: " + codecName);
+        }
+    }
+
     /**
      * 设置缓存
      * @param key 键
      * @param value 值
      */
     public void set(String key, Object value) {
-        redisTemplate.opsForValue().set(key, String.valueOf(value));
+        if (isPlainValue(value)) {
+            redisTemplate.opsForValue().set(key, String.valueOf(value));
+        } else {
+            binaryRedisTemplate.opsForValue().set(key, encode(value));
+        }
     }
 
     /**
@@ -33,7 +98,26 @@ public class RedisService {
      * @param unit 时间单位
      */
     public void set(String key, Object value, long timeout, TimeUnit unit) {
-        redisTemplate.opsForValue().set(key, String.valueOf(value), timeout, unit);
+        if (isPlainValue(value)) {
+            redisTemplate.opsForValue().set(key, String.valueOf(value), timeout, unit);
+        } else {
+            binaryRedisTemplate.opsForValue().set(key, encode(value), timeout, unit);
+        }
+    }
+
+    /**
+     * 版本号键的值仍为 version 时才设置缓存并指定过期时间，检查和写入是一个原子操作
+     * 用于先读版本号再查数据库的缓存回填：加载期间缓存被失效（版本号已递增）时放弃写入，旧数据不会写回缓存
+     * @param versionKey 版本号键，不存在时视为 "0"
+     * @param version 加载前读取的版本号
+     * @return 是否写入
+     */
+    public boolean setIfVersion(String key, Object value, String versionKey, String version, long timeout, TimeUnit unit) {
+        byte[] data = isPlainValue(value) ? String.valueOf(value).getBytes(StandardCharsets.UTF_8) : encode(value);
+        Long written = binaryRedisTemplate.execute(SET_IF_VERSION_SCRIPT, List.of(key, versionKey),
+            data, version.getBytes(StandardCharsets.UTF_8),
+            String.valueOf(unit.toMillis(timeout)).getBytes(StandardCharsets.UTF_8));
+        return written != null && written == 1;
     }
 
     /**
@@ -51,20 +135,66 @@ public class RedisService {
      * @param clazz 类型
      * @return 值
      */
-    @SuppressWarnings("unchecked")
     public <T> T get(String key, Class<T> clazz) {
-        Object value = redisTemplate.opsForValue().get(key);
-        if (value == null) {
-            return null;
-        }
-        try {
+        if (isPlainType(clazz)) {
+            Object value = redisTemplate.opsForValue().get(key);
+            if (value == null) {
+                return null;
+            }
             if (clazz == String.class) {
-                return (T) value;
-            } else {
-                // 对于非字符串类型，暂时返回null
+                return clazz.cast(value);
+            }
+            try {
+                return jsonRedisCodec.decode(value.toString().getBytes(StandardCharsets.UTF_8), clazz);
+            } catch (IOException e) {
                 return null;
             }
-        } catch (Exception e) {
+        }
+        return decode(key, binaryRedisTemplate.opsForValue().get(key), clazz);
+    }
+
+    private boolean isPlainValue(Object value) {
+        return value == null || isPlainType(value.getClass());
+    }
+
+    private boolean isPlainType(Class<?> type) {
+        return CharSequence.class.isAssignableFrom(type) || Number.class.isAssignableFrom(type)
+            || type == Boolean.class || type == Character.class;
+    }
+
+    private byte[] encode(Object value) {
+        byte[] body;
+        try {
+            body = writeCodec.encode(value);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Cannot encode " + value.getClass().getName(), e);
+        }
+        byte[] data = new byte[HEADER_LENGTH + body.length];
+        data[0] = MAGIC;
+        data[1] = FORMAT_VERSION;
+        data[2] = writeCodec.getId();
+        data[3] = schemaVersion;
+        System.arraycopy(body, 0, data, HEADER_LENGTH, body.length);
+        return data;
+    }
+
+    private <T> T decode(String key, byte[] data, Class<T> type) {
+        if (data == null) {
+            return null;
+        }
+        if (data.length < HEADER_LENGTH || data[0] != MAGIC || data[1] != FORMAT_VERSION || data[3] != schemaVersion) {
+            LOGGER.debug("缓存版本不匹配，按未命中处理: {}", key);
+            return null;
+        }
+        RedisCodec codec = codecsById.get(data[2]);
+        if (codec == null) {
+            LOGGER.warn("未知的缓存编解码器 {}，按未命中处理: {}", data[2], key);
+            return null;
+        }
+        try {
+            return codec.decode(Arrays.copyOfRange(data, HEADER_LENGTH, data.length), type);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("缓存解码失败，按未命中处理: {}", key, e);
             return null;
         }
     }
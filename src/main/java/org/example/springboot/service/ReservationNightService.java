@@ -0,0 +1,161 @@
+package org.example.springboot.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import jakarta.annotation.Resource;
+import org.example.springboot.entity.Reservation;
+import org.example.springboot.entity.ReservationNight;
+import org.example.springboot.exception.ServiceException;
+import org.example.springboot.mapper.ReservationNightMapper;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * 预订房晚占用服务
+ * 有效预订的每一晚写入 reservation_night，(room_id, night) 唯一键保证不会重复占用：
+ * 冲突在一次批量插入中以唯一键冲突的形式暴露，不需要先查询再插入。
+ * 所有改变预订房间、日期或有效状态的写路径都需要在同一事务内维护占用。
+ */
+@Service
+public class ReservationNightService {
+
+    @Resource
+    private ReservationNightMapper reservationNightMapper;
+
+    /**
+     * 占用预订的全部房晚
+     * @throws ServiceException 任一晚已被其他预订占用
+     */
+    public void claim(Reservation reservation) {
+        claimNights(reservation.getId(), reservation.getRoomId(), reservation.getStartDate(), reservation.getEndDate());
+    }
+
+    /**
+     * 占用房间在 [from, to) 内的房晚
+     * @throws ServiceException 任一晚已被其他预订占用
+     */
+    public void claimNights(Long reservationId, Long roomId, LocalDate from, LocalDate to) {
+        if (!tryClaimNights(reservationId, roomId, from, to)) {
+            throw new ServiceException("所选日期该房间已被预订，请选择其他日期或房间");
+        }
+    }
+
+    /**
+     * 尝试占用房间在 [from, to) 内的房晚
+     * 冲突时整条插入语句回滚，不影响当前事务中的其他写入
+     * @return 是否占用成功
+     */
+    public boolean tryClaimNights(Long reservationId, Long roomId, LocalDate from, LocalDate to) {
+        List<ReservationNight> nights = new ArrayList<>();
+        addNights(nights, reservationId, roomId, from, to);
+        return tryInsert(nights);
+    }
+
+    /**
+     * 用一条插入语句占用一批预订的全部房晚（团体预订）
+     * 任一晚冲突时整条语句回滚，一晚都不会占用
+     * @return 是否全部占用成功
+     */
+    public boolean tryClaimAll(Collection<Reservation> reservations) {
+        List<ReservationNight> nights = new ArrayList<>();
+        for (Reservation reservation : reservations) {
+            addNights(nights, reservation.getId(), reservation.getRoomId(), reservation.getStartDate(), reservation.getEndDate());
+        }
+        return tryInsert(nights);
+    }
+
+    private void addNights(List<ReservationNight> nights, Long reservationId, Long roomId, LocalDate from, LocalDate to) {
+        for (LocalDate night = from; night.isBefore(to); night = night.plusDays(1)) {
+            ReservationNight reservationNight = new ReservationNight();
+            reservationNight.setRoomId(roomId);
+            reservationNight.setNight(night);
+            reservationNight.setReservationId(reservationId);
+            nights.add(reservationNight);
+        }
+    }
+
+    private boolean tryInsert(List<ReservationNight> nights) {
+        if (nights.isEmpty()) {
+            return true;
+        }
+        try {
+            reservationNightMapper.insertBatch(nights);
+            return true;
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 释放预订的全部房晚
+     */
+    public void release(Long reservationId) {
+        reservationNightMapper.delete(
+            new LambdaQueryWrapper<ReservationNight>()
+                .eq(ReservationNight::getReservationId, reservationId)
+        );
+    }
+
+    /**
+     * 按预订当前状态重建占用：待确认、已确认的预订占用 [startDate, endDate)，其他状态释放
+     * @param reservation 需包含 id、roomId、startDate、endDate、status
+     * @throws ServiceException 新的房晚已被其他预订占用
+     */
+    public void sync(Reservation reservation) {
+        release(reservation.getId());
+        Integer status = reservation.getStatus();
+        if (status != null && (status == 0 || status == 1)) {
+            claim(reservation);
+        }
+    }
+
+    /**
+     * 统计房间在 [from, to) 内已被占用的房晚数
+     * @param excludeReservationId 需要排除的预订ID，可为空
+     */
+    public long countClaimedNights(Long roomId, LocalDate from, LocalDate to, Long excludeReservationId) {
+        return reservationNightMapper.selectCount(claimedNightsQuery(roomId, from, to, excludeReservationId));
+    }
+
+    /**
+     * 以加锁读统计房间在 [from, to) 内已被占用的房晚数
+     * 加锁读总是读取最新提交的数据，不受事务快照影响：可重复读隔离级别下，
+     * 事务在获取房间锁之前的任何查询都会建立快照，之后的普通查询看不到其他节点在此期间提交的预订。
+     * 用于持有房间锁后的再次检查
+     * @param excludeReservationId 需要排除的预订ID，可为空
+     */
+    public long countClaimedNightsForUpdate(Long roomId, LocalDate from, LocalDate to, Long excludeReservationId) {
+        return reservationNightMapper.selectCount(
+            claimedNightsQuery(roomId, from, to, excludeReservationId).last("LOCK IN SHARE MODE")
+        );
+    }
+
+    private LambdaQueryWrapper<ReservationNight> claimedNightsQuery(Long roomId, LocalDate from, LocalDate to, Long excludeReservationId) {
+        return new LambdaQueryWrapper<ReservationNight>()
+            .eq(ReservationNight::getRoomId, roomId)
+            .ge(ReservationNight::getNight, from)
+            .lt(ReservationNight::getNight, to)
+            .ne(excludeReservationId != null, ReservationNight::getReservationId, excludeReservationId);
+    }
+
+    /**
+     * 从给定房间中找出在 [from, to) 内有房晚被占用的房间
+     */
+    public Set<Long> findClaimedRoomIds(Collection<Long> roomIds, LocalDate from, LocalDate to) {
+        List<ReservationNight> nights = reservationNightMapper.selectList(
+            new LambdaQueryWrapper<ReservationNight>()
+                .select(ReservationNight::getRoomId)
+                .in(ReservationNight::getRoomId, roomIds)
+                .ge(ReservationNight::getNight, from)
+                .lt(ReservationNight::getNight, to)
+                .groupBy(ReservationNight::getRoomId)
+        );
+        return nights.stream().map(ReservationNight::getRoomId).collect(Collectors.toSet());
+    }
+}
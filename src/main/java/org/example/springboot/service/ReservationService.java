@@ -3,7 +3,12 @@ package org.example.springboot.service;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.toolkit.StringUtils;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.baomidou.mybatisplus.extension.toolkit.Db;
 import jakarta.annotation.Resource;
+import org.example.springboot.DTO.GroupReservationDTO;
+import org.example.springboot.DTO.ReservationSummaryDTO;
+import org.example.springboot.entity.BookingHold;
+import org.example.springboot.entity.Order;
 import org.example.springboot.entity.Reservation;
 import org.example.springboot.entity.Room;
 import org.example.springboot.entity.RoomType;
@@ -14,6 +19,9 @@ import org.example.springboot.mapper.RoomMapper;
 import org.example.springboot.mapper.RoomTypeMapper;
 import org.example.springboot.mapper.UserMapper;
 import org.example.springboot.util.JwtTokenUtils;
+import org.example.springboot.util.Projection;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -21,9 +29,13 @@ import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 /**
  * 预订服务类
@@ -47,6 +59,70 @@ public class ReservationService {
 
     @Resource
     private BusinessSyncService businessSyncService;
+
+    @Resource
+    private RoomOccupancyIndex roomOccupancyIndex;
+
+    @Resource
+    private RoomLockService roomLockService;
+
+    @Resource
+    private RoomFenceService roomFenceService;
+
+    @Resource
+    private StatsRollupService statsRollupService;
+
+    @Resource
+    private ReservationNightService reservationNightService;
+
+    @Resource
+    private OrderService orderService;
+
+    @Resource
+    private BookingHoldService bookingHoldService;
+
+    @Resource
+    private ApplicationEventPublisher eventPublisher;
+
+    // 是否启用应用层房间锁；关闭后完全依赖房晚占用表的唯一键检测冲突
+    @Value("${hotel.lock.enabled:true}")
+    private boolean lockEnabled;
+
+    // 多实例部署时启用分布式锁
+    @Value("${hotel.lock.distributed-enabled:true}")
+    private boolean distributedLockEnabled;
+
+    // 等待房间锁的超时时间
+    @Value("${hotel.lock.timeout-ms:3000}")
+    private long lockTimeoutMillis;
+
+    // 团体预订分配模式
+    private static final String GROUP_MODE_ALL_OR_NOTHING = "ALL_OR_NOTHING";
+    private static final String GROUP_MODE_BEST_EFFORT = "BEST_EFFORT";
+
+    // 团体预订一次最多预订的房间数
+    private static final int MAX_GROUP_ROOMS = 50;
+
+    // 预订列表可投影的字段 -> 列
+    private static final Map<String, String> SUMMARY_COLUMNS = new LinkedHashMap<>();
+
+    static {
+        SUMMARY_COLUMNS.put("id", "r.id");
+        SUMMARY_COLUMNS.put("userId", "r.user_id");
+        SUMMARY_COLUMNS.put("username", "u.username");
+        SUMMARY_COLUMNS.put("roomId", "r.room_id");
+        SUMMARY_COLUMNS.put("roomNumber", "rm.room_number");
+        SUMMARY_COLUMNS.put("roomTypeName", "rt.name");
+        SUMMARY_COLUMNS.put("startDate", "r.start_date");
+        SUMMARY_COLUMNS.put("endDate", "r.end_date");
+        SUMMARY_COLUMNS.put("guestName", "r.guest_name");
+        SUMMARY_COLUMNS.put("guestPhone", "r.guest_phone");
+        SUMMARY_COLUMNS.put("guestCount", "r.guest_count");
+        SUMMARY_COLUMNS.put("price", "r.price");
+        SUMMARY_COLUMNS.put("status", "r.status");
+        SUMMARY_COLUMNS.put("payStatus", "r.pay_status");
+        SUMMARY_COLUMNS.put("createTime", "r.create_time");
+    }
     
     /**
      * 分页查询预订
@@ -54,80 +130,37 @@ public class ReservationService {
     public Page<Reservation> getReservationsByPage(Long userId, Long roomId, Integer status,
                                                 Integer payStatus, LocalDate startDate, 
                                                 LocalDate endDate, Integer currentPage, Integer size) {
-        LambdaQueryWrapper<Reservation> queryWrapper = new LambdaQueryWrapper<>();
-        
-        // 添加查询条件
-        if (userId != null) {
-            queryWrapper.eq(Reservation::getUserId, userId);
-        }
-        if (roomId != null) {
-            queryWrapper.eq(Reservation::getRoomId, roomId);
-        }
-        if (status != null) {
-            queryWrapper.eq(Reservation::getStatus, status);
-        }
-        if (payStatus != null) {
-            queryWrapper.eq(Reservation::getPayStatus, payStatus);
-        }
-        if (startDate != null) {
-            queryWrapper.ge(Reservation::getStartDate, startDate);
-        }
-        if (endDate != null) {
-            queryWrapper.le(Reservation::getEndDate, endDate);
-        }
-        
-        // 排序
-        queryWrapper.orderByDesc(Reservation::getCreateTime);
-        
-        // 分页查询
-        Page<Reservation> page = reservationMapper.selectPage(new Page<>(currentPage, size), queryWrapper);
-        
-        // 查询关联信息
-        for (Reservation reservation : page.getRecords()) {
-            // 查询用户信息
-            User user = userMapper.selectById(reservation.getUserId());
-            reservation.setUser(user);
-            
-            // 查询房间信息
-            Room room = roomMapper.selectById(reservation.getRoomId());
-            if (room != null) {
-                // 查询房间类型信息
-                RoomType roomType = roomTypeMapper.selectById(room.getRoomTypeId());
-                room.setRoomType(roomType);
-                reservation.setRoom(room);
-            }
-        }
-        
-        return page;
+        // 一条连接查询返回预订及其用户、房间和房型
+        return reservationMapper.selectDetailPage(new Page<>(currentPage, size),
+            userId, roomId, status, payStatus, startDate, endDate);
+    }
+    
+    /**
+     * 分页查询预订的部分字段，只查询 fields 中的列
+     * @param fields 逗号分隔的 ReservationSummaryDTO 字段名，或 summary 表示全部字段
+     */
+    public Page<ReservationSummaryDTO> getReservationSummaryPage(Long userId, Long roomId, Integer status,
+                                                              Integer payStatus, LocalDate startDate, LocalDate endDate,
+                                                              Integer currentPage, Integer size, String fields) {
+        return reservationMapper.selectSummaryPage(new Page<>(currentPage, size), Projection.of(SUMMARY_COLUMNS, fields),
+            userId, roomId, status, payStatus, startDate, endDate);
     }
     
     /**
      * 根据ID获取预订
      */
     public Reservation getReservationById(Long id) {
-        Reservation reservation = reservationMapper.selectById(id);
+        // 一条连接查询返回预订及其用户、房间、房型和订单
+        Reservation reservation = reservationMapper.selectDetailById(id);
         if (reservation == null) {
             throw new ServiceException("预订不存在");
         }
         
-        // 查询用户信息
-        User user = userMapper.selectById(reservation.getUserId());
-        reservation.setUser(user);
-        
-        // 查询房间信息
-        Room room = roomMapper.selectById(reservation.getRoomId());
-        if (room != null) {
-            // 查询房间类型信息
-            RoomType roomType = roomTypeMapper.selectById(room.getRoomTypeId());
-            room.setRoomType(roomType);
-            reservation.setRoom(room);
-        }
-        
         return reservation;
     }
     
     /**
-     * 创建预订 - 使用分布式锁防止竞态条件
+     * 创建预订 - 使用房间日期区间锁防止竞态条件
      */
     @Transactional
     public Reservation createReservation(Reservation reservation) {
@@ -141,51 +174,407 @@ public class ReservationService {
         // 验证预订信息
         validateReservation(reservation);
 
-        // 使用分布式锁防止并发预订同一房间
-        String lockKey = "room_reservation_" + reservation.getRoomId() + "_" +
-                        reservation.getStartDate() + "_" + reservation.getEndDate();
+        // 锁定该房间的入住区间直到事务结束，重叠的日期互斥，其他房间或不重叠的日期不受影响
+        lockRoom(reservation.getRoomId(), reservation.getStartDate(), reservation.getEndDate());
 
-        // 模拟分布式锁（最好使用Redis分布式锁）
-        synchronized (lockKey.intern()) {
-            // 在锁内重新检查房间可用性
-            checkRoomAvailabilityWithLock(reservation.getRoomId(), reservation.getStartDate(), reservation.getEndDate());
+        // 在锁内重新检查房间可用性
+        checkRoomAvailabilityWithLock(reservation.getRoomId(), reservation.getStartDate(), reservation.getEndDate());
 
-            // 设置预订状态
-            reservation.setStatus(0); // 待确认
-            reservation.setPayStatus(0); // 未支付
+        Room room = roomMapper.selectById(reservation.getRoomId());
+        if (room == null) {
+            throw new ServiceException("房间不存在");
+        }
 
-            // 计算总价
-            Room room = roomMapper.selectById(reservation.getRoomId());
-            if (room == null) {
-                throw new ServiceException("房间不存在");
+        RoomType roomType = roomTypeMapper.selectById(room.getRoomTypeId());
+        if (roomType == null) {
+            throw new ServiceException("房间类型不存在");
+        }
+
+        prepareNewReservation(reservation, roomType);
+        // 房晚占用的唯一键兜底：即使锁被绕过，重复占用也会在插入时失败并回滚
+        if (!placeReservation(reservation, reservation.getRoomId())) {
+            throw new ServiceException("所选日期该房间已被预订，请选择其他日期或房间");
+        }
+        return reservation;
+    }
+
+    /**
+     * 按房型分配房间并创建预订
+     * 候选房间按分配优先级排序，逐个尝试锁定并占用；某个房间被并发请求占用时直接尝试下一个，
+     * 只有所有候选房间都不可用时才失败。房型只查询一次，一次预订只有一段短的加锁区间。
+     */
+    @Transactional
+    public Reservation createReservationForRoomType(Long roomTypeId, Reservation reservation) {
+        // 获取当前登录用户
+        User currentUser = JwtTokenUtils.getCurrentUser();
+        if(currentUser==null){
+            throw new ServiceException("用户未登录");
+        }
+        reservation.setUserId(currentUser.getId());
+
+        if (roomTypeId == null) {
+            throw new ServiceException("房间类型不能为空");
+        }
+        validateStayInfo(reservation);
+
+        RoomType roomType = roomTypeMapper.selectById(roomTypeId);
+        if (roomType == null) {
+            throw new ServiceException("房间类型不存在");
+        }
+        if (roomType.getMaxPeople() < reservation.getGuestCount()) {
+            throw new ServiceException("没有满足入住人数要求的可用房间");
+        }
+
+        prepareNewReservation(reservation, roomType);
+
+        LocalDate startDate = reservation.getStartDate();
+        LocalDate endDate = reservation.getEndDate();
+        List<Room> candidates = roomService.getCandidateRooms(roomTypeId, startDate, endDate);
+
+        // 第一轮不等待，跳过正被其他请求锁定的房间；都没抢到时再按超时时间等待这些房间
+        List<Room> busyRooms = new ArrayList<>();
+        for (Room room : candidates) {
+            RoomClaim claim = tryClaimRoom(room.getId(), startDate, endDate, false);
+            if (claim == RoomClaim.CLAIMED && placeReservation(reservation, room.getId())) {
+                return reservation;
+            }
+            if (claim == RoomClaim.BUSY) {
+                busyRooms.add(room);
+            }
+        }
+        for (Room room : busyRooms) {
+            if (tryClaimRoom(room.getId(), startDate, endDate, true) == RoomClaim.CLAIMED
+                    && placeReservation(reservation, room.getId())) {
+                return reservation;
             }
+        }
 
-            RoomType roomType = roomTypeMapper.selectById(room.getRoomTypeId());
+        throw new ServiceException("该房型在所选日期没有可用房间");
+    }
+
+    /**
+     * 确认预订保留：把保留的房间转为正式预订并创建订单
+     * 在房间锁内确认保留仍然有效，事务提交后才移除保留，失败时保留继续有效直到过期
+     */
+    @Transactional
+    public Reservation confirmHold(String holdId, String guestName, String guestPhone, String notes) {
+        // 获取当前登录用户
+        User currentUser = JwtTokenUtils.getCurrentUser();
+        if(currentUser==null){
+            throw new ServiceException("用户未登录");
+        }
+
+        BookingHold hold = bookingHoldService.getHold(holdId);
+        if (hold == null) {
+            throw new ServiceException("保留不存在或已过期，请重新选择房间");
+        }
+        if (!hold.getUserId().equals(currentUser.getId())) {
+            throw new ServiceException("无权确认此保留");
+        }
+
+        Reservation reservation = new Reservation();
+        reservation.setUserId(currentUser.getId());
+        reservation.setRoomId(hold.getRoomId());
+        reservation.setStartDate(hold.getStartDate());
+        reservation.setEndDate(hold.getEndDate());
+        reservation.setGuestCount(hold.getGuestCount());
+        reservation.setGuestName(guestName);
+        reservation.setGuestPhone(guestPhone);
+        reservation.setNotes(notes);
+        validateReservation(reservation);
+
+        lockRoom(hold.getRoomId(), hold.getStartDate(), hold.getEndDate());
+        // 保留在加锁前可能已经过期，房间随后可能被其他用户保留
+        if (bookingHoldService.getHold(holdId) == null) {
+            throw new ServiceException("保留已过期，请重新选择房间");
+        }
+
+        RoomType roomType = roomTypeMapper.selectById(hold.getRoomTypeId());
+        if (roomType == null) {
+            throw new ServiceException("房间类型不存在");
+        }
+
+        prepareNewReservation(reservation, roomType);
+        if (!placeReservation(reservation, hold.getRoomId())) {
+            throw new ServiceException("所选日期该房间已被预订，请选择其他日期或房间");
+        }
+        Order order = orderService.createOrdersForReservations(List.of(reservation)).get(0);
+        reservation.setOrder(order);
+
+        bookingHoldService.releaseAfterCommit(holdId);
+        return reservation;
+    }
+
+    /**
+     * 团体预订：一次请求预订多个房型的多间房
+     * 所有房型的候选房间一次查出，逐间不等待地锁定，被其他请求锁定的房间最后再按超时等待；
+     * 预订、房晚占用和订单都批量写入。
+     * ALL_OR_NOTHING 模式下任一房型数量不足则整体失败回滚，BEST_EFFORT 模式下尽量分配并返回各房型的分配结果。
+     */
+    @Transactional
+    public Map<String, Object> createGroupReservation(GroupReservationDTO request) {
+        // 获取当前登录用户
+        User currentUser = JwtTokenUtils.getCurrentUser();
+        if(currentUser==null){
+            throw new ServiceException("用户未登录");
+        }
+
+        boolean allOrNothing = isAllOrNothing(request.getMode());
+        Map<Long, GroupReservationDTO.Item> items = validateGroupReservation(request);
+
+        Map<Long, RoomType> roomTypes = roomTypeMapper.selectBatchIds(items.keySet()).stream()
+            .collect(Collectors.toMap(RoomType::getId, roomType -> roomType));
+        for (GroupReservationDTO.Item item : items.values()) {
+            RoomType roomType = roomTypes.get(item.getRoomTypeId());
             if (roomType == null) {
                 throw new ServiceException("房间类型不存在");
             }
+            if (roomType.getMaxPeople() < item.getGuestCount()) {
+                throw new ServiceException("房型" + roomType.getName() + "的入住人数超过上限");
+            }
+        }
 
-            // 计算入住天数
-            long days = ChronoUnit.DAYS.between(reservation.getStartDate(), reservation.getEndDate());
-            if (days <= 0) {
-                throw new ServiceException("入住天数必须大于0");
+        LocalDate startDate = request.getStartDate();
+        LocalDate endDate = request.getEndDate();
+        Map<Long, List<Room>> candidates = roomService.getCandidateRoomsByType(items.keySet(), startDate, endDate);
+        if (allOrNothing) {
+            // 候选房间不足时不必加锁，直接失败
+            for (GroupReservationDTO.Item item : items.values()) {
+                if (candidates.get(item.getRoomTypeId()).size() < item.getCount()) {
+                    throw new ServiceException("房型" + roomTypes.get(item.getRoomTypeId()).getName() + "在所选日期可用房间不足");
+                }
             }
+        }
 
-            // 计算总价
-            BigDecimal totalPrice = roomType.getPrice().multiply(new BigDecimal(days));
-            reservation.setPrice(totalPrice);
+        List<Reservation> reservations = new ArrayList<>();
+        Map<Long, Long> roomTypeIdByRoom = new HashMap<>();
+        for (GroupReservationDTO.Item item : items.values()) {
+            RoomType roomType = roomTypes.get(item.getRoomTypeId());
+            List<Room> rankedRooms = roomService.rankCandidates(candidates.get(item.getRoomTypeId()), startDate, endDate);
+            List<Long> roomIds = claimRooms(rankedRooms, item.getCount(), startDate, endDate);
+            if (allOrNothing && roomIds.size() < item.getCount()) {
+                throw new ServiceException("房型" + roomType.getName() + "在所选日期可用房间不足");
+            }
+            for (Long roomId : roomIds) {
+                Reservation reservation = new Reservation();
+                reservation.setUserId(currentUser.getId());
+                reservation.setRoomId(roomId);
+                reservation.setStartDate(startDate);
+                reservation.setEndDate(endDate);
+                reservation.setGuestCount(item.getGuestCount());
+                reservation.setGuestName(request.getGuestName());
+                reservation.setGuestPhone(request.getGuestPhone());
+                reservation.setNotes(request.getNotes());
+                prepareNewReservation(reservation, roomType);
+                reservations.add(reservation);
+                roomTypeIdByRoom.put(roomId, roomType.getId());
+            }
+        }
+        if (reservations.isEmpty()) {
+            throw new ServiceException("所选日期没有可用房间");
+        }
+
+        if (!Db.saveBatch(reservations)) {
+            throw new ServiceException("创建预订失败");
+        }
+        eventPublisher.publishEvent(new DashboardChangeEvent(DashboardChangeEvent.Entity.RESERVATION, null, "groupCreate"));
+
+        // 房晚占用的唯一键兜底：一条语句占用全部房晚，只有锁被绕过时才会冲突
+        if (!reservationNightService.tryClaimAll(reservations)) {
+            if (allOrNothing) {
+                throw new ServiceException("所选日期部分房间已被预订，请重新提交");
+            }
+            reservations = claimEach(reservations);
+            if (reservations.isEmpty()) {
+                throw new ServiceException("所选日期没有可用房间");
+            }
+        }
+        // 事务提交后写入房间占用索引
+        reservations.forEach(roomOccupancyIndex::syncReservation);
+
+        List<Order> orders = orderService.createOrdersForReservations(reservations);
+        for (int i = 0; i < reservations.size(); i++) {
+            reservations.get(i).setOrder(orders.get(i));
+        }
+
+        List<Map<String, Object>> allocations = new ArrayList<>();
+        int requested = 0;
+        for (GroupReservationDTO.Item item : items.values()) {
+            long allocated = reservations.stream()
+                .filter(reservation -> item.getRoomTypeId().equals(roomTypeIdByRoom.get(reservation.getRoomId())))
+                .count();
+            Map<String, Object> allocation = new HashMap<>();
+            allocation.put("roomTypeId", item.getRoomTypeId());
+            allocation.put("roomTypeName", roomTypes.get(item.getRoomTypeId()).getName());
+            allocation.put("requested", item.getCount());
+            allocation.put("allocated", allocated);
+            allocations.add(allocation);
+            requested += item.getCount();
+        }
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("mode", allOrNothing ? GROUP_MODE_ALL_OR_NOTHING : GROUP_MODE_BEST_EFFORT);
+        result.put("requested", requested);
+        result.put("allocated", reservations.size());
+        result.put("complete", reservations.size() == requested);
+        result.put("totalPrice", reservations.stream().map(Reservation::getPrice).reduce(BigDecimal.ZERO, BigDecimal::add));
+        result.put("allocations", allocations);
+        result.put("reservations", reservations);
+        return result;
+    }
+
+    /**
+     * 从候选房间中按顺序锁定最多 count 间房
+     * 第一轮不等待，跳过正被其他请求锁定的房间；数量不够时再按超时时间等待这些房间
+     * @return 锁定成功的房间ID，锁持有到事务结束
+     */
+    private List<Long> claimRooms(List<Room> candidates, int count, LocalDate startDate, LocalDate endDate) {
+        List<Long> claimed = new ArrayList<>();
+        List<Room> busyRooms = new ArrayList<>();
+        for (Room room : candidates) {
+            if (claimed.size() >= count) {
+                return claimed;
+            }
+            RoomClaim claim = tryClaimRoom(room.getId(), startDate, endDate, false);
+            if (claim == RoomClaim.CLAIMED) {
+                claimed.add(room.getId());
+            } else if (claim == RoomClaim.BUSY) {
+                busyRooms.add(room);
+            }
+        }
+        for (Room room : busyRooms) {
+            if (claimed.size() >= count) {
+                break;
+            }
+            if (tryClaimRoom(room.getId(), startDate, endDate, true) == RoomClaim.CLAIMED) {
+                claimed.add(room.getId());
+            }
+        }
+        return claimed;
+    }
+
+    /**
+     * 逐个占用预订的房晚，删除占用失败的预订
+     * @return 占用成功的预订
+     */
+    private List<Reservation> claimEach(List<Reservation> reservations) {
+        List<Reservation> placed = new ArrayList<>();
+        List<Long> failedIds = new ArrayList<>();
+        for (Reservation reservation : reservations) {
+            if (reservationNightService.tryClaimNights(reservation.getId(), reservation.getRoomId(),
+                    reservation.getStartDate(), reservation.getEndDate())) {
+                placed.add(reservation);
+            } else {
+                failedIds.add(reservation.getId());
+            }
+        }
+        if (!failedIds.isEmpty()) {
+            reservationMapper.deleteBatchIds(failedIds);
+        }
+        return placed;
+    }
+
+    /**
+     * 解析团体预订的分配模式，默认全部成功或全部失败
+     */
+    private boolean isAllOrNothing(String mode) {
+        if (StringUtils.isBlank(mode) || GROUP_MODE_ALL_OR_NOTHING.equalsIgnoreCase(mode)) {
+            return true;
+        }
+        if (GROUP_MODE_BEST_EFFORT.equalsIgnoreCase(mode)) {
+            return false;
+        }
+        throw new ServiceException("不支持的分配模式：" + mode);
+    }
+
+    /**
+     * 验证团体预订信息
+     * @return 房型ID -> 预订明细，保持请求中的顺序
+     */
+    private Map<Long, GroupReservationDTO.Item> validateGroupReservation(GroupReservationDTO request) {
+        if (request.getItems() == null || request.getItems().isEmpty()) {
+            throw new ServiceException("预订房型不能为空");
+        }
+
+        Map<Long, GroupReservationDTO.Item> items = new LinkedHashMap<>();
+        int total = 0;
+        for (GroupReservationDTO.Item item : request.getItems()) {
+            if (item.getRoomTypeId() == null) {
+                throw new ServiceException("房间类型不能为空");
+            }
+            if (item.getCount() == null || item.getCount() <= 0) {
+                throw new ServiceException("房间数量必须大于0");
+            }
+            if (items.put(item.getRoomTypeId(), item) != null) {
+                throw new ServiceException("同一房型只能出现一次");
+            }
 
-            // 设置创建时间和更新时间
-            reservation.setCreateTime(LocalDateTime.now());
-            reservation.setUpdateTime(LocalDateTime.now());
+            // 日期、入住人数和联系人按单个预订的规则校验
+            Reservation stay = new Reservation();
+            stay.setStartDate(request.getStartDate());
+            stay.setEndDate(request.getEndDate());
+            stay.setGuestCount(item.getGuestCount());
+            stay.setGuestName(request.getGuestName());
+            stay.setGuestPhone(request.getGuestPhone());
+            validateStayInfo(stay);
+            total += item.getCount();
+        }
+        if (total > MAX_GROUP_ROOMS) {
+            throw new ServiceException("团体预订一次最多预订" + MAX_GROUP_ROOMS + "间房");
+        }
+        return items;
+    }
 
-            // 保存预订
+    /**
+     * 把预订放到指定房间并占用房晚：首次写入预订，之后只修改房间
+     * 房晚占用冲突时只回滚占用语句本身，预订可以继续尝试下一个房间
+     * @return 房晚是否占用成功
+     */
+    private boolean placeReservation(Reservation reservation, Long roomId) {
+        reservation.setRoomId(roomId);
+        if (reservation.getId() == null) {
             if (reservationMapper.insert(reservation) <= 0) {
                 throw new ServiceException("创建预订失败");
             }
+            eventPublisher.publishEvent(new DashboardChangeEvent(DashboardChangeEvent.Entity.RESERVATION, reservation.getId(), "create"));
+        } else {
+            Reservation updateReservation = new Reservation();
+            updateReservation.setId(reservation.getId());
+            updateReservation.setRoomId(roomId);
+            reservationMapper.updateById(updateReservation);
+        }
+
+        if (!reservationNightService.tryClaimNights(reservation.getId(), roomId,
+                reservation.getStartDate(), reservation.getEndDate())) {
+            return false;
+        }
+
+        // 事务提交后写入房间占用索引
+        roomOccupancyIndex.syncReservation(reservation);
+        return true;
+    }
+
+    /**
+     * 新预订的初始状态：计算总价、设置状态和时间
+     */
+    private void prepareNewReservation(Reservation reservation, RoomType roomType) {
+        // 设置预订状态
+        reservation.setStatus(0); // 待确认
+        reservation.setPayStatus(0); // 未支付
 
-            return reservation;
+        // 计算入住天数
+        long days = ChronoUnit.DAYS.between(reservation.getStartDate(), reservation.getEndDate());
+        if (days <= 0) {
+            throw new ServiceException("入住天数必须大于0");
         }
+
+        // 计算总价
+        BigDecimal totalPrice = roomType.getPrice().multiply(new BigDecimal(days));
+        reservation.setPrice(totalPrice);
+
+        // 设置创建时间和更新时间
+        reservation.setCreateTime(LocalDateTime.now());
+        reservation.setUpdateTime(LocalDateTime.now());
     }
     
     /**
@@ -213,7 +602,9 @@ public class ReservationService {
             LocalDate startDate = reservation.getStartDate() != null ? reservation.getStartDate() : existingReservation.getStartDate();
             LocalDate endDate = reservation.getEndDate() != null ? reservation.getEndDate() : existingReservation.getEndDate();
             
-            checkRoomAvailability(roomId, startDate, endDate);
+            // 锁定新的房间日期区间直到事务结束，再检查可用性（排除本预订自身）
+            lockRoom(roomId, startDate, endDate);
+            checkRoomAvailability(id, roomId, startDate, endDate);
             
             // 重新计算总价
             Room room = roomMapper.selectById(roomId);
@@ -235,12 +626,22 @@ public class ReservationService {
             // 计算总价
             BigDecimal totalPrice = roomType.getPrice().multiply(new BigDecimal(days));
             reservation.setPrice(totalPrice);
+
+            // 原日期范围可能不再被覆盖，记录下来由下次经营汇总重算
+            statsRollupService.markDirty(existingReservation.getStartDate(), existingReservation.getEndDate());
         }
         
         reservation.setId(id);
         if (reservationMapper.updateById(reservation) <= 0) {
             throw new ServiceException("更新预订失败");
         }
+        eventPublisher.publishEvent(new DashboardChangeEvent(DashboardChangeEvent.Entity.RESERVATION, id, "update"));
+
+        // 按更新后的房间和日期重建房晚占用，冲突时整个更新回滚
+        reservationNightService.sync(reservationMapper.selectById(id));
+
+        // 房间或日期可能变化，提交后刷新房间占用索引
+        roomOccupancyIndex.refreshReservation(id);
     }
     
     /**
@@ -283,6 +684,13 @@ public class ReservationService {
         if (reservationMapper.updateById(reservation) <= 0) {
             throw new ServiceException("取消预订失败");
         }
+        eventPublisher.publishEvent(new DashboardChangeEvent(DashboardChangeEvent.Entity.RESERVATION, id, "cancel"));
+
+        // 释放房晚占用
+        reservationNightService.release(id);
+
+        // 释放房间占用索引
+        roomOccupancyIndex.syncReservation(reservation);
 
         // 异步执行预订取消补偿处理
         try {
@@ -342,6 +750,13 @@ public class ReservationService {
         if (reservationMapper.updateById(reservation) <= 0) {
             throw new ServiceException("更新预订状态失败");
         }
+        eventPublisher.publishEvent(new DashboardChangeEvent(DashboardChangeEvent.Entity.RESERVATION, id, "status"));
+
+        // 取消或完成的预订不再占用房间
+        if (status == 2 || status == 3) {
+            reservationNightService.release(id);
+        }
+        roomOccupancyIndex.syncReservation(reservation);
     }
 
     /**
@@ -390,61 +805,103 @@ public class ReservationService {
         if (reservationMapper.updateById(reservation) <= 0) {
             throw new ServiceException("更新支付状态失败");
         }
+        eventPublisher.publishEvent(new DashboardChangeEvent(DashboardChangeEvent.Entity.RESERVATION, id, "payStatus"));
     }
     
     /**
      * 查询用户的预订记录
      */
     public List<Reservation> getUserReservations(Long userId) {
-        LambdaQueryWrapper<Reservation> queryWrapper = new LambdaQueryWrapper<>();
-        queryWrapper.eq(Reservation::getUserId, userId);
-        queryWrapper.orderByDesc(Reservation::getCreateTime);
-        
-        List<Reservation> reservations = reservationMapper.selectList(queryWrapper);
-        
-        // 查询关联信息
-        for (Reservation reservation : reservations) {
-            // 查询房间信息
-            Room room = roomMapper.selectById(reservation.getRoomId());
-            if (room != null) {
-                // 查询房间类型信息
-                RoomType roomType = roomTypeMapper.selectById(room.getRoomTypeId());
-                room.setRoomType(roomType);
-                reservation.setRoom(room);
-            }
-        }
-        
-        return reservations;
+        return reservationMapper.selectUserDetailList(userId, null);
     }
     
     /**
      * 查询用户指定状态的预订记录
      */
     public List<Reservation> getUserReservationsByStatus(Long userId, Integer status) {
-        LambdaQueryWrapper<Reservation> queryWrapper = new LambdaQueryWrapper<>();
-        queryWrapper.eq(Reservation::getUserId, userId);
-        if (status != null) {
-            queryWrapper.eq(Reservation::getStatus, status);
+        return reservationMapper.selectUserDetailList(userId, status);
+    }
+    
+    /**
+     * 锁定房间的日期区间直到事务结束
+     * 先在本实例内按日期区间加锁，再获取区间覆盖的房间分段租约，并用栅栏令牌校验本事务的写入权
+     */
+    private void lockRoom(Long roomId, LocalDate startDate, LocalDate endDate) {
+        if (!lockEnabled) {
+            return;
         }
-        queryWrapper.orderByDesc(Reservation::getCreateTime);
-        
-        List<Reservation> reservations = reservationMapper.selectList(queryWrapper);
-        
-        // 查询关联信息
-        for (Reservation reservation : reservations) {
-            // 查询房间信息
-            Room room = roomMapper.selectById(reservation.getRoomId());
-            if (room != null) {
-                // 查询房间类型信息
-                RoomType roomType = roomTypeMapper.selectById(room.getRoomTypeId());
-                room.setRoomType(roomType);
-                reservation.setRoom(room);
+        roomLockService.lockUntilTransactionEnd(roomId, startDate, endDate);
+        if (!distributedLockEnabled) {
+            return;
+        }
+
+        RoomFenceService.RoomLease lease = roomFenceService.lease(roomId, startDate, endDate);
+        roomFenceService.holdUntilTransactionEnd(lease);
+        if (!roomFenceService.advance(lease)) {
+            throw new ServiceException("房间锁已失效，请重新提交预订");
+        }
+    }
+
+    /**
+     * 尝试锁定并占用房间的日期区间
+     * 成功时锁持有到事务结束；房间被锁定或已被预订时立即释放本次获取的锁
+     * @param wait 是否按超时时间等待其他请求释放锁
+     */
+    private RoomClaim tryClaimRoom(Long roomId, LocalDate startDate, LocalDate endDate, boolean wait) {
+        if (!lockEnabled) {
+            // 不加锁时只做预检查，最终由房晚占用的唯一键决定
+            return isUnavailable(roomId, startDate, endDate) ? RoomClaim.TAKEN : RoomClaim.CLAIMED;
+        }
+        long timeout = wait ? lockTimeoutMillis : 0;
+        RoomLockService.RoomLock localLock = roomLockService.tryLock(roomId, startDate, endDate, timeout, TimeUnit.MILLISECONDS);
+        if (localLock == null) {
+            return RoomClaim.BUSY;
+        }
+
+        RoomFenceService.RoomLease lease = null;
+        try {
+            if (distributedLockEnabled) {
+                lease = roomFenceService.tryLease(roomId, startDate, endDate, timeout);
+                if (lease == null) {
+                    localLock.close();
+                    return RoomClaim.BUSY;
+                }
+            }
+            if (isUnavailable(roomId, startDate, endDate)
+                    || lease != null && !roomFenceService.advance(lease)) {
+                localLock.close();
+                if (lease != null) {
+                    lease.close();
+                }
+                return RoomClaim.TAKEN;
+            }
+        } catch (RuntimeException e) {
+            localLock.close();
+            if (lease != null) {
+                lease.close();
             }
+            throw e;
         }
-        
-        return reservations;
+
+        roomLockService.holdUntilTransactionEnd(localLock);
+        if (lease != null) {
+            roomFenceService.holdUntilTransactionEnd(lease);
+        }
+        return RoomClaim.CLAIMED;
     }
-    
+
+    /**
+     * 房间占用尝试结果
+     */
+    private enum RoomClaim {
+        // 已锁定且可用
+        CLAIMED,
+        // 正被其他请求锁定
+        BUSY,
+        // 已被预订
+        TAKEN
+    }
+
     /**
      * 验证预订信息
      */
@@ -453,6 +910,13 @@ public class ReservationService {
             throw new ServiceException("房间ID不能为空");
         }
         
+        validateStayInfo(reservation);
+    }
+    
+    /**
+     * 验证入住日期和入住人信息
+     */
+    private void validateStayInfo(Reservation reservation) {
         if (reservation.getStartDate() == null) {
             throw new ServiceException("入住日期不能为空");
         }
@@ -484,8 +948,9 @@ public class ReservationService {
     
     /**
      * 检查房间是否可用
+     * @param excludeReservationId 需要排除的预订ID（修改预订时排除自身）
      */
-    private void checkRoomAvailability(Long roomId, LocalDate startDate, LocalDate endDate) {
+    private void checkRoomAvailability(Long excludeReservationId, Long roomId, LocalDate startDate, LocalDate endDate) {
         // 检查房间是否存在且可用
         Room room = roomMapper.selectById(roomId);
         if (room == null) {
@@ -496,29 +961,8 @@ public class ReservationService {
             throw new ServiceException("房间不可用");
         }
         
-        // 检查该房间在所选日期范围内是否已被预订
-        LambdaQueryWrapper<Reservation> queryWrapper = new LambdaQueryWrapper<>();
-        queryWrapper.eq(Reservation::getRoomId, roomId)
-            .and(wrapper -> wrapper
-                // 预订已确认或待确认
-                .in(Reservation::getStatus, 0, 1)
-                // 预订时间与查询时间有交集
-                .and(timeWrapper -> timeWrapper
-                    // 开始日期在查询范围内
-                    .between(Reservation::getStartDate, startDate, endDate.minusDays(1))
-                    .or()
-                    // 结束日期在查询范围内
-                    .between(Reservation::getEndDate, startDate.plusDays(1), endDate)
-                    .or()
-                    // 查询范围完全被预订范围包含
-                    .and(containWrapper -> containWrapper
-                        .le(Reservation::getStartDate, startDate)
-                        .ge(Reservation::getEndDate, endDate)
-                    )
-                )
-            );
-        
-        int count = Math.toIntExact(reservationMapper.selectCount(queryWrapper));
+        // 检查该房间在所选日期范围内的房晚是否已被其他预订占用
+        long count = countClaimedNights(roomId, startDate, endDate, excludeReservationId);
         if (count > 0) {
             throw new ServiceException("所选日期该房间已被预订，请选择其他日期或房间");
         }
@@ -551,28 +995,40 @@ public class ReservationService {
             throw new ServiceException("房间当前不可用（维护中）");
         }
 
-        // 更严格的时间冲突检查
-        LambdaQueryWrapper<Reservation> queryWrapper = new LambdaQueryWrapper<>();
-        queryWrapper.eq(Reservation::getRoomId, roomId)
-            .in(Reservation::getStatus, 0, 1) // 待确认或已确认
-            .and(wrapper -> wrapper
-                // 情况1: 新预订开始时间在现有预订期间内
-                .and(w1 -> w1.le(Reservation::getStartDate, startDate).gt(Reservation::getEndDate, startDate))
-                .or()
-                // 情况2: 新预订结束时间在现有预订期间内
-                .and(w2 -> w2.lt(Reservation::getStartDate, endDate).ge(Reservation::getEndDate, endDate))
-                .or()
-                // 情况3: 新预订完全包含现有预订
-                .and(w3 -> w3.ge(Reservation::getStartDate, startDate).le(Reservation::getEndDate, endDate))
-                .or()
-                // 情况4: 现有预订完全包含新预订
-                .and(w4 -> w4.le(Reservation::getStartDate, startDate).ge(Reservation::getEndDate, endDate))
-            );
-
-        long conflictCount = reservationMapper.selectCount(queryWrapper);
-        if (conflictCount > 0) {
+        if (countConflictingReservations(roomId, startDate, endDate) > 0) {
             throw new ServiceException("所选日期该房间已被预订，请选择其他日期或房间");
         }
+
+        if (bookingHoldService.isHeld(roomId, startDate, endDate)) {
+            throw new ServiceException("所选日期该房间正被其他用户保留，请选择其他日期或房间");
+        }
+    }
+
+    /**
+     * 房间在 [startDate, endDate) 内是否已被预订或保留
+     */
+    private boolean isUnavailable(Long roomId, LocalDate startDate, LocalDate endDate) {
+        return countConflictingReservations(roomId, startDate, endDate) > 0
+            || bookingHoldService.isHeld(roomId, startDate, endDate);
+    }
+
+    /**
+     * 统计房间在 [startDate, endDate) 内已被有效预订占用的房晚数（房晚占用表的主键范围查询）
+     */
+    private long countConflictingReservations(Long roomId, LocalDate startDate, LocalDate endDate) {
+        return countClaimedNights(roomId, startDate, endDate, null);
+    }
+
+    /**
+     * 统计房间在 [startDate, endDate) 内被其他预订占用的房晚数
+     * 启用房间锁时调用方已持有锁，此时用加锁读：事务快照可能在加锁前的查询中就已建立，
+     * 普通查询会漏掉其他节点在等待锁期间提交的预订
+     */
+    private long countClaimedNights(Long roomId, LocalDate startDate, LocalDate endDate, Long excludeReservationId) {
+        if (lockEnabled) {
+            return reservationNightService.countClaimedNightsForUpdate(roomId, startDate, endDate, excludeReservationId);
+        }
+        return reservationNightService.countClaimedNights(roomId, startDate, endDate, excludeReservationId);
     }
 
     /**
@@ -611,6 +1067,7 @@ public class ReservationService {
         if (reservationMapper.updateById(updateReservation) <= 0) {
             throw new ServiceException("办理入住失败");
         }
+        eventPublisher.publishEvent(new DashboardChangeEvent(DashboardChangeEvent.Entity.RESERVATION, reservationId, "checkIn"));
     }
 
     /**
@@ -653,6 +1110,13 @@ public class ReservationService {
         if (reservationMapper.updateById(updateReservation) <= 0) {
             throw new ServiceException("办理退房失败");
         }
+        eventPublisher.publishEvent(new DashboardChangeEvent(DashboardChangeEvent.Entity.RESERVATION, reservationId, "checkOut"));
+
+        // 退房后释放房晚占用
+        reservationNightService.release(reservationId);
+
+        // 退房后释放房间占用索引
+        roomOccupancyIndex.refreshReservation(reservationId);
 
         // 更新房间清洁状态（如果有房间服务）
         try {
@@ -721,8 +1185,9 @@ public class ReservationService {
         // 验证延长条件
         validateExtensionConditions(reservation, newEndDate);
 
-        // 检查延长期间房间是否可用
-        checkRoomAvailabilityWithLock(reservation.getRoomId(), reservation.getEndDate().plusDays(1), newEndDate);
+        // 锁定延长的区间 [原退房日期, 新退房日期) 并检查房间是否可用
+        lockRoom(reservation.getRoomId(), reservation.getEndDate(), newEndDate);
+        checkRoomAvailabilityWithLock(reservation.getRoomId(), reservation.getEndDate(), newEndDate);
 
         // 计算额外费用
         Room room = roomMapper.selectById(reservation.getRoomId());
@@ -748,6 +1213,13 @@ public class ReservationService {
         if (reservationMapper.updateById(updateReservation) <= 0) {
             throw new ServiceException("延长入住失败");
         }
+        eventPublisher.publishEvent(new DashboardChangeEvent(DashboardChangeEvent.Entity.RESERVATION, reservationId, "extend"));
+
+        // 占用延长的房晚，冲突时延长回滚
+        reservationNightService.claimNights(reservationId, reservation.getRoomId(), reservation.getEndDate(), newEndDate);
+
+        // 占用延长的日期
+        roomOccupancyIndex.refreshReservation(reservationId);
     }
 
     /**
@@ -9,27 +9,50 @@ import org.example.springboot.entity.Review;
 import org.example.springboot.entity.Room;
 import org.example.springboot.entity.User;
 import org.example.springboot.entity.RoomType;
+import org.example.springboot.entity.RoomTypeRating;
 import org.example.springboot.exception.ServiceException;
 import org.example.springboot.mapper.ReservationMapper;
 import org.example.springboot.mapper.ReviewMapper;
 import org.example.springboot.mapper.RoomMapper;
 import org.example.springboot.mapper.UserMapper;
 import org.example.springboot.mapper.RoomTypeMapper;
+import org.example.springboot.util.BatchQueryUtils;
 import org.example.springboot.util.JwtTokenUtils;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * 评价服务类
  */
 @Service
 public class ReviewService {
+    
+    /**
+     * 评价可回填的关联
+     */
+    public enum Include {
+        // 评价用户
+        USER,
+        // 房间类型
+        ROOM_TYPE,
+        // 预订
+        RESERVATION,
+        // 预订的房间
+        ROOM
+    }
+    
+    // 房型评价每页最多条数
+    private static final int MAX_PAGE_SIZE = 100;
+    
     @Resource
     private ReviewMapper reviewMapper;
     
@@ -45,11 +68,25 @@ public class ReviewService {
     @Resource
     private RoomTypeMapper roomTypeMapper;
     
+    @Resource
+    private RoomTypeRatingService roomTypeRatingService;
+
+    @Resource
+    private ApplicationEventPublisher eventPublisher;
+    
     /**
      * 分页查询评价
      */
     public Page<Review> getReviewsByPage(Long userId, Long roomTypeId, Long reservationId, Integer status,
                                       Integer currentPage, Integer size) {
+        return getReviewsByPage(userId, roomTypeId, reservationId, status, currentPage, size, EnumSet.allOf(Include.class));
+    }
+    
+    /**
+     * 分页查询评价，只回填指定的关联
+     */
+    public Page<Review> getReviewsByPage(Long userId, Long roomTypeId, Long reservationId, Integer status,
+                                      Integer currentPage, Integer size, Set<Include> includes) {
         LambdaQueryWrapper<Review> queryWrapper = new LambdaQueryWrapper<>();
         
         // 添加查询条件
@@ -71,10 +108,8 @@ public class ReviewService {
         
         Page<Review> page = reviewMapper.selectPage(new Page<>(currentPage, size), queryWrapper);
         
-        // 查询关联数据
-        for (Review review : page.getRecords()) {
-            loadReviewAssociations(review);
-        }
+        // 批量查询关联数据
+        loadReviewAssociations(page.getRecords(), includes);
         
         return page;
     }
@@ -164,6 +199,8 @@ public class ReviewService {
         if (reviewMapper.insert(review) <= 0) {
             throw new ServiceException("创建评价失败");
         }
+        roomTypeRatingService.applyChange(review.getRoomTypeId(), null, review.getScore());
+        eventPublisher.publishEvent(new DashboardChangeEvent(DashboardChangeEvent.Entity.REVIEW, review.getId(), "create"));
 
         return review;
     }
@@ -201,7 +238,7 @@ public class ReviewService {
     @Transactional
     public void updateReview(Long id, Review review) {
         // 检查评价是否存在
-        Review existingReview = reviewMapper.selectById(id);
+        Review existingReview = selectForUpdate(id);
         if (existingReview == null) {
             throw new ServiceException("评价不存在");
         }
@@ -213,10 +250,18 @@ public class ReviewService {
         review.setReservationId(existingReview.getReservationId());
         review.setCreateTime(existingReview.getCreateTime());
         review.setUpdateTime(LocalDateTime.now());
+        if (review.getScore() != null && (review.getScore() < 1 || review.getScore() > 5)) {
+            throw new ServiceException("评分必须在1-5之间");
+        }
         
-        if (reviewMapper.updateById(review) <= 0) {
+        if (reviewMapper.updateById(review) != 1) {
             throw new ServiceException("更新评价失败");
         }
+        Integer newScore = review.getScore() != null ? review.getScore() : existingReview.getScore();
+        Integer newStatus = review.getStatus() != null ? review.getStatus() : existingReview.getStatus();
+        roomTypeRatingService.applyChange(existingReview.getRoomTypeId(),
+            visibleScore(existingReview.getStatus(), existingReview.getScore()), visibleScore(newStatus, newScore));
+        eventPublisher.publishEvent(new DashboardChangeEvent(DashboardChangeEvent.Entity.REVIEW, id, "update"));
     }
     
     /**
@@ -240,6 +285,7 @@ public class ReviewService {
         if (reviewMapper.updateById(review) <= 0) {
             throw new ServiceException("回复评价失败");
         }
+        eventPublisher.publishEvent(new DashboardChangeEvent(DashboardChangeEvent.Entity.REVIEW, id, "reply"));
     }
     
     /**
@@ -248,7 +294,7 @@ public class ReviewService {
     @Transactional
     public void updateReviewStatus(Long id, Integer status) {
         // 检查评价是否存在
-        Review existingReview = reviewMapper.selectById(id);
+        Review existingReview = selectForUpdate(id);
         if (existingReview == null) {
             throw new ServiceException("评价不存在");
         }
@@ -259,9 +305,13 @@ public class ReviewService {
         review.setStatus(status);
         review.setUpdateTime(LocalDateTime.now());
         
-        if (reviewMapper.updateById(review) <= 0) {
+        if (reviewMapper.updateById(review) != 1) {
             throw new ServiceException("更新评价状态失败");
         }
+        roomTypeRatingService.applyChange(existingReview.getRoomTypeId(),
+            visibleScore(existingReview.getStatus(), existingReview.getScore()),
+            visibleScore(status, existingReview.getScore()));
+        eventPublisher.publishEvent(new DashboardChangeEvent(DashboardChangeEvent.Entity.REVIEW, id, "status"));
     }
     
     /**
@@ -270,14 +320,29 @@ public class ReviewService {
     @Transactional
     public void deleteReview(Long id) {
         // 检查评价是否存在
-        Review existingReview = reviewMapper.selectById(id);
+        Review existingReview = selectForUpdate(id);
         if (existingReview == null) {
             throw new ServiceException("评价不存在");
         }
         
-        if (reviewMapper.deleteById(id) <= 0) {
+        if (reviewMapper.deleteById(id) != 1) {
             throw new ServiceException("删除评价失败");
         }
+        roomTypeRatingService.applyChange(existingReview.getRoomTypeId(),
+            visibleScore(existingReview.getStatus(), existingReview.getScore()), null);
+        eventPublisher.publishEvent(new DashboardChangeEvent(DashboardChangeEvent.Entity.REVIEW, id, "delete"));
+    }
+
+    /**
+     * 读取评价并锁定该行直到事务结束
+     * 评分和状态的变化量按读到的旧值计算，并发修改同一评价时必须串行，否则评分汇总会重复或遗漏变化
+     */
+    private Review selectForUpdate(Long id) {
+        return reviewMapper.selectOne(
+            new LambdaQueryWrapper<Review>()
+                .eq(Review::getId, id)
+                .last("FOR UPDATE")
+        );
     }
     
     /**
@@ -291,10 +356,8 @@ public class ReviewService {
         
         List<Review> reviews = reviewMapper.selectList(queryWrapper);
         
-        // 查询关联数据
-        for (Review review : reviews) {
-            loadReviewAssociations(review);
-        }
+        // 批量查询关联数据
+        loadReviewAssociations(reviews, EnumSet.allOf(Include.class));
         
         return reviews;
     }
@@ -315,59 +378,138 @@ public class ReviewService {
 
         List<Review> reviews = reviewMapper.selectList(queryWrapper);
 
-        // 查询关联数据
-        for (Review review : reviews) {
-            loadReviewAssociations(review);
-        }
+        // 批量查询关联数据
+        loadReviewAssociations(reviews, EnumSet.allOf(Include.class));
 
         return reviews;
     }
-    
+
     /**
-     * 计算房间的平均评分
+     * 分页获取房间类型的公开评价，只回填指定的关联
      */
-    public double calculateRoomTypeAverageScore(Long roomTypeId) {
+    public Page<Review> getRoomTypeReviewsPage(Long roomTypeId, Integer currentPage, Integer size, Set<Include> includes) {
+        if (roomTypeMapper.selectById(roomTypeId) == null) {
+            throw new ServiceException("房型信息不存在");
+        }
+        if (size == null || size <= 0 || size > MAX_PAGE_SIZE) {
+            throw new ServiceException("每页条数必须在1-" + MAX_PAGE_SIZE + "之间");
+        }
+
         LambdaQueryWrapper<Review> queryWrapper = new LambdaQueryWrapper<>();
         queryWrapper.eq(Review::getRoomTypeId, roomTypeId);
         queryWrapper.eq(Review::getStatus, 1); // 只查询显示的评价
-        
-        List<Review> reviews = reviewMapper.selectList(queryWrapper);
-        
-        if (reviews.isEmpty()) {
-            return 0;
+        queryWrapper.orderByDesc(Review::getCreateTime);
+
+        Page<Review> page = reviewMapper.selectPage(new Page<>(currentPage, size), queryWrapper);
+
+        // 批量查询关联数据
+        loadReviewAssociations(page.getRecords(), includes);
+
+        return page;
+    }
+
+    /**
+     * 解析需要回填的关联，如 "user,roomType"；为空时回填全部关联
+     */
+    public Set<Include> parseIncludes(String include) {
+        if (StringUtils.isBlank(include)) {
+            return EnumSet.allOf(Include.class);
+        }
+        Set<Include> includes = EnumSet.noneOf(Include.class);
+        for (String name : include.split(",")) {
+            String normalized = name.trim().replaceAll("([a-z])([A-Z])", "$1_$2").toUpperCase();
+            if (normalized.isEmpty() || "NONE".equals(normalized)) {
+                continue;
+            }
+            try {
+                includes.add(Include.valueOf(normalized));
+            } catch (IllegalArgumentException e) {
+                throw new ServiceException("不支持的关联：" + name.trim());
+            }
+        }
+        return includes;
+    }
+    
+    /**
+     * 计算房间的平均评分
+     */
+    public double calculateRoomTypeAverageScore(Long roomTypeId) {
+        // 只统计显示的评价，读取评分汇总
+        return roomTypeRatingService.getRating(roomTypeId).getAverageScore();
+    }
+    
+    /**
+     * 批量获取房型的评分汇总（评价数、平均分和各星级数量）
+     */
+    public Map<Long, RoomTypeRating> getRoomTypeRatings(List<Long> roomTypeIds) {
+        if (roomTypeIds == null || roomTypeIds.isEmpty()) {
+            throw new ServiceException("房型ID不能为空");
         }
-        
-        int totalScore = 0;
-        for (Review review : reviews) {
-            totalScore += review.getScore();
+        if (roomTypeIds.size() > MAX_PAGE_SIZE) {
+            throw new ServiceException("一次最多查询" + MAX_PAGE_SIZE + "个房型");
         }
-        
-        return (double) totalScore / reviews.size();
+        return roomTypeRatingService.getRatings(roomTypeIds);
+    }
+    
+    /**
+     * 评价计入评分汇总的分数：只有显示中的评价计入，否则为 null
+     */
+    private Integer visibleScore(Integer status, Integer score) {
+        return status != null && status == 1 ? score : null;
     }
     
     /**
      * 查询关联数据
      */
     private void loadReviewAssociations(Review review) {
+        loadReviewAssociations(List.of(review), EnumSet.allOf(Include.class));
+    }
+    
+    /**
+     * 批量加载评价关联数据：每类关联一条 IN 查询，在内存中回填
+     * @param includes 需要回填的关联
+     */
+    private void loadReviewAssociations(List<Review> reviews, Set<Include> includes) {
+        if (reviews.isEmpty() || includes.isEmpty()) {
+            return;
+        }
+        
         // 查询用户
-        User user = userMapper.selectById(review.getUserId());
-        review.setUser(user);
+        if (includes.contains(Include.USER)) {
+            Map<Long, User> users = BatchQueryUtils.selectByIds(userMapper,
+                BatchQueryUtils.collectIds(reviews, Review::getUserId), User::getId);
+            for (Review review : reviews) {
+                review.setUser(users.get(review.getUserId()));
+            }
+        }
         
-
-            // 查询房间类型
-            RoomType roomType = roomTypeMapper.selectById(review.getRoomTypeId());
-
-
-        review.setRoomType(roomType);
+        // 查询房间类型
+        if (includes.contains(Include.ROOM_TYPE)) {
+            Map<Long, RoomType> roomTypes = BatchQueryUtils.selectByIds(roomTypeMapper,
+                BatchQueryUtils.collectIds(reviews, Review::getRoomTypeId), RoomType::getId);
+            for (Review review : reviews) {
+                review.setRoomType(roomTypes.get(review.getRoomTypeId()));
+            }
+        }
         
-        // 查询预订
-        Reservation reservation = reservationMapper.selectById(review.getReservationId());
-        if(reservation != null) {
-            Long roomId = reservation.getRoomId();
-            Room room = roomMapper.selectById(roomId);
-            review.setRoom(room);
+        // 查询预订及其房间
+        if (includes.contains(Include.RESERVATION) || includes.contains(Include.ROOM)) {
+            Map<Long, Reservation> reservations = BatchQueryUtils.selectByIds(reservationMapper,
+                BatchQueryUtils.collectIds(reviews, Review::getReservationId), Reservation::getId);
+            Map<Long, Room> rooms = includes.contains(Include.ROOM)
+                ? BatchQueryUtils.selectByIds(roomMapper,
+                    BatchQueryUtils.collectIds(reservations.values(), Reservation::getRoomId), Room::getId)
+                : new HashMap<>();
+            for (Review review : reviews) {
+                Reservation reservation = reservations.get(review.getReservationId());
+                if (reservation != null && includes.contains(Include.ROOM)) {
+                    review.setRoom(rooms.get(reservation.getRoomId()));
+                }
+                if (includes.contains(Include.RESERVATION)) {
+                    review.setReservation(reservation);
+                }
+            }
         }
-        review.setReservation(reservation);
     }
     
     /**
@@ -413,23 +555,14 @@ public class ReviewService {
         );
         statistics.put("hiddenReviews", hiddenReviews);
 
-        // 平均评分
-        List<Review> allReviews = reviewMapper.selectList(
-            new LambdaQueryWrapper<Review>().eq(Review::getStatus, 1)
-        );
-        double averageScore = 0;
-        if (!allReviews.isEmpty()) {
-            int totalScore = allReviews.stream().mapToInt(Review::getScore).sum();
-            averageScore = (double) totalScore / allReviews.size();
-        }
-        statistics.put("averageScore", Math.round(averageScore * 100.0) / 100.0);
+        // 平均评分，由各房型的评分汇总相加得到
+        RoomTypeRating total = roomTypeRatingService.getTotal();
+        statistics.put("averageScore", Math.round(total.getAverageScore() * 100.0) / 100.0);
 
         // 各评分等级统计
         Map<String, Long> scoreDistribution = new HashMap<>();
         for (int i = 1; i <= 5; i++) {
-            final int score = i;
-            long count = allReviews.stream().filter(r -> r.getScore() == score).count();
-            scoreDistribution.put(score + "星", count);
+            scoreDistribution.put(i + "星", (long) total.getScoreCount(i));
         }
         statistics.put("scoreDistribution", scoreDistribution);
 
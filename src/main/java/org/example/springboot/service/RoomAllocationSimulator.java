@@ -0,0 +1,204 @@
+package org.example.springboot.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import jakarta.annotation.Resource;
+import org.example.springboot.entity.Reservation;
+import org.example.springboot.entity.Room;
+import org.example.springboot.exception.ServiceException;
+import org.example.springboot.mapper.ReservationMapper;
+import org.example.springboot.mapper.RoomMapper;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * 房间分配策略模拟器
+ * 按创建顺序回放房型的历史预订请求，在内存中分别用每种分配策略重新分配房间，
+ * 比较各策略接受的预订数、售出率和留下的单晚空档，用于切换策略前评估效果。
+ * 回放只使用查询时的数据，不写数据库，也不影响实时占用。
+ */
+@Service
+public class RoomAllocationSimulator {
+
+    // 单次模拟最多回放的天数
+    private static final int MAX_SIMULATION_DAYS = 366;
+
+    @Resource
+    private RoomMapper roomMapper;
+
+    @Resource
+    private ReservationMapper reservationMapper;
+
+    @Resource
+    private List<RoomAllocationStrategy> allocationStrategies;
+
+    /**
+     * 回放房型在 [startDate, endDate) 内的预订请求，比较各分配策略
+     * 超出模拟区间的部分入住日期会被截掉，已取消的预订不参与回放
+     */
+    public Map<String, Object> simulate(Long roomTypeId, LocalDate startDate, LocalDate endDate) {
+        if (roomTypeId == null || startDate == null || endDate == null) {
+            throw new ServiceException("房间类型和日期不能为空");
+        }
+        if (!startDate.isBefore(endDate)) {
+            throw new ServiceException("开始日期必须早于结束日期");
+        }
+        if (endDate.toEpochDay() - startDate.toEpochDay() > MAX_SIMULATION_DAYS) {
+            throw new ServiceException("模拟区间不能超过" + MAX_SIMULATION_DAYS + "天");
+        }
+
+        List<Room> rooms = roomMapper.selectList(
+            new LambdaQueryWrapper<Room>()
+                .select(Room::getId, Room::getRoomNumber, Room::getRoomTypeId, Room::getFloor)
+                .eq(Room::getRoomTypeId, roomTypeId)
+                .eq(Room::getStatus, 1)
+                .orderByAsc(Room::getFloor)
+                .orderByAsc(Room::getRoomNumber)
+        );
+        if (rooms.isEmpty()) {
+            throw new ServiceException("该房型没有可用房间");
+        }
+
+        List<Long> roomIds = rooms.stream().map(Room::getId).collect(Collectors.toList());
+        List<Reservation> bookingLog = reservationMapper.selectList(
+            new LambdaQueryWrapper<Reservation>()
+                .select(Reservation::getId, Reservation::getStartDate, Reservation::getEndDate)
+                .in(Reservation::getRoomId, roomIds)
+                .ne(Reservation::getStatus, 2)
+                .lt(Reservation::getStartDate, endDate)
+                .gt(Reservation::getEndDate, startDate)
+                .orderByAsc(Reservation::getCreateTime)
+                .orderByAsc(Reservation::getId)
+        );
+
+        List<Map<String, Object>> results = new ArrayList<>();
+        for (RoomAllocationStrategy strategy : allocationStrategies) {
+            results.add(replay(rooms, bookingLog, strategy, startDate, endDate));
+        }
+
+        Map<String, Object> simulation = new HashMap<>();
+        simulation.put("roomTypeId", roomTypeId);
+        simulation.put("startDate", startDate);
+        simulation.put("endDate", endDate);
+        simulation.put("rooms", rooms.size());
+        simulation.put("requests", bookingLog.size());
+        simulation.put("strategies", results);
+        return simulation;
+    }
+
+    /**
+     * 用一种策略回放预订请求
+     */
+    private Map<String, Object> replay(List<Room> rooms, List<Reservation> bookingLog, RoomAllocationStrategy strategy,
+                                       LocalDate startDate, LocalDate endDate) {
+        SimulatedCalendar calendar = new SimulatedCalendar(startDate, endDate);
+        int accepted = 0;
+        int rejected = 0;
+        long soldNights = 0;
+
+        for (Reservation request : bookingLog) {
+            LocalDate from = request.getStartDate().isBefore(startDate) ? startDate : request.getStartDate();
+            LocalDate to = request.getEndDate().isAfter(endDate) ? endDate : request.getEndDate();
+
+            List<Room> candidates = new ArrayList<>();
+            for (Room room : rooms) {
+                if (calendar.isFree(room.getId(), from, to)) {
+                    candidates.add(room);
+                }
+            }
+            if (candidates.isEmpty()) {
+                rejected++;
+                continue;
+            }
+
+            Room selected = strategy.rank(candidates, from, to, calendar::getOccupiedNights).get(0);
+            calendar.occupy(selected.getId(), from, to);
+            accepted++;
+            soldNights += to.toEpochDay() - from.toEpochDay();
+        }
+
+        long capacityNights = (long) rooms.size() * calendar.nights;
+        Map<String, Object> result = new HashMap<>();
+        result.put("strategy", strategy.getName());
+        result.put("accepted", accepted);
+        result.put("rejected", rejected);
+        result.put("soldNights", soldNights);
+        result.put("capacityNights", capacityNights);
+        result.put("sellThrough", BigDecimal.valueOf(soldNights)
+            .divide(BigDecimal.valueOf(capacityNights), 4, RoundingMode.HALF_UP));
+        result.put("orphanNights", calendar.countOrphanNights());
+        return result;
+    }
+
+    /**
+     * 模拟区间内各房间的占用位图，第0位对应模拟开始日期
+     */
+    private static final class SimulatedCalendar {
+        private final long baseEpochDay;
+        private final int nights;
+        private final Map<Long, BitSet> rooms = new HashMap<>();
+
+        private SimulatedCalendar(LocalDate startDate, LocalDate endDate) {
+            this.baseEpochDay = startDate.toEpochDay();
+            this.nights = (int) (endDate.toEpochDay() - baseEpochDay);
+        }
+
+        private boolean isFree(Long roomId, LocalDate from, LocalDate to) {
+            BitSet occupied = rooms.get(roomId);
+            if (occupied == null) {
+                return true;
+            }
+            int next = occupied.nextSetBit(toIndex(from));
+            return next < 0 || next >= toIndex(to);
+        }
+
+        private void occupy(Long roomId, LocalDate from, LocalDate to) {
+            rooms.computeIfAbsent(roomId, key -> new BitSet(nights)).set(toIndex(from), toIndex(to));
+        }
+
+        /**
+         * 模拟区间之外的夜晚没有回放数据，视为空闲
+         */
+        private BitSet getOccupiedNights(Long roomId, LocalDate from, LocalDate to) {
+            BitSet result = new BitSet();
+            BitSet occupied = rooms.get(roomId);
+            if (occupied == null) {
+                return result;
+            }
+            long offset = from.toEpochDay() - baseEpochDay;
+            int start = toIndex(from);
+            int end = toIndex(to);
+            for (int i = occupied.nextSetBit(start); i >= 0 && i < end; i = occupied.nextSetBit(i + 1)) {
+                result.set((int) (i - offset));
+            }
+            return result;
+        }
+
+        /**
+         * 统计两侧都被占用的单晚空档
+         */
+        private int countOrphanNights() {
+            int count = 0;
+            for (BitSet occupied : rooms.values()) {
+                for (int i = occupied.nextClearBit(1); i < nights - 1; i = occupied.nextClearBit(i + 1)) {
+                    if (occupied.get(i - 1) && occupied.get(i + 1)) {
+                        count++;
+                    }
+                }
+            }
+            return count;
+        }
+
+        private int toIndex(LocalDate date) {
+            return (int) Math.max(0, Math.min(date.toEpochDay() - baseEpochDay, nights));
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package org.example.springboot.service;
+
+import org.example.springboot.entity.Room;
+
+import java.time.LocalDate;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * 房间分配策略
+ * 对入住区间内空闲的候选房间按分配优先级排序，预订时按顺序尝试锁定。
+ * 策略只通过 {@link OccupancyLookup} 读取占用，既可以作用于实时占用索引，也可以作用于模拟器中的回放状态。
+ */
+public interface RoomAllocationStrategy {
+
+    /**
+     * 策略名称，对应配置项 hotel.allocation.strategy
+     */
+    String getName();
+
+    /**
+     * 对候选房间排序
+     * @param candidates 在 [startDate, endDate) 内空闲的房间，已按低楼层、小房间号排序
+     * @return 按分配优先级排序后的房间
+     */
+    List<Room> rank(List<Room> candidates, LocalDate startDate, LocalDate endDate, OccupancyLookup occupancy);
+
+    /**
+     * 房间占用查询
+     */
+    @FunctionalInterface
+    interface OccupancyLookup {
+        /**
+         * 获取房间在 [from, to) 内不可售的夜晚，第0位对应 from
+         */
+        BitSet getOccupiedNights(Long roomId, LocalDate from, LocalDate to);
+    }
+}
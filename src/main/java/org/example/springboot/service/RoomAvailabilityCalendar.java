@@ -0,0 +1,265 @@
+package org.example.springboot.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import org.example.springboot.entity.Room;
+import org.example.springboot.mapper.RoomMapper;
+import org.example.springboot.util.RangeMinSegmentTree;
+import org.example.springboot.util.TransactionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 房型可用日历
+ * 为每个房型维护一棵"每晚空闲房间数"的线段树（房型 × 日期矩阵），用于按晚查看空闲房间数。
+ * 多晚范围的区间最小值只是"整段都空闲的房间数"的上界（不同房间可能在不同夜晚被占用），
+ * 因此只用它排除没有空房的房型：最小值为0时直接返回0，否则对房型内各房间的占用位图求交得到准确数量。
+ * 数据来源于房间占用索引：索引重建时整体重建，占用变化时按区间增量加减。
+ */
+@Service
+public class RoomAvailabilityCalendar implements RoomOccupancyIndex.OccupancyListener {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RoomAvailabilityCalendar.class);
+
+    @Resource
+    private RoomMapper roomMapper;
+
+    @Resource
+    private RoomOccupancyIndex roomOccupancyIndex;
+
+    // 日历覆盖的天数，超出部分回退到逐房间查询占用索引
+    @Value("${hotel.calendar.horizon-days:365}")
+    private int horizonDays;
+
+    private volatile CalendarState state;
+
+    @PostConstruct
+    public void init() {
+        roomOccupancyIndex.addListener(this);
+    }
+
+    /**
+     * 日历是否可用
+     */
+    public boolean isReady() {
+        return state != null && roomOccupancyIndex.isReady();
+    }
+
+    /**
+     * 房间信息变化后重建日历（事务提交后执行）
+     * 房间的新增、删除、房型变更、状态变更都会改变各房型的房间总数
+     */
+    public void reload() {
+        TransactionUtils.afterCommit(() -> {
+            if (!roomOccupancyIndex.isReady()) {
+                return;
+            }
+            // 重建期间阻止占用变化，保证日历与索引一致
+            roomOccupancyIndex.runExclusively(this::rebuild);
+        });
+    }
+
+    @Override
+    public void onIndexRebuilt() {
+        rebuild();
+    }
+
+    @Override
+    public void onNightsChanged(Long roomId, LocalDate from, LocalDate to, boolean occupied) {
+        CalendarState current = state;
+        if (current == null) {
+            return;
+        }
+        Long roomTypeId = current.roomTypes.get(roomId);
+        TypeCalendar calendar = roomTypeId != null ? current.calendars.get(roomTypeId) : null;
+        if (calendar == null) {
+            // 维护中的房间不计入日历
+            return;
+        }
+        synchronized (calendar) {
+            calendar.tree.add(current.toIndex(from), current.toIndex(to), occupied ? -1 : 1);
+        }
+    }
+
+    /**
+     * 查询房型在 [startDate, endDate) 内每晚都空闲的房间数
+     * @return 可用房间数；日历不可用时返回 -1，由调用方回退到数据库查询
+     */
+    public int countAvailable(Long roomTypeId, LocalDate startDate, LocalDate endDate) {
+        CalendarState current = state;
+        if (current == null || !roomOccupancyIndex.isReady()) {
+            return -1;
+        }
+        TypeCalendar calendar = current.calendars.get(roomTypeId);
+        return calendar != null ? count(current, calendar, startDate, endDate) : 0;
+    }
+
+    /**
+     * 查询所有房型在 [startDate, endDate) 内每晚都空闲的房间数，所有房型基于同一份日历快照
+     * 区间最小值为0的房型直接计0，其余房型的房间合并为一次占用位图求交
+     * @return 房型ID -> 可用房间数，没有房间的房型不在结果中；日历不可用时返回 null
+     */
+    public Map<Long, Integer> countAvailableByType(LocalDate startDate, LocalDate endDate) {
+        CalendarState current = state;
+        if (current == null || !roomOccupancyIndex.isReady()) {
+            return null;
+        }
+        int from = current.toIndex(startDate);
+        int to = current.toIndex(endDate);
+
+        Map<Long, Integer> counts = new HashMap<>();
+        List<Long> roomIds = new ArrayList<>();
+        current.calendars.forEach((roomTypeId, calendar) -> {
+            if (from >= to || to - from == 1 && to <= calendar.tree.size()) {
+                counts.put(roomTypeId, count(current, calendar, startDate, endDate));
+                return;
+            }
+            if (to <= calendar.tree.size()) {
+                synchronized (calendar) {
+                    if (calendar.tree.min(from, to) <= 0) {
+                        counts.put(roomTypeId, 0);
+                        return;
+                    }
+                }
+            }
+            counts.put(roomTypeId, calendar.roomIds.size());
+            roomIds.addAll(calendar.roomIds);
+        });
+
+        for (Long roomId : roomOccupancyIndex.findOccupiedRooms(roomIds, startDate, endDate)) {
+            counts.merge(current.roomTypes.get(roomId), -1, Integer::sum);
+        }
+        return counts;
+    }
+
+    /**
+     * 查询房型在 [from, to) 内每晚的空闲房间数，第 i 个元素对应 from 之后第 i 晚
+     * @return 每晚空闲房间数；日历不可用时返回 null
+     */
+    public int[] getDailyAvailability(Long roomTypeId, LocalDate from, LocalDate to) {
+        CalendarState current = state;
+        if (current == null || !roomOccupancyIndex.isReady()) {
+            return null;
+        }
+        int days = (int) Math.max(0, to.toEpochDay() - from.toEpochDay());
+        int[] counts = new int[days];
+        TypeCalendar calendar = current.calendars.get(roomTypeId);
+        if (calendar == null) {
+            return counts;
+        }
+        for (int i = 0; i < days; i++) {
+            LocalDate date = from.plusDays(i);
+            counts[i] = count(current, calendar, date, date.plusDays(1));
+        }
+        return counts;
+    }
+
+    private int count(CalendarState current, TypeCalendar calendar, LocalDate startDate, LocalDate endDate) {
+        int from = current.toIndex(startDate);
+        int to = current.toIndex(endDate);
+        if (from >= to) {
+            return calendar.roomIds.size();
+        }
+        if (to <= calendar.tree.size()) {
+            int min;
+            synchronized (calendar) {
+                min = calendar.tree.min(from, to);
+            }
+            // 单晚的空闲数是准确值；多晚时最小值为0说明某晚已满，没有整段空闲的房间
+            if (to - from == 1 || min <= 0) {
+                return Math.max(0, min);
+            }
+        }
+        // 多晚或超出日历范围，按房间占用位图求交
+        return calendar.roomIds.size()
+                - roomOccupancyIndex.findOccupiedRooms(calendar.roomIds, startDate, endDate).size();
+    }
+
+    /**
+     * 从占用索引全量重建日历，调用方需保证期间没有占用变化
+     */
+    private void rebuild() {
+        try {
+            LocalDate today = LocalDate.now();
+            LocalDate horizonEnd = today.plusDays(horizonDays);
+
+            List<Room> rooms = roomMapper.selectList(
+                new LambdaQueryWrapper<Room>()
+                    .select(Room::getId, Room::getRoomTypeId)
+                    .eq(Room::getStatus, 1) // 只统计可用房间
+            );
+
+            CalendarState newState = new CalendarState(today.toEpochDay());
+            Map<Long, List<Long>> roomsByType = new HashMap<>();
+            for (Room room : rooms) {
+                newState.roomTypes.put(room.getId(), room.getRoomTypeId());
+                roomsByType.computeIfAbsent(room.getRoomTypeId(), key -> new ArrayList<>()).add(room.getId());
+            }
+
+            for (Map.Entry<Long, List<Long>> entry : roomsByType.entrySet()) {
+                List<Long> roomIds = entry.getValue();
+                int[] freeCounts = new int[horizonDays];
+                Arrays.fill(freeCounts, roomIds.size());
+                for (Long roomId : roomIds) {
+                    BitSet occupied = roomOccupancyIndex.getOccupiedNights(roomId, today, horizonEnd);
+                    for (int night = occupied.nextSetBit(0); night >= 0 && night < horizonDays;
+                         night = occupied.nextSetBit(night + 1)) {
+                        freeCounts[night]--;
+                    }
+                }
+                newState.calendars.put(entry.getKey(), new TypeCalendar(roomIds, new RangeMinSegmentTree(freeCounts)));
+            }
+
+            state = newState;
+            LOGGER.info("房型可用日历构建完成，房型 {} 个，可用房间 {} 间，覆盖 {} 天",
+                    newState.calendars.size(), rooms.size(), horizonDays);
+        } catch (Exception e) {
+            state = null;
+            LOGGER.error("房型可用日历构建失败，可用房间数将回退到数据库查询: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 日历数据，重建时整体替换
+     */
+    private static final class CalendarState {
+        // 线段树下标0对应的日期
+        private final long baseEpochDay;
+        // 房型ID -> 房型日历
+        private final Map<Long, TypeCalendar> calendars = new HashMap<>();
+        // 可用房间ID -> 房型ID
+        private final Map<Long, Long> roomTypes = new HashMap<>();
+
+        private CalendarState(long baseEpochDay) {
+            this.baseEpochDay = baseEpochDay;
+        }
+
+        private int toIndex(LocalDate date) {
+            long index = date.toEpochDay() - baseEpochDay;
+            return (int) Math.max(0, Math.min(index, Integer.MAX_VALUE));
+        }
+    }
+
+    /**
+     * 单个房型的每晚空闲房间数
+     */
+    private static final class TypeCalendar {
+        private final List<Long> roomIds;
+        private final RangeMinSegmentTree tree;
+
+        private TypeCalendar(List<Long> roomIds, RangeMinSegmentTree tree) {
+            this.roomIds = roomIds;
+            this.tree = tree;
+        }
+    }
+}
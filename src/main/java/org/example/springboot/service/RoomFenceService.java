@@ -0,0 +1,154 @@
+package org.example.springboot.service;
+
+import jakarta.annotation.Resource;
+import org.example.springboot.exception.ServiceException;
+import org.example.springboot.mapper.RoomFenceMapper;
+import org.example.springboot.util.TransactionUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 房间分段租约与栅栏令牌校验服务
+ * 房间的分布式租约按日期分段（每段 stripe-days 天）：日期区间重叠的预订至少共享一段，因此互斥；
+ * 落在不同分段的预订可在多个节点上并行。每段各自有栅栏令牌，已写入的最大令牌记录在数据库的 room_fence 表中。
+ * 令牌不大于已记录的令牌时有两种情况：租约已过期的旧持有者（拒绝写入），
+ * 或锁存储的计数器丢失后从头计数（仍持有租约，把计数器抬高到记录之上后换发令牌重试）。
+ */
+@Service
+public class RoomFenceService {
+
+    @Resource
+    private RoomFenceMapper roomFenceMapper;
+
+    @Resource
+    private DistributedLockService distributedLockService;
+
+    // 每个租约分段覆盖的天数
+    @Value("${hotel.lock.stripe-days:7}")
+    private int stripeDays;
+
+    @Value("${hotel.lock.timeout-ms:3000}")
+    private long timeoutMillis;
+
+    /**
+     * 获取房间日期区间覆盖的全部分段租约，等待不超过配置的超时时间
+     * @throws ServiceException 等待超时、被中断或锁存储不可用
+     */
+    public RoomLease lease(Long roomId, LocalDate startDate, LocalDate endDate) {
+        RoomLease lease = tryLease(roomId, startDate, endDate, timeoutMillis);
+        if (lease == null) {
+            throw new ServiceException("该房间正在被其他用户预订，请稍后重试");
+        }
+        return lease;
+    }
+
+    /**
+     * 尝试获取房间日期区间覆盖的全部分段租约，按分段升序获取，避免节点间互相等待
+     * @param timeoutMillis 总等待时间，为 0 时每段只尝试一次
+     * @return 租约；任一分段等待超时时释放已获取的分段并返回 null
+     * @throws ServiceException 被中断或锁存储不可用
+     */
+    public RoomLease tryLease(Long roomId, LocalDate startDate, LocalDate endDate, long timeoutMillis) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        RoomLease lease = new RoomLease(roomId);
+        try {
+            for (long stripe : stripes(startDate, endDate)) {
+                long remaining = Math.max(0, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()));
+                DistributedLockService.DistributedLock lock = distributedLockService.tryLock(lockName(roomId, stripe), remaining);
+                if (lock == null) {
+                    lease.close();
+                    return null;
+                }
+                lease.stripes.add(stripe);
+                lease.locks.add(lock);
+            }
+        } catch (RuntimeException e) {
+            lease.close();
+            throw e;
+        }
+        return lease;
+    }
+
+    /**
+     * 把租约延长到当前事务结束（提交或回滚）后释放
+     */
+    public void holdUntilTransactionEnd(RoomLease lease) {
+        if (!TransactionUtils.isInTransaction()) {
+            throw new IllegalStateException("holdUntilTransactionEnd must be called inside a transaction");
+        }
+        TransactionUtils.afterCompletion(lease::close);
+    }
+
+    /**
+     * 用租约各分段的栅栏令牌校验本事务对房间日期区间的写入权
+     * @return 全部令牌是否有效
+     */
+    public boolean advance(RoomLease lease) {
+        for (int i = 0; i < lease.locks.size(); i++) {
+            if (!advance(lease.roomId, lease.stripes.get(i), lease.locks.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 用栅栏令牌校验本事务对房间一个分段的写入权
+     * 令牌更新会持有该分段的栅栏行锁直到事务结束，租约过期的旧持有者令牌更小，其写入会被拒绝
+     * @return 令牌是否有效
+     */
+    public boolean advance(Long roomId, long stripe, DistributedLockService.DistributedLock lock) {
+        roomFenceMapper.init(roomId, stripe);
+        if (roomFenceMapper.advance(roomId, stripe, lock.getFence()) > 0) {
+            return true;
+        }
+        Long recorded = roomFenceMapper.selectFenceForUpdate(roomId, stripe);
+        if (recorded == null || !distributedLockService.reseedFence(lock, recorded)) {
+            return false;
+        }
+        return roomFenceMapper.advance(roomId, stripe, lock.getFence()) > 0;
+    }
+
+    /**
+     * 日期区间 [startDate, endDate) 覆盖的分段，按升序排列
+     * 空区间也视为占用其起始日，与本地区间锁一致
+     */
+    private List<Long> stripes(LocalDate startDate, LocalDate endDate) {
+        long from = startDate.toEpochDay();
+        long to = Math.max(endDate.toEpochDay(), from + 1);
+        List<Long> stripes = new ArrayList<>();
+        for (long stripe = Math.floorDiv(from, stripeDays); stripe <= Math.floorDiv(to - 1, stripeDays); stripe++) {
+            stripes.add(stripe);
+        }
+        return stripes;
+    }
+
+    private static String lockName(Long roomId, long stripe) {
+        return "room:" + roomId + ":" + stripe;
+    }
+
+    /**
+     * 房间分段租约句柄，close 可重复调用
+     */
+    public static final class RoomLease implements AutoCloseable {
+        private final Long roomId;
+        private final List<Long> stripes = new ArrayList<>();
+        private final List<DistributedLockService.DistributedLock> locks = new ArrayList<>();
+
+        private RoomLease(Long roomId) {
+            this.roomId = roomId;
+        }
+
+        @Override
+        public void close() {
+            for (int i = locks.size() - 1; i >= 0; i--) {
+                locks.get(i).close();
+            }
+        }
+    }
+}
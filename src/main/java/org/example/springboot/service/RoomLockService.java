@@ -0,0 +1,261 @@
+package org.example.springboot.service;
+
+import org.example.springboot.exception.ServiceException;
+import org.example.springboot.util.TransactionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 房间日期区间锁服务
+ * 按房间ID对日期区间 [startDate, endDate) 加排他锁：同一房间的重叠区间互斥，不重叠的区间可并行，
+ * 不同房间按房间ID分段（striped），互不影响。
+ * 同一线程对同一房间的重叠区间可重入；房间上没有持有者时立即移除记录，内存只与当前持有的锁数量有关。
+ */
+@Service
+public class RoomLockService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RoomLockService.class);
+
+    // 等待锁的超时时间
+    @Value("${hotel.lock.timeout-ms:3000}")
+    private long timeoutMillis;
+
+    private final Stripe[] stripes;
+
+    // 统计信息
+    private final AtomicLong acquiredCount = new AtomicLong();
+    private final AtomicLong contendedCount = new AtomicLong();
+    private final AtomicLong timeoutCount = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicInteger heldCount = new AtomicInteger();
+
+    public RoomLockService(@Value("${hotel.lock.stripes:64}") int stripeCount) {
+        this.stripes = new Stripe[Math.max(1, stripeCount)];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * 锁定房间的日期区间，直到当前事务结束（提交或回滚）后自动释放
+     * 保证其他事务在本事务提交前无法对重叠区间做可用性检查
+     */
+    public void lockUntilTransactionEnd(Long roomId, LocalDate startDate, LocalDate endDate) {
+        if (!TransactionUtils.isInTransaction()) {
+            throw new IllegalStateException("lockUntilTransactionEnd must be called inside a transaction");
+        }
+        RoomLock lock = lock(roomId, startDate, endDate);
+        TransactionUtils.afterCompletion(lock::close);
+    }
+
+    /**
+     * 把已获取的锁延长到当前事务结束（提交或回滚）后释放
+     */
+    public void holdUntilTransactionEnd(RoomLock lock) {
+        if (!TransactionUtils.isInTransaction()) {
+            throw new IllegalStateException("holdUntilTransactionEnd must be called inside a transaction");
+        }
+        TransactionUtils.afterCompletion(lock::close);
+    }
+
+    /**
+     * 锁定房间的日期区间 [startDate, endDate)，使用默认超时时间
+     * @return 锁句柄，使用完毕后调用 close 释放
+     * @throws ServiceException 等待超时或被中断
+     */
+    public RoomLock lock(Long roomId, LocalDate startDate, LocalDate endDate) {
+        return lock(roomId, startDate, endDate, timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 锁定房间的日期区间 [startDate, endDate)
+     * 同一线程需要锁定多个房间时，应按房间ID升序加锁，避免互相等待直到超时
+     * @return 锁句柄，使用完毕后调用 close 释放
+     * @throws ServiceException 等待超时或被中断
+     */
+    public RoomLock lock(Long roomId, LocalDate startDate, LocalDate endDate, long timeout, TimeUnit unit) {
+        RoomLock lock = tryLock(roomId, startDate, endDate, timeout, unit);
+        if (lock == null) {
+            LOGGER.warn("等待房间锁超时, roomId={}, 日期 [{}, {})", roomId, startDate, endDate);
+            throw new ServiceException("该房间正在被其他用户预订，请稍后重试");
+        }
+        return lock;
+    }
+
+    /**
+     * 尝试锁定房间的日期区间 [startDate, endDate)，timeout 为 0 时不等待
+     * @return 锁句柄；等待超时返回 null
+     * @throws ServiceException 被中断
+     */
+    public RoomLock tryLock(Long roomId, LocalDate startDate, LocalDate endDate, long timeout, TimeUnit unit) {
+        if (roomId == null || startDate == null || endDate == null) {
+            throw new ServiceException("房间ID和日期不能为空");
+        }
+        Hold hold = new Hold(Thread.currentThread(), startDate.toEpochDay(), endDate.toEpochDay());
+        Stripe stripe = stripeFor(roomId);
+
+        long start = System.nanoTime();
+        boolean contended = false;
+        stripe.lock.lock();
+        try {
+            long remaining = unit.toNanos(timeout);
+            while (stripe.hasConflict(roomId, hold)) {
+                contended = true;
+                if (remaining <= 0) {
+                    timeoutCount.incrementAndGet();
+                    return null;
+                }
+                try {
+                    remaining = stripe.released.awaitNanos(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new ServiceException("获取房间锁被中断");
+                }
+            }
+            stripe.holds.computeIfAbsent(roomId, key -> new ArrayList<>()).add(hold);
+        } finally {
+            stripe.lock.unlock();
+        }
+
+        acquiredCount.incrementAndGet();
+        heldCount.incrementAndGet();
+        if (contended) {
+            long waited = System.nanoTime() - start;
+            contendedCount.incrementAndGet();
+            totalWaitNanos.addAndGet(waited);
+            maxWaitNanos.accumulateAndGet(waited, Math::max);
+        }
+        return new RoomLock(this, roomId, hold);
+    }
+
+    /**
+     * 获取锁统计信息
+     */
+    public Map<String, Object> getStatistics() {
+        int lockedRooms = 0;
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                lockedRooms += stripe.holds.size();
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        long contended = contendedCount.get();
+
+        Map<String, Object> statistics = new HashMap<>();
+        statistics.put("stripes", stripes.length);
+        statistics.put("acquired", acquiredCount.get());
+        statistics.put("contended", contended);
+        statistics.put("timeouts", timeoutCount.get());
+        statistics.put("held", heldCount.get());
+        statistics.put("lockedRooms", lockedRooms);
+        statistics.put("avgWaitMillis", contended > 0 ? totalWaitNanos.get() / contended / 1_000_000.0 : 0.0);
+        statistics.put("maxWaitMillis", maxWaitNanos.get() / 1_000_000.0);
+        return statistics;
+    }
+
+    private void unlock(Long roomId, Hold hold) {
+        Stripe stripe = stripeFor(roomId);
+        stripe.lock.lock();
+        try {
+            List<Hold> holds = stripe.holds.get(roomId);
+            if (holds == null || !holds.remove(hold)) {
+                return;
+            }
+            if (holds.isEmpty()) {
+                stripe.holds.remove(roomId);
+            }
+            stripe.released.signalAll();
+        } finally {
+            stripe.lock.unlock();
+        }
+        heldCount.decrementAndGet();
+    }
+
+    private Stripe stripeFor(Long roomId) {
+        return stripes[Math.floorMod(roomId.hashCode(), stripes.length)];
+    }
+
+    /**
+     * 房间锁句柄，close 可重复调用
+     */
+    public static final class RoomLock implements AutoCloseable {
+        private final RoomLockService owner;
+        private final Long roomId;
+        private final Hold hold;
+        private boolean released;
+
+        private RoomLock(RoomLockService owner, Long roomId, Hold hold) {
+            this.owner = owner;
+            this.roomId = roomId;
+            this.hold = hold;
+        }
+
+        @Override
+        public synchronized void close() {
+            if (!released) {
+                released = true;
+                owner.unlock(roomId, hold);
+            }
+        }
+    }
+
+    /**
+     * 一个分段：保护若干房间的持有记录
+     */
+    private static final class Stripe {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition released = lock.newCondition();
+        // 房间ID -> 当前持有的区间
+        private final Map<Long, List<Hold>> holds = new HashMap<>();
+
+        private boolean hasConflict(Long roomId, Hold request) {
+            List<Hold> current = holds.get(roomId);
+            if (current == null) {
+                return false;
+            }
+            for (Hold hold : current) {
+                if (hold.thread != request.thread && hold.overlaps(request)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * 一次持有：线程及其锁定的日期区间（以 epochDay 表示）
+     */
+    private static final class Hold {
+        private final Thread thread;
+        private final long from;
+        private final long to;
+
+        private Hold(Thread thread, long from, long to) {
+            this.thread = thread;
+            this.from = from;
+            this.to = to;
+        }
+
+        private boolean overlaps(Hold other) {
+            // 空区间也视为占用其起始日，避免零晚的修改绕过锁
+            long end = Math.max(to, from + 1);
+            long otherEnd = Math.max(other.to, other.from + 1);
+            return from < otherEnd && other.from < end;
+        }
+    }
+}
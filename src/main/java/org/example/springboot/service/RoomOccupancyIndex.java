@@ -0,0 +1,459 @@
+package org.example.springboot.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import org.example.springboot.entity.Reservation;
+import org.example.springboot.mapper.ReservationMapper;
+import org.example.springboot.util.TransactionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 房间占用索引服务
+ * 为每个房间维护一个按晚占用的位图（一位代表一晚），启动时从预订表加载有效预订，
+ * 之后由预订、订单及补偿流程在事务提交后增量维护。
+ * 任意日期范围的可用性判断只需对位图做按字运算，不再查询预订表。
+ * 索引在每个实例内各有一份：写入预订的实例在事务提交后通过 Redis 发布订阅广播预订ID，
+ * 其他实例收到后重新读取该预订并同步本地索引；通知丢失时由每天的全量重建兜底。
+ */
+@Service
+public class RoomOccupancyIndex implements MessageListener {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RoomOccupancyIndex.class);
+
+    private static final String CHANGED_CHANNEL = "hotel:occupancy:changed";
+
+    // 单个房间最多索引的晚数（约10年），防止异常日期撑大位图
+    private static final int MAX_NIGHTS = 3660;
+
+    @Resource
+    private ReservationMapper reservationMapper;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    // 本实例标识，用于忽略自己发出的变更通知
+    private final String nodeId = UUID.randomUUID().toString();
+
+    // 串行处理其他实例的通知，避免同一预订的两次读取乱序写入索引
+    private final Object remoteLock = new Object();
+
+    // 重建索引时持有写锁，增量维护持有读锁（各房间内部再自行同步）
+    private final ReadWriteLock rebuildLock = new ReentrantReadWriteLock();
+
+    private volatile IndexState state = new IndexState(LocalDate.now().toEpochDay());
+
+    private volatile boolean ready = false;
+
+    private final List<OccupancyListener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * 占用变化监听器
+     * 回调在索引读锁内、房间锁外执行；重建回调在索引写锁内执行
+     */
+    public interface OccupancyListener {
+        /**
+         * 房间在 [from, to) 内的夜晚由空闲变为占用（occupied=true）或由占用变为空闲
+         */
+        void onNightsChanged(Long roomId, LocalDate from, LocalDate to, boolean occupied);
+
+        /**
+         * 索引已全量重建
+         */
+        void onIndexRebuilt();
+    }
+
+    /**
+     * 注册占用变化监听器
+     */
+    public void addListener(OccupancyListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * 在没有任何占用变化的情况下执行操作，供监听器读取一致的索引快照
+     */
+    public void runExclusively(Runnable action) {
+        rebuildLock.writeLock().lock();
+        try {
+            action.run();
+        } finally {
+            rebuildLock.writeLock().unlock();
+        }
+    }
+
+    @PostConstruct
+    public void subscribe() {
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(CHANGED_CHANNEL));
+    }
+
+    /**
+     * 应用启动完成后构建索引
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void init() {
+        rebuild();
+    }
+
+    /**
+     * 从预订表全量重建索引
+     */
+    public void rebuild() {
+        rebuildLock.writeLock().lock();
+        try {
+            LocalDate today = LocalDate.now();
+            List<Reservation> reservations = reservationMapper.selectList(
+                new LambdaQueryWrapper<Reservation>()
+                    .select(Reservation::getId, Reservation::getRoomId, Reservation::getStartDate,
+                            Reservation::getEndDate, Reservation::getStatus)
+                    .in(Reservation::getStatus, 0, 1) // 待确认或已确认
+                    .gt(Reservation::getEndDate, today)
+            );
+
+            // 以昨天作为位图起点，保证当天入住的预订完整落入索引
+            IndexState newState = new IndexState(today.minusDays(1).toEpochDay());
+            for (Reservation reservation : reservations) {
+                newState.occupy(reservation.getId(), reservation.getRoomId(),
+                        reservation.getStartDate(), reservation.getEndDate());
+            }
+            state = newState;
+            ready = true;
+            LOGGER.info("房间占用索引构建完成，有效预订 {} 条，涉及房间 {} 间", reservations.size(), newState.rooms.size());
+
+            for (OccupancyListener listener : listeners) {
+                listener.onIndexRebuilt();
+            }
+        } catch (Exception e) {
+            // 构建失败时退回数据库查询
+            ready = false;
+            LOGGER.error("房间占用索引构建失败，可用性查询将回退到数据库: {}", e.getMessage(), e);
+        } finally {
+            rebuildLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 索引是否可用
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * 按预订当前状态同步索引（事务提交后执行）
+     * 待确认、已确认的预订占用房间，其他状态释放房间
+     * @param reservation 需包含 id、roomId、startDate、endDate、status
+     */
+    public void syncReservation(Reservation reservation) {
+        if (reservation == null || reservation.getId() == null) {
+            return;
+        }
+        Long id = reservation.getId();
+        Long roomId = reservation.getRoomId();
+        LocalDate startDate = reservation.getStartDate();
+        LocalDate endDate = reservation.getEndDate();
+        Integer status = reservation.getStatus();
+        TransactionUtils.afterCommit(() -> {
+            apply(id, roomId, startDate, endDate, status);
+            publish(id);
+        });
+    }
+
+    /**
+     * 重新读取预订并同步索引（事务提交后执行），用于只做了部分字段更新的写路径
+     * @param reservationId 预订ID
+     */
+    public void refreshReservation(Long reservationId) {
+        if (reservationId == null) {
+            return;
+        }
+        TransactionUtils.afterCommit(() -> {
+            reload(reservationId);
+            publish(reservationId);
+        });
+    }
+
+    /**
+     * 收到其他实例的预订变更通知，重新读取预订并同步本地索引
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String[] parts = new String(message.getBody(), StandardCharsets.UTF_8).split(",", 2);
+        if (parts.length < 2 || nodeId.equals(parts[0])) {
+            return;
+        }
+        try {
+            Long reservationId = Long.valueOf(parts[1]);
+            synchronized (remoteLock) {
+                reload(reservationId);
+            }
+        } catch (NumberFormatException e) {
+            LOGGER.warn("忽略无法解析的房间占用变更通知: {}", parts[1]);
+        }
+    }
+
+    /**
+     * 立即占用房间的日期范围 [startDate, endDate)，同一占用ID再次占用时替换原范围
+     * @param occupantId 占用ID（预订ID；预订保留使用负数）
+     */
+    public void occupy(Long occupantId, Long roomId, LocalDate startDate, LocalDate endDate) {
+        rebuildLock.readLock().lock();
+        try {
+            IndexState current = state;
+            Long previousRoomId = current.occupantRooms.put(occupantId, roomId);
+            // 房间变更时先从原房间释放
+            if (previousRoomId != null && !previousRoomId.equals(roomId)) {
+                RoomNights previous = current.rooms.get(previousRoomId);
+                if (previous != null) {
+                    notifyChanges(current, previousRoomId, previous.remove(occupantId));
+                }
+            }
+            RoomNights roomNights = current.rooms.computeIfAbsent(roomId, key -> new RoomNights());
+            notifyChanges(current, roomId,
+                    roomNights.put(occupantId, current.toNight(startDate), current.toNight(endDate)));
+        } finally {
+            rebuildLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 立即释放占用
+     * @param occupantId 占用ID（预订ID；预订保留使用负数）
+     */
+    public void release(Long occupantId) {
+        rebuildLock.readLock().lock();
+        try {
+            IndexState current = state;
+            Long roomId = current.occupantRooms.remove(occupantId);
+            RoomNights roomNights = roomId != null ? current.rooms.get(roomId) : null;
+            if (roomNights != null) {
+                notifyChanges(current, roomId, roomNights.remove(occupantId));
+            }
+        } finally {
+            rebuildLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 判断房间在 [startDate, endDate) 内是否全部空闲
+     */
+    public boolean isAvailable(Long roomId, LocalDate startDate, LocalDate endDate) {
+        IndexState current = state;
+        RoomNights roomNights = current.rooms.get(roomId);
+        if (roomNights == null) {
+            return true;
+        }
+        return roomNights.isFree(current.toNight(startDate), current.toNight(endDate));
+    }
+
+    /**
+     * 从给定房间中找出在 [startDate, endDate) 内有占用的房间
+     * @return 已被占用的房间ID集合
+     */
+    public Set<Long> findOccupiedRooms(Collection<Long> roomIds, LocalDate startDate, LocalDate endDate) {
+        IndexState current = state;
+        int from = current.toNight(startDate);
+        int to = current.toNight(endDate);
+
+        Set<Long> occupiedRoomIds = new HashSet<>();
+        for (Long roomId : roomIds) {
+            RoomNights roomNights = current.rooms.get(roomId);
+            if (roomNights != null && !roomNights.isFree(from, to)) {
+                occupiedRoomIds.add(roomId);
+            }
+        }
+        return occupiedRoomIds;
+    }
+
+    /**
+     * 获取房间在 [from, to) 内被占用的夜晚，第0位对应 from
+     * from 不应早于今天
+     */
+    public BitSet getOccupiedNights(Long roomId, LocalDate from, LocalDate to) {
+        IndexState current = state;
+        RoomNights roomNights = current.rooms.get(roomId);
+        if (roomNights == null) {
+            return new BitSet();
+        }
+        return roomNights.slice(current.toNight(from), current.toNight(to));
+    }
+
+    /**
+     * 把位图变化按连续区间通知给监听器
+     * @param changes [0]为新占用的夜晚，[1]为新释放的夜晚
+     */
+    private void notifyChanges(IndexState current, Long roomId, BitSet[] changes) {
+        if (changes == null || listeners.isEmpty()) {
+            return;
+        }
+        for (int k = 0; k < 2; k++) {
+            BitSet bits = changes[k];
+            int from = bits.nextSetBit(0);
+            while (from >= 0) {
+                int to = bits.nextClearBit(from);
+                LocalDate fromDate = LocalDate.ofEpochDay(current.baseEpochDay + from);
+                LocalDate toDate = LocalDate.ofEpochDay(current.baseEpochDay + to);
+                for (OccupancyListener listener : listeners) {
+                    try {
+                        listener.onNightsChanged(roomId, fromDate, toDate, k == 0);
+                    } catch (Exception e) {
+                        LOGGER.error("房间占用变化通知失败, roomId={}: {}", roomId, e.getMessage(), e);
+                    }
+                }
+                from = bits.nextSetBit(to);
+            }
+        }
+    }
+
+    private void reload(Long reservationId) {
+        try {
+            Reservation reservation = reservationMapper.selectById(reservationId);
+            if (reservation == null) {
+                release(reservationId);
+            } else {
+                apply(reservation.getId(), reservation.getRoomId(), reservation.getStartDate(),
+                        reservation.getEndDate(), reservation.getStatus());
+            }
+        } catch (Exception e) {
+            LOGGER.error("刷新房间占用索引失败, reservationId={}: {}", reservationId, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 通知其他实例预订已变更；发送失败时其他实例要到下次全量重建才能看到变化
+     */
+    private void publish(Long reservationId) {
+        try {
+            stringRedisTemplate.convertAndSend(CHANGED_CHANNEL, nodeId + "," + reservationId);
+        } catch (RuntimeException e) {
+            LOGGER.warn("发送房间占用变更通知失败, reservationId={}: {}", reservationId, e.getMessage());
+        }
+    }
+
+    private void apply(Long id, Long roomId, LocalDate startDate, LocalDate endDate, Integer status) {
+        if (status != null && (status == 0 || status == 1) && roomId != null && startDate != null && endDate != null) {
+            occupy(id, roomId, startDate, endDate);
+        } else {
+            release(id);
+        }
+    }
+
+    /**
+     * 索引数据，重建时整体替换
+     */
+    private static final class IndexState {
+        // 位图第0位对应的日期
+        private final long baseEpochDay;
+        // 房间ID -> 房间每晚占用
+        private final Map<Long, RoomNights> rooms = new ConcurrentHashMap<>();
+        // 占用ID -> 房间ID
+        private final Map<Long, Long> occupantRooms = new ConcurrentHashMap<>();
+
+        private IndexState(long baseEpochDay) {
+            this.baseEpochDay = baseEpochDay;
+        }
+
+        private int toNight(LocalDate date) {
+            long night = date.toEpochDay() - baseEpochDay;
+            return (int) Math.max(0, Math.min(night, MAX_NIGHTS));
+        }
+
+        private void occupy(Long occupantId, Long roomId, LocalDate startDate, LocalDate endDate) {
+            // 房间变更时先从原房间释放
+            Long previousRoomId = occupantRooms.put(occupantId, roomId);
+            if (previousRoomId != null && !previousRoomId.equals(roomId)) {
+                RoomNights previous = rooms.get(previousRoomId);
+                if (previous != null) {
+                    previous.remove(occupantId);
+                }
+            }
+            rooms.computeIfAbsent(roomId, key -> new RoomNights())
+                 .put(occupantId, toNight(startDate), toNight(endDate));
+        }
+    }
+
+    /**
+     * 单个房间的占用位图
+     * 同时保留每个占用的范围，释放时据此重算位图，避免重叠的脏数据互相覆盖
+     */
+    private static final class RoomNights {
+        private final Map<Long, int[]> ranges = new HashMap<>();
+        private final BitSet nights = new BitSet();
+
+        /**
+         * @return 位图变化，[0]为新占用的夜晚，[1]为新释放的夜晚
+         */
+        private synchronized BitSet[] put(Long occupantId, int from, int to) {
+            BitSet before = (BitSet) nights.clone();
+            int[] previous = ranges.put(occupantId, new int[]{from, to});
+            if (previous == null) {
+                nights.set(from, Math.max(from, to));
+            } else {
+                recompute();
+            }
+            return diff(before);
+        }
+
+        private synchronized BitSet[] remove(Long occupantId) {
+            if (ranges.remove(occupantId) == null) {
+                return null;
+            }
+            BitSet before = (BitSet) nights.clone();
+            recompute();
+            return diff(before);
+        }
+
+        private synchronized BitSet slice(int from, int to) {
+            return from >= to ? new BitSet() : nights.get(from, to);
+        }
+
+        private BitSet[] diff(BitSet before) {
+            BitSet occupied = (BitSet) nights.clone();
+            occupied.andNot(before);
+            BitSet freed = before;
+            freed.andNot(nights);
+            return new BitSet[]{occupied, freed};
+        }
+
+        private synchronized boolean isFree(int from, int to) {
+            if (from >= to) {
+                return true;
+            }
+            int next = nights.nextSetBit(from);
+            return next < 0 || next >= to;
+        }
+
+        private void recompute() {
+            nights.clear();
+            for (int[] range : ranges.values()) {
+                nights.set(range[0], Math.max(range[0], range[1]));
+            }
+        }
+    }
+}
@@ -3,6 +3,7 @@ package org.example.springboot.service;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.toolkit.StringUtils;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import jakarta.annotation.PostConstruct;
 import jakarta.annotation.Resource;
 import org.example.springboot.entity.Room;
 import org.example.springboot.entity.RoomType;
@@ -11,17 +12,26 @@ import org.example.springboot.exception.ServiceException;
 import org.example.springboot.mapper.RoomMapper;
 import org.example.springboot.mapper.RoomTypeMapper;
 import org.example.springboot.mapper.ReservationMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
@@ -38,6 +48,41 @@ public class RoomService {
     @Resource
     private ReservationMapper reservationMapper;
     
+    @Resource
+    private RoomOccupancyIndex roomOccupancyIndex;
+    
+    @Resource
+    private RoomAvailabilityCalendar roomAvailabilityCalendar;
+
+    @Resource
+    private ApplicationEventPublisher eventPublisher;
+
+    @Resource
+    private RoomTypeService roomTypeService;
+    
+    @Resource
+    private CatalogVersionService catalogVersionService;
+    
+    @Resource
+    private ReservationNightService reservationNightService;
+    
+    @Resource
+    private List<RoomAllocationStrategy> allocationStrategies;
+    
+    // 房间分配策略：best-fit（空档最小优先）或 lowest-floor（低楼层优先）
+    @Value("${hotel.allocation.strategy:best-fit}")
+    private String allocationStrategyName;
+    
+    private RoomAllocationStrategy allocationStrategy;
+    
+    @PostConstruct
+    public void initAllocationStrategy() {
+        allocationStrategy = getAllocationStrategy(allocationStrategyName);
+        if (allocationStrategy == null) {
+            throw new IllegalStateException("Unknown room allocation strategy: " + allocationStrategyName);
+        }
+    }
+    
     /**
      * 分页查询房间
      */
@@ -100,17 +145,7 @@ public class RoomService {
      * 查询可预订的房间
      */
     public List<Room> getAvailableRooms(Long roomTypeId, LocalDate startDate, LocalDate endDate) {
-        if (startDate == null || endDate == null) {
-            throw new ServiceException("入住日期和退房日期不能为空");
-        }
-        
-        if (startDate.isAfter(endDate)) {
-            throw new ServiceException("入住日期不能晚于退房日期");
-        }
-        
-        if (startDate.isBefore(LocalDate.now())) {
-            throw new ServiceException("入住日期不能早于今天");
-        }
+        validateStayDates(startDate, endDate);
         
         // 查询指定类型的所有可用房间
         LambdaQueryWrapper<Room> roomQueryWrapper = new LambdaQueryWrapper<>();
@@ -131,34 +166,7 @@ public class RoomService {
             .collect(Collectors.toList());
         
         // 查询在指定日期范围内已被预订的房间
-        LambdaQueryWrapper<Reservation> reservationQueryWrapper = new LambdaQueryWrapper<>();
-        reservationQueryWrapper.in(Reservation::getRoomId, roomIds)
-            .and(wrapper -> wrapper
-                // 预订已确认或待确认
-                .in(Reservation::getStatus, 0, 1)
-                // 预订时间与查询时间有交集
-                .and(timeWrapper -> timeWrapper
-                    // 开始日期在查询范围内
-                    .between(Reservation::getStartDate, startDate, endDate.minusDays(1))
-                    .or()
-                    // 结束日期在查询范围内
-                    .between(Reservation::getEndDate, startDate.plusDays(1), endDate)
-                    .or()
-                    // 查询范围完全被预订范围包含
-                    .and(containWrapper -> containWrapper
-                        .le(Reservation::getStartDate, startDate)
-                        .ge(Reservation::getEndDate, endDate)
-                    )
-                )
-            );
-        
-        List<Reservation> conflictReservations = reservationMapper.selectList(reservationQueryWrapper);
-        
-        // 获取已被预订的房间ID
-        List<Long> reservedRoomIds = conflictReservations.stream()
-            .map(Reservation::getRoomId)
-            .distinct()
-            .collect(Collectors.toList());
+        Set<Long> reservedRoomIds = findReservedRoomIds(roomIds, startDate, endDate);
         
         // 过滤掉已被预订的房间
         List<Room> availableRooms = allAvailableRooms.stream()
@@ -196,6 +204,297 @@ public class RoomService {
         return availableRooms;
     }
     
+    /**
+     * 查询房型在指定日期范围内的候选房间（按分配策略排序）
+     * 只查询分配需要的字段，不加载房型信息；结果仅作为候选，最终以加锁后的检查为准
+     */
+    public List<Room> getCandidateRooms(Long roomTypeId, LocalDate startDate, LocalDate endDate) {
+        validateStayDates(startDate, endDate);
+        
+        // 分配策略：优先分配低楼层、房间号较小的房间
+        List<Room> rooms = roomMapper.selectList(
+            new LambdaQueryWrapper<Room>()
+                .select(Room::getId, Room::getRoomNumber, Room::getRoomTypeId, Room::getFloor)
+                .eq(Room::getRoomTypeId, roomTypeId)
+                .eq(Room::getStatus, 1) // 状态为可用
+                .orderByAsc(Room::getFloor)
+                .orderByAsc(Room::getRoomNumber)
+        );
+        if (rooms.isEmpty()) {
+            return rooms;
+        }
+        
+        List<Long> roomIds = rooms.stream().map(Room::getId).collect(Collectors.toList());
+        Set<Long> reservedRoomIds = findReservedRoomIds(roomIds, startDate, endDate);
+        List<Room> candidates = rooms.stream()
+            .filter(room -> !reservedRoomIds.contains(room.getId()))
+            .collect(Collectors.toList());
+        return rankCandidates(candidates, startDate, endDate);
+    }
+    
+    /**
+     * 按配置的分配策略对候选房间排序
+     * 占用索引未就绪时无法评估房间日历，保持低楼层优先的顺序
+     * @param candidates 在 [startDate, endDate) 内空闲的房间，已按低楼层、小房间号排序
+     */
+    public List<Room> rankCandidates(List<Room> candidates, LocalDate startDate, LocalDate endDate) {
+        if (candidates.size() <= 1 || !roomOccupancyIndex.isReady()) {
+            return candidates;
+        }
+        return allocationStrategy.rank(candidates, startDate, endDate, this::getUnsellableNights);
+    }
+    
+    /**
+     * 按名称获取分配策略
+     * @return 分配策略；名称不存在时返回 null
+     */
+    public RoomAllocationStrategy getAllocationStrategy(String name) {
+        for (RoomAllocationStrategy strategy : allocationStrategies) {
+            if (strategy.getName().equalsIgnoreCase(name)) {
+                return strategy;
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * 获取房间在 [from, to) 内不可售的夜晚：今天之前的夜晚都视为不可售，之后的以占用索引为准
+     */
+    private BitSet getUnsellableNights(Long roomId, LocalDate from, LocalDate to) {
+        LocalDate today = LocalDate.now();
+        if (!from.isBefore(today)) {
+            return roomOccupancyIndex.getOccupiedNights(roomId, from, to);
+        }
+        
+        int total = (int) Math.max(0, to.toEpochDay() - from.toEpochDay());
+        int past = (int) Math.min(total, today.toEpochDay() - from.toEpochDay());
+        BitSet nights = new BitSet(total);
+        nights.set(0, past);
+        if (past < total) {
+            BitSet occupied = roomOccupancyIndex.getOccupiedNights(roomId, today, to);
+            for (int i = occupied.nextSetBit(0); i >= 0; i = occupied.nextSetBit(i + 1)) {
+                nights.set(past + i);
+            }
+        }
+        return nights;
+    }
+    
+    /**
+     * 一次查询多个房型在指定日期范围内的候选房间，每个房型内按分配优先级排序
+     * 供团体预订使用：所有房型共用一次房间查询和一次占用查询
+     * @return 房型ID -> 候选房间，没有候选房间的房型映射为空列表
+     */
+    public Map<Long, List<Room>> getCandidateRoomsByType(Collection<Long> roomTypeIds, LocalDate startDate, LocalDate endDate) {
+        validateStayDates(startDate, endDate);
+        
+        Map<Long, List<Room>> candidates = new LinkedHashMap<>();
+        for (Long roomTypeId : roomTypeIds) {
+            candidates.put(roomTypeId, new ArrayList<>());
+        }
+        if (candidates.isEmpty()) {
+            return candidates;
+        }
+        
+        List<Room> rooms = roomMapper.selectList(
+            new LambdaQueryWrapper<Room>()
+                .select(Room::getId, Room::getRoomNumber, Room::getRoomTypeId, Room::getFloor)
+                .in(Room::getRoomTypeId, candidates.keySet())
+                .eq(Room::getStatus, 1) // 状态为可用
+                .orderByAsc(Room::getFloor)
+                .orderByAsc(Room::getRoomNumber)
+        );
+        if (rooms.isEmpty()) {
+            return candidates;
+        }
+        
+        List<Long> roomIds = rooms.stream().map(Room::getId).collect(Collectors.toList());
+        Set<Long> reservedRoomIds = findReservedRoomIds(roomIds, startDate, endDate);
+        for (Room room : rooms) {
+            if (!reservedRoomIds.contains(room.getId())) {
+                candidates.get(room.getRoomTypeId()).add(room);
+            }
+        }
+        return candidates;
+    }
+    
+    /**
+     * 查询房型在指定日期范围内可预订的房间数
+     * 优先使用房型可用日历，日历不可用时回退到完整的可用房间查询
+     */
+    public int countAvailableRooms(Long roomTypeId, LocalDate startDate, LocalDate endDate) {
+        validateStayDates(startDate, endDate);
+        
+        int count = roomAvailabilityCalendar.countAvailable(roomTypeId, startDate, endDate);
+        if (count >= 0) {
+            return count;
+        }
+        return getAvailableRooms(roomTypeId, startDate, endDate).size();
+    }
+    
+    /**
+     * 按日期和入住人数搜索所有房型的可用情况（预订页一次请求）
+     * 房型目录查询一次，可用房间数是整段入住期间每晚都空闲的房间数：
+     * 优先由房型可用日历按房间占用位图求交得到，日历不可用时所有房型共用一次候选房间查询
+     * @param guestCount 入住人数，可为空；超过房型最大入住人数的房型标记为不满足
+     */
+    public List<Map<String, Object>> searchAvailability(LocalDate startDate, LocalDate endDate, Integer guestCount) {
+        validateStayDates(startDate, endDate);
+        if (guestCount != null && guestCount <= 0) {
+            throw new ServiceException("入住人数必须大于0");
+        }
+        
+        List<RoomType> roomTypes = roomTypeMapper.selectList(
+            new LambdaQueryWrapper<RoomType>()
+                .orderByAsc(RoomType::getPrice)
+        );
+        if (roomTypes.isEmpty()) {
+            return new ArrayList<>();
+        }
+        
+        Map<Long, Integer> availableCounts = roomAvailabilityCalendar.countAvailableByType(startDate, endDate);
+        if (availableCounts == null) {
+            List<Long> roomTypeIds = roomTypes.stream().map(RoomType::getId).collect(Collectors.toList());
+            availableCounts = new HashMap<>();
+            for (Map.Entry<Long, List<Room>> entry : getCandidateRoomsByType(roomTypeIds, startDate, endDate).entrySet()) {
+                availableCounts.put(entry.getKey(), entry.getValue().size());
+            }
+        }
+        
+        long nights = ChronoUnit.DAYS.between(startDate, endDate);
+        List<Map<String, Object>> results = new ArrayList<>();
+        for (RoomType roomType : roomTypes) {
+            int availableCount = availableCounts.getOrDefault(roomType.getId(), 0);
+            boolean eligible = guestCount == null || roomType.getMaxPeople() >= guestCount;
+            
+            Map<String, Object> result = new HashMap<>();
+            result.put("roomTypeId", roomType.getId());
+            result.put("name", roomType.getName());
+            result.put("bedType", roomType.getBedType());
+            result.put("image", roomType.getImage());
+            result.put("price", roomType.getPrice());
+            result.put("totalPrice", roomType.getPrice().multiply(new BigDecimal(nights)));
+            result.put("maxPeople", roomType.getMaxPeople());
+            result.put("availableCount", availableCount);
+            result.put("eligible", eligible);
+            result.put("available", eligible && availableCount > 0);
+            results.add(result);
+        }
+        return results;
+    }
+    
+    /**
+     * 获取房型某个月每晚的可用房间数（月历视图）
+     * @param month 月份
+     */
+    public Map<String, Object> getAvailabilityCalendar(Long roomTypeId, YearMonth month) {
+        if (roomTypeId == null || month == null) {
+            throw new ServiceException("房间类型和月份不能为空");
+        }
+        if (roomTypeMapper.selectById(roomTypeId) == null) {
+            throw new ServiceException("房间类型不存在");
+        }
+        
+        LocalDate today = LocalDate.now();
+        LocalDate monthStart = month.atDay(1);
+        LocalDate monthEnd = month.atEndOfMonth().plusDays(1);
+        // 今天之前的日期不可预订，只计算今天及以后
+        LocalDate from = monthStart.isBefore(today) ? today : monthStart;
+        
+        int[] counts = null;
+        if (from.isBefore(monthEnd)) {
+            counts = roomAvailabilityCalendar.getDailyAvailability(roomTypeId, from, monthEnd);
+            if (counts == null) {
+                counts = queryDailyAvailability(roomTypeId, from, monthEnd);
+            }
+        }
+        
+        List<Map<String, Object>> days = new ArrayList<>();
+        for (LocalDate date = monthStart; date.isBefore(monthEnd); date = date.plusDays(1)) {
+            int availableCount = date.isBefore(from) ? 0 : counts[(int) (date.toEpochDay() - from.toEpochDay())];
+            Map<String, Object> day = new HashMap<>();
+            day.put("date", date);
+            day.put("availableCount", availableCount);
+            day.put("available", availableCount > 0);
+            days.add(day);
+        }
+        
+        Map<String, Object> result = new HashMap<>();
+        result.put("roomTypeId", roomTypeId);
+        result.put("month", month.toString());
+        result.put("days", days);
+        return result;
+    }
+    
+    /**
+     * 从数据库统计房型在 [from, to) 内每晚的空闲房间数（日历不可用时使用）
+     */
+    private int[] queryDailyAvailability(Long roomTypeId, LocalDate from, LocalDate to) {
+        int[] counts = new int[(int) (to.toEpochDay() - from.toEpochDay())];
+        
+        List<Room> rooms = roomMapper.selectList(
+            new LambdaQueryWrapper<Room>()
+                .select(Room::getId)
+                .eq(Room::getRoomTypeId, roomTypeId)
+                .eq(Room::getStatus, 1)
+        );
+        if (rooms.isEmpty()) {
+            return counts;
+        }
+        Arrays.fill(counts, rooms.size());
+        
+        List<Long> roomIds = rooms.stream().map(Room::getId).collect(Collectors.toList());
+        List<Reservation> reservations = reservationMapper.selectList(
+            new LambdaQueryWrapper<Reservation>()
+                .select(Reservation::getRoomId, Reservation::getStartDate, Reservation::getEndDate)
+                .in(Reservation::getRoomId, roomIds)
+                .in(Reservation::getStatus, 0, 1) // 待确认或已确认
+                .lt(Reservation::getStartDate, to)
+                .gt(Reservation::getEndDate, from)
+        );
+        
+        // 同一房间同一晚只扣减一次
+        Map<Long, BitSet> occupiedNights = new HashMap<>();
+        for (Reservation reservation : reservations) {
+            int start = (int) Math.max(0, reservation.getStartDate().toEpochDay() - from.toEpochDay());
+            int end = (int) Math.min(counts.length, reservation.getEndDate().toEpochDay() - from.toEpochDay());
+            if (start < end) {
+                occupiedNights.computeIfAbsent(reservation.getRoomId(), key -> new BitSet()).set(start, end);
+            }
+        }
+        for (BitSet nights : occupiedNights.values()) {
+            for (int night = nights.nextSetBit(0); night >= 0; night = nights.nextSetBit(night + 1)) {
+                counts[night]--;
+            }
+        }
+        return counts;
+    }
+    
+    /**
+     * 校验入住、退房日期
+     */
+    private void validateStayDates(LocalDate startDate, LocalDate endDate) {
+        if (startDate == null || endDate == null) {
+            throw new ServiceException("入住日期和退房日期不能为空");
+        }
+        
+        if (startDate.isAfter(endDate)) {
+            throw new ServiceException("入住日期不能晚于退房日期");
+        }
+        
+        if (startDate.isBefore(LocalDate.now())) {
+            throw new ServiceException("入住日期不能早于今天");
+        }
+    }
+    
+    /**
+     * 查询在指定日期范围内已被预订的房间ID：优先使用内存占用索引，索引不可用时回退到房晚占用表
+     */
+    private Set<Long> findReservedRoomIds(List<Long> roomIds, LocalDate startDate, LocalDate endDate) {
+        return roomOccupancyIndex.isReady()
+            ? roomOccupancyIndex.findOccupiedRooms(roomIds, startDate, endDate)
+            : reservationNightService.findClaimedRoomIds(roomIds, startDate, endDate);
+    }
+    
     /**
      * 根据ID获取房间
      */
@@ -238,9 +537,13 @@ public class RoomService {
             room.setStatus(1); // 默认可用
         }
         
+        room.setUpdateTime(LocalDateTime.now());
         if (roomMapper.insert(room) <= 0) {
             throw new ServiceException("创建房间失败");
         }
+        roomAvailabilityCalendar.reload();
+        eventPublisher.publishEvent(new DashboardChangeEvent(DashboardChangeEvent.Entity.ROOM, room.getId(), "create"));
+        roomTypeService.evictRoomTypeCache(room.getRoomTypeId());
     }
     
     /**
@@ -273,9 +576,16 @@ public class RoomService {
         }
         
         room.setId(id);
+        room.setUpdateTime(LocalDateTime.now());
         if (roomMapper.updateById(room) <= 0) {
             throw new ServiceException("更新房间失败");
         }
+        roomAvailabilityCalendar.reload();
+        eventPublisher.publishEvent(new DashboardChangeEvent(DashboardChangeEvent.Entity.ROOM, id, "update"));
+        roomTypeService.evictRoomTypeCache(existingRoom.getRoomTypeId());
+        if (room.getRoomTypeId() != null && !room.getRoomTypeId().equals(existingRoom.getRoomTypeId())) {
+            roomTypeService.evictRoomTypeCache(room.getRoomTypeId());
+        }
     }
     
     /**
@@ -284,7 +594,8 @@ public class RoomService {
     @Transactional
     public void deleteRoom(Long id) {
         // 检查房间是否存在
-        if (roomMapper.selectById(id) == null) {
+        Room existingRoom = roomMapper.selectById(id);
+        if (existingRoom == null) {
             throw new ServiceException("要删除的房间不存在");
         }
         
@@ -301,6 +612,9 @@ public class RoomService {
         if (roomMapper.deleteById(id) <= 0) {
             throw new ServiceException("删除房间失败");
         }
+        roomAvailabilityCalendar.reload();
+        eventPublisher.publishEvent(new DashboardChangeEvent(DashboardChangeEvent.Entity.ROOM, id, "delete"));
+        roomTypeService.evictRoomTypeCache(existingRoom.getRoomTypeId());
     }
     
     /**
@@ -329,6 +643,9 @@ public class RoomService {
         if (roomMapper.updateById(room) <= 0) {
             throw new ServiceException("更新房间状态失败");
         }
+        roomAvailabilityCalendar.reload();
+        eventPublisher.publishEvent(new DashboardChangeEvent(DashboardChangeEvent.Entity.ROOM, id, "status"));
+        roomTypeService.evictRoomTypeCache(room.getRoomTypeId());
     }
 
     /**
@@ -405,9 +722,13 @@ public class RoomService {
             room.setRoomTypeId(roomTypeId);
             room.setFloor(floor);
             room.setStatus(1); // 默认可用
+            room.setUpdateTime(LocalDateTime.now());
             
             roomMapper.insert(room);
         }
+        roomAvailabilityCalendar.reload();
+        eventPublisher.publishEvent(new DashboardChangeEvent(DashboardChangeEvent.Entity.ROOM, null, "batchCreate"));
+        roomTypeService.evictRoomTypeCache(roomTypeId);
     }
 
     /**
@@ -418,36 +739,27 @@ public class RoomService {
             throw new ServiceException("房间类型和日期不能为空");
         }
 
-        // 获取该房型的所有可用房间
-        List<Room> availableRooms = getAvailableRooms(roomTypeId, startDate, endDate);
+        // 同一房型的房间容量相同，只需查询一次房型
+        RoomType roomType = roomTypeMapper.selectById(roomTypeId);
+        if (roomType == null) {
+            throw new ServiceException("房间类型不存在");
+        }
+
+        // 获取该房型的候选房间（已按分配策略排序）
+        List<Room> candidateRooms = getCandidateRooms(roomTypeId, startDate, endDate);
 
-        if (availableRooms.isEmpty()) {
+        if (candidateRooms.isEmpty()) {
             throw new ServiceException("该房型在所选日期没有可用房间");
         }
 
-        // 房间分配策略：优先分配低楼层、房间号较小的房间
-        Room selectedRoom = availableRooms.stream()
-            .filter(room -> {
-                // 检查房间容量是否满足需求
-                RoomType roomType = roomTypeMapper.selectById(room.getRoomTypeId());
-                return roomType != null && roomType.getMaxPeople() >= guestCount;
-            })
-            .sorted((r1, r2) -> {
-                // 首先按楼层排序（低楼层优先）
-                int floorCompare = Integer.compare(r1.getFloor(), r2.getFloor());
-                if (floorCompare != 0) {
-                    return floorCompare;
-                }
-                // 然后按房间号排序（小号优先）
-                return r1.getRoomNumber().compareTo(r2.getRoomNumber());
-            })
-            .findFirst()
-            .orElse(null);
-
-        if (selectedRoom == null) {
+        // 检查房间容量是否满足需求
+        if (guestCount != null && roomType.getMaxPeople() < guestCount) {
             throw new ServiceException("没有满足入住人数要求的可用房间");
         }
 
+        Room selectedRoom = candidateRooms.get(0);
+        selectedRoom.setRoomType(roomType);
+        selectedRoom.setPrice(roomType.getPrice());
         return selectedRoom;
     }
 
@@ -528,5 +840,6 @@ public class RoomService {
         if (roomMapper.updateById(room) <= 0) {
             throw new ServiceException("更新房间清洁状态失败");
         }
+        catalogVersionService.touch(CatalogVersionService.Table.ROOM);
     }
 }
\ No newline at end of file
@@ -0,0 +1,216 @@
+package org.example.springboot.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.Resource;
+import org.example.springboot.entity.RoomTypeRating;
+import org.example.springboot.mapper.RoomTypeRatingMapper;
+import org.example.springboot.util.BatchQueryUtils;
+import org.example.springboot.util.TransactionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 房型评分汇总服务
+ * 评价的写操作在同一事务内把评分变化累加到 room_type_rating，读取时不再扫描评价表；
+ * 汇总以 JSON 缓存在 Redis 中，事务提交后删除对应缓存，Redis 不可用时直接读数据库。
+ * 每个房型另有一个版本号，删除缓存时加一；回填缓存时用脚本比较版本号，
+ * 加载期间发生过删除（版本号已变化）的结果不写回，避免把变更前的汇总写回缓存。
+ */
+@Service
+public class RoomTypeRatingService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RoomTypeRatingService.class);
+
+    private static final String CACHE_KEY_PREFIX = "hotel:rating:";
+
+    private static final String VERSION_KEY_PREFIX = "hotel:rating:version:";
+
+    private static final Duration CACHE_TTL = Duration.ofMinutes(30);
+
+    // 版本号与加载前读取的一致时才写入缓存
+    private static final DefaultRedisScript<Long> WRITE_IF_VERSION_SCRIPT = new DefaultRedisScript<>(
+        "if (redis.call('get', KEYS[2]) or '0') == ARGV[2] then " +
+        "redis.call('set', KEYS[1], ARGV[1], 'EX', ARGV[3]) return 1 else return 0 end",
+        Long.class);
+
+    @Resource
+    private RoomTypeRatingMapper roomTypeRatingMapper;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private ObjectMapper objectMapper;
+
+    /**
+     * 记录一条评价对汇总的影响
+     * @param oldScore 变更前计入汇总的评分，之前不计入（不存在或隐藏）为 null
+     * @param newScore 变更后计入汇总的评分，之后不计入为 null
+     */
+    public void applyChange(Long roomTypeId, Integer oldScore, Integer newScore) {
+        if (roomTypeId == null || Objects.equals(oldScore, newScore)) {
+            return;
+        }
+        RoomTypeRating delta = RoomTypeRating.empty(roomTypeId);
+        if (oldScore != null) {
+            addScore(delta, oldScore, -1);
+        }
+        if (newScore != null) {
+            addScore(delta, newScore, 1);
+        }
+        roomTypeRatingMapper.applyDelta(delta);
+        TransactionUtils.afterCommit(() -> evict(roomTypeId));
+    }
+
+    /**
+     * 获取房型的评分汇总，没有评价时返回空汇总
+     */
+    public RoomTypeRating getRating(Long roomTypeId) {
+        return getRatings(List.of(roomTypeId)).get(roomTypeId);
+    }
+
+    /**
+     * 批量获取房型的评分汇总，先查缓存，未命中的房型用一条 IN 查询补齐并写回缓存
+     * @return 房型ID -> 评分汇总，按传入顺序，没有评价的房型为空汇总
+     */
+    public Map<Long, RoomTypeRating> getRatings(Collection<Long> roomTypeIds) {
+        List<Long> ids = new ArrayList<>(BatchQueryUtils.collectIds(roomTypeIds, id -> id));
+        if (ids.isEmpty()) {
+            return new LinkedHashMap<>();
+        }
+        Map<Long, RoomTypeRating> result = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+
+        List<String> cached = readCache(ids);
+        for (int i = 0; i < ids.size(); i++) {
+            RoomTypeRating rating = cached == null ? null : decode(cached.get(i));
+            if (rating != null) {
+                result.put(ids.get(i), rating);
+            } else {
+                missing.add(ids.get(i));
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            // 先读版本号再查数据库，写回时版本号已变化说明加载期间有评价变更
+            List<String> versions = readVersions(missing);
+            Map<Long, RoomTypeRating> loaded = BatchQueryUtils.selectByIds(roomTypeRatingMapper, missing,
+                RoomTypeRating::getRoomTypeId);
+            for (int i = 0; i < missing.size(); i++) {
+                Long id = missing.get(i);
+                RoomTypeRating rating = loaded.getOrDefault(id, RoomTypeRating.empty(id));
+                result.put(id, rating);
+                if (versions != null) {
+                    writeCache(rating, versions.get(i));
+                }
+            }
+        }
+
+        // 保持传入顺序
+        Map<Long, RoomTypeRating> ordered = new LinkedHashMap<>();
+        for (Long id : ids) {
+            ordered.put(id, result.get(id));
+        }
+        return ordered;
+    }
+
+    /**
+     * 所有房型的汇总之和
+     */
+    public RoomTypeRating getTotal() {
+        return roomTypeRatingMapper.selectTotal();
+    }
+
+    private void addScore(RoomTypeRating delta, int score, int sign) {
+        delta.setReviewCount(delta.getReviewCount() + sign);
+        delta.setScoreSum(delta.getScoreSum() + (long) sign * score);
+        switch (score) {
+            case 1: delta.setScore1(delta.getScore1() + sign); break;
+            case 2: delta.setScore2(delta.getScore2() + sign); break;
+            case 3: delta.setScore3(delta.getScore3() + sign); break;
+            case 4: delta.setScore4(delta.getScore4() + sign); break;
+            case 5: delta.setScore5(delta.getScore5() + sign); break;
+            default: break;
+        }
+    }
+
+    private List<String> readCache(List<Long> ids) {
+        List<String> keys = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            keys.add(CACHE_KEY_PREFIX + id);
+        }
+        try {
+            return stringRedisTemplate.opsForValue().multiGet(keys);
+        } catch (RuntimeException e) {
+            LOGGER.warn("读取房型评分缓存失败，直接查询数据库", e);
+            return null;
+        }
+    }
+
+    /**
+     * @return 与 ids 一一对应的版本号，没有版本号为 "0"；Redis 不可用时返回 null，不再回填缓存
+     */
+    private List<String> readVersions(List<Long> ids) {
+        List<String> keys = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            keys.add(VERSION_KEY_PREFIX + id);
+        }
+        try {
+            List<String> versions = stringRedisTemplate.opsForValue().multiGet(keys);
+            if (versions == null) {
+                return null;
+            }
+            List<String> result = new ArrayList<>(versions.size());
+            for (String version : versions) {
+                result.add(version == null ? "0" : version);
+            }
+            return result;
+        } catch (RuntimeException e) {
+            LOGGER.warn("读取房型评分缓存版本失败，不回填缓存", e);
+            return null;
+        }
+    }
+
+    private void writeCache(RoomTypeRating rating, String version) {
+        Long roomTypeId = rating.getRoomTypeId();
+        try {
+            stringRedisTemplate.execute(WRITE_IF_VERSION_SCRIPT,
+                List.of(CACHE_KEY_PREFIX + roomTypeId, VERSION_KEY_PREFIX + roomTypeId),
+                objectMapper.writeValueAsString(rating), version, String.valueOf(CACHE_TTL.getSeconds()));
+        } catch (JsonProcessingException | RuntimeException e) {
+            LOGGER.warn("写入房型评分缓存失败，房型ID：{}", roomTypeId, e);
+        }
+    }
+
+    private void evict(Long roomTypeId) {
+        try {
+            stringRedisTemplate.opsForValue().increment(VERSION_KEY_PREFIX + roomTypeId);
+            stringRedisTemplate.delete(CACHE_KEY_PREFIX + roomTypeId);
+        } catch (RuntimeException e) {
+            LOGGER.warn("删除房型评分缓存失败，房型ID：{}", roomTypeId, e);
+        }
+    }
+
+    private RoomTypeRating decode(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(value, RoomTypeRating.class);
+        } catch (JsonProcessingException e) {
+            return null;
+        }
+    }
+}
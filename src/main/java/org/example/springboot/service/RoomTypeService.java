@@ -11,11 +11,16 @@ import org.example.springboot.exception.ServiceException;
 import org.example.springboot.mapper.RoomTypeMapper;
 import org.example.springboot.mapper.RoomTypeImageMapper;
 import org.example.springboot.mapper.RoomMapper;
+import org.example.springboot.util.BatchQueryUtils;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * 房间类型服务类
@@ -30,6 +35,16 @@ public class RoomTypeService {
     
     @Resource
     private RoomTypeImageMapper roomTypeImageMapper;
+
+    @Resource
+    private TwoLevelCache twoLevelCache;
+
+    @Resource
+    private CatalogVersionService catalogVersionService;
+
+    // 两级缓存的键：全部房型、单个房型（后接房型ID）
+    private static final String ALL_ROOM_TYPES_KEY = "roomType:all";
+    private static final String ROOM_TYPE_KEY_PREFIX = "roomType:";
     
     /**
      * 分页查询房间类型
@@ -58,105 +73,90 @@ public class RoomTypeService {
         // 分页查询
         Page<RoomType> page = roomTypeMapper.selectPage(new Page<>(currentPage, size), queryWrapper);
         
-        // 查询每种房型的房间数量和图片
-        for (RoomType roomType : page.getRecords()) {
-            // 查询总房间数
-            int roomCount = Math.toIntExact(roomMapper.selectCount(
-                    new LambdaQueryWrapper<Room>()
-                            .eq(Room::getRoomTypeId, roomType.getId())
-            ));
-            
-            // 查询可用房间数
-            int availableRoomCount = Math.toIntExact(roomMapper.selectCount(
-                    new LambdaQueryWrapper<Room>()
-                            .eq(Room::getRoomTypeId, roomType.getId())
-                            .eq(Room::getStatus, 1)
-            ));
-            
-            roomType.setRoomCount(roomCount);
-            roomType.setAvailableRoomCount(availableRoomCount);
-            
-            // 查询房型图片
-            loadRoomTypeImages(roomType);
-        }
+        // 查询房型的房间数量和图片
+        loadRoomTypeDetails(page.getRecords());
         
         return page;
     }
     
     /**
-     * 获取所有房间类型
+     * 获取所有房间类型（两级缓存，返回的对象不能修改）
      */
     public List<RoomType> getAllRoomTypes() {
-        List<RoomType> roomTypes = roomTypeMapper.selectList(null);
-        
-        // 查询每种房型的房间数量和图片
-        for (RoomType roomType : roomTypes) {
-            // 查询总房间数
-            Long roomCount = roomMapper.selectCount(
-                new LambdaQueryWrapper<Room>()
-                    .eq(Room::getRoomTypeId, roomType.getId())
-            );
-            
-            // 查询可用房间数
-            Long availableRoomCount = roomMapper.selectCount(
-                new LambdaQueryWrapper<Room>()
-                    .eq(Room::getRoomTypeId, roomType.getId())
-                    .eq(Room::getStatus, 1)
-            );
-            
-            roomType.setRoomCount(Math.toIntExact(roomCount));
-            roomType.setAvailableRoomCount(Math.toIntExact(availableRoomCount));
-            
-            // 查询房型图片
-            loadRoomTypeImages(roomType);
-        }
-        
-        return roomTypes;
+        return twoLevelCache.getList(ALL_ROOM_TYPES_KEY, RoomType[].class, () -> {
+            List<RoomType> roomTypes = roomTypeMapper.selectList(null);
+
+            // 查询房型的房间数量和图片
+            loadRoomTypeDetails(roomTypes);
+
+            return roomTypes;
+        });
     }
     
     /**
-     * 根据ID获取房间类型
+     * 根据ID获取房间类型（两级缓存，返回的对象不能修改）
      */
     public RoomType getRoomTypeById(Long id) {
-        RoomType roomType = roomTypeMapper.selectById(id);
+        RoomType roomType = twoLevelCache.get(ROOM_TYPE_KEY_PREFIX + id, RoomType.class, () -> {
+            RoomType loaded = roomTypeMapper.selectById(id);
+            if (loaded != null) {
+                // 查询房型的房间数量和图片
+                loadRoomTypeDetails(List.of(loaded));
+            }
+            return loaded;
+        });
         if (roomType == null) {
             throw new ServiceException("房间类型不存在");
         }
-        
-        // 查询总房间数
-        int roomCount = Math.toIntExact(roomMapper.selectCount(
-                new LambdaQueryWrapper<Room>()
-                        .eq(Room::getRoomTypeId, roomType.getId())
-        ));
-        
-        // 查询可用房间数
-        int availableRoomCount = Math.toIntExact(roomMapper.selectCount(
-                new LambdaQueryWrapper<Room>()
-                        .eq(Room::getRoomTypeId, roomType.getId())
-                        .eq(Room::getStatus, 1)
-        ));
-        
-        roomType.setRoomCount(roomCount);
-        roomType.setAvailableRoomCount(availableRoomCount);
-        
-        // 查询房型图片
-        loadRoomTypeImages(roomType);
-        
         return roomType;
     }
+
+    /**
+     * 使房型目录缓存失效并推进房型、图片和房间的目录版本，房型、图片或房间变化后调用
+     * @param roomTypeId 变化的房型ID，为 null 时只清除全部房型列表
+     */
+    public void evictRoomTypeCache(Long roomTypeId) {
+        if (roomTypeId == null) {
+            twoLevelCache.evict(ALL_ROOM_TYPES_KEY);
+        } else {
+            twoLevelCache.evict(ALL_ROOM_TYPES_KEY, ROOM_TYPE_KEY_PREFIX + roomTypeId);
+        }
+        catalogVersionService.touch(CatalogVersionService.Table.ROOM_TYPE, CatalogVersionService.Table.ROOM_TYPE_IMAGE,
+                CatalogVersionService.Table.ROOM);
+    }
     
     /**
-     * 查询房型图片
+     * 回填房型的房间数量和图片
+     * 房间数量用一条分组统计查询，图片用一条 IN 查询，查询次数与房型数量无关
      */
-    private void loadRoomTypeImages(RoomType roomType) {
-        if (roomType == null) return;
+    private void loadRoomTypeDetails(List<RoomType> roomTypes) {
+        if (roomTypes.isEmpty()) {
+            return;
+        }
+        Set<Long> roomTypeIds = BatchQueryUtils.collectIds(roomTypes, RoomType::getId);
         
-        LambdaQueryWrapper<RoomTypeImage> queryWrapper = new LambdaQueryWrapper<>();
-        queryWrapper.eq(RoomTypeImage::getRoomTypeId, roomType.getId());
-        queryWrapper.orderByAsc(RoomTypeImage::getSortOrder);
+        // 没有房间的房型不会出现在统计结果中，数量为0
+        Map<Long, Map<String, Object>> counts = new HashMap<>();
+        for (Map<String, Object> row : roomMapper.countByRoomType(roomTypeIds)) {
+            counts.put(((Number) row.get("roomTypeId")).longValue(), row);
+        }
         
-        List<RoomTypeImage> images = roomTypeImageMapper.selectList(queryWrapper);
-        roomType.setImages(images);
+        Map<Long, List<RoomTypeImage>> imagesByType = new HashMap<>();
+        List<RoomTypeImage> images = roomTypeImageMapper.selectList(
+            new LambdaQueryWrapper<RoomTypeImage>()
+                .in(RoomTypeImage::getRoomTypeId, roomTypeIds)
+                .orderByAsc(RoomTypeImage::getSortOrder)
+        );
+        for (RoomTypeImage image : images) {
+            imagesByType.computeIfAbsent(image.getRoomTypeId(), key -> new ArrayList<>()).add(image);
+        }
+        
+        for (RoomType roomType : roomTypes) {
+            Map<String, Object> count = counts.get(roomType.getId());
+            roomType.setRoomCount(count == null ? 0 : ((Number) count.get("roomCount")).intValue());
+            roomType.setAvailableRoomCount(count == null ? 0 : ((Number) count.get("availableRoomCount")).intValue());
+            roomType.setImages(imagesByType.getOrDefault(roomType.getId(), new ArrayList<>()));
+        }
     }
     
     /**
@@ -172,12 +172,14 @@ public class RoomTypeService {
             throw new ServiceException("房型名称已存在");
         }
         
+        roomType.setUpdateTime(LocalDateTime.now());
         if (roomTypeMapper.insert(roomType) <= 0) {
             throw new ServiceException("创建房间类型失败");
         }
         
         // 保存图片
         saveRoomTypeImages(roomType.getId(), roomType.getImages());
+        evictRoomTypeCache(roomType.getId());
     }
     
     /**
@@ -203,6 +205,7 @@ public class RoomTypeService {
         }
         
         roomType.setId(id);
+        roomType.setUpdateTime(LocalDateTime.now());
         if (roomTypeMapper.updateById(roomType) <= 0) {
             throw new ServiceException("更新房间类型失败");
         }
@@ -211,6 +214,7 @@ public class RoomTypeService {
         if (roomType.getImages() != null) {
             updateRoomTypeImages(id, roomType.getImages());
         }
+        evictRoomTypeCache(id);
     }
     
     /**
@@ -241,6 +245,7 @@ public class RoomTypeService {
         if (roomTypeMapper.deleteById(id) <= 0) {
             throw new ServiceException("删除房间类型失败");
         }
+        evictRoomTypeCache(id);
     }
     
     /**
@@ -264,6 +269,7 @@ public class RoomTypeService {
                 image.setIsMain(0);
             }
             
+            image.setUpdateTime(LocalDateTime.now());
             roomTypeImageMapper.insert(image);
         }
         
@@ -273,8 +279,10 @@ public class RoomTypeService {
             RoomType roomType = new RoomType();
             roomType.setId(roomTypeId);
             roomType.setImage(mainImage.getImageUrl());
+            roomType.setUpdateTime(LocalDateTime.now());
             roomTypeMapper.updateById(roomType);
         }
+        evictRoomTypeCache(roomTypeId);
     }
     
     /**
@@ -294,6 +302,7 @@ public class RoomTypeService {
         
         // 保存新图片
         saveRoomTypeImages(roomTypeId, images);
+        evictRoomTypeCache(roomTypeId);
     }
     
     /**
@@ -320,6 +329,7 @@ public class RoomTypeService {
         image.setRoomTypeId(roomTypeId);
         image.setSortOrder(count);
         image.setIsMain(count == 0 ? 1 : 0);
+        image.setUpdateTime(LocalDateTime.now());
         
         roomTypeImageMapper.insert(image);
         
@@ -328,8 +338,10 @@ public class RoomTypeService {
             RoomType updateRoomType = new RoomType();
             updateRoomType.setId(roomTypeId);
             updateRoomType.setImage(image.getImageUrl());
+            updateRoomType.setUpdateTime(LocalDateTime.now());
             roomTypeMapper.updateById(updateRoomType);
         }
+        evictRoomTypeCache(roomTypeId);
     }
     
     /**
@@ -363,21 +375,25 @@ public class RoomTypeService {
             if (newMainImage != null) {
                 // 设置为主图
                 newMainImage.setIsMain(1);
+                newMainImage.setUpdateTime(LocalDateTime.now());
                 roomTypeImageMapper.updateById(newMainImage);
                 
                 // 更新房型表的图片URL
                 RoomType roomType = new RoomType();
                 roomType.setId(roomTypeId);
                 roomType.setImage(newMainImage.getImageUrl());
+                roomType.setUpdateTime(LocalDateTime.now());
                 roomTypeMapper.updateById(roomType);
             } else {
                 // 没有图片了，清空主图URL
                 RoomType roomType = new RoomType();
                 roomType.setId(roomTypeId);
                 roomType.setImage(null);
+                roomType.setUpdateTime(LocalDateTime.now());
                 roomTypeMapper.updateById(roomType);
             }
         }
+        evictRoomTypeCache(roomTypeId);
     }
     
     /**
@@ -399,6 +415,7 @@ public class RoomTypeService {
         List<RoomTypeImage> images = roomTypeImageMapper.selectList(queryWrapper);
         for (RoomTypeImage img : images) {
             img.setIsMain(img.getId().equals(imageId) ? 1 : 0);
+            img.setUpdateTime(LocalDateTime.now());
             roomTypeImageMapper.updateById(img);
         }
         
@@ -406,6 +423,8 @@ public class RoomTypeService {
         RoomType roomType = new RoomType();
         roomType.setId(roomTypeId);
         roomType.setImage(image.getImageUrl());
+        roomType.setUpdateTime(LocalDateTime.now());
         roomTypeMapper.updateById(roomType);
+        evictRoomTypeCache(roomTypeId);
     }
 } 
\ No newline at end of file
@@ -0,0 +1,229 @@
+package org.example.springboot.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import jakarta.annotation.Resource;
+import org.example.springboot.DTO.RevenueTrendDTO;
+import org.example.springboot.entity.Room;
+import org.example.springboot.exception.ServiceException;
+import org.example.springboot.mapper.DailyRoomTypeStatsMapper;
+import org.example.springboot.mapper.RoomMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 每日房型经营汇总服务
+ * 定时任务取出上次水位线之后有变更的预订和订单，按它们覆盖的入住日期范围分段重算 daily_room_type_stats；
+ * 趋势查询只读汇总表（入住率另外读取当前的房间数），不再扫描预订表和订单表。
+ * 预订改期或缩短时，写路径通过 markDirty 记录原日期范围，下次增量汇总一并重算不再覆盖的旧日期。
+ */
+@Service
+public class StatsRollupService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(StatsRollupService.class);
+
+    private static final String WATERMARK_NAME = "daily_room_type_stats";
+
+    private static final String LOCK_NAME = "rollup:daily_room_type_stats";
+
+    // 趋势查询和手动重算允许的最大日期跨度
+    private static final long MAX_RANGE_DAYS = 3 * 366;
+
+    @Resource
+    private DailyRoomTypeStatsMapper dailyRoomTypeStatsMapper;
+
+    @Resource
+    private RoomMapper roomMapper;
+
+    @Resource
+    private DistributedLockService distributedLockService;
+
+    @Resource
+    private TransactionTemplate transactionTemplate;
+
+    // 每个事务重算的天数，控制单个事务的大小
+    @Value("${hotel.rollup.chunk-days:31}")
+    private int chunkDays;
+
+    // 读取变更时把水位线往前回退的时间，覆盖汇总期间仍未提交的事务
+    @Value("${hotel.rollup.overlap-minutes:10}")
+    private long overlapMinutes;
+
+    /**
+     * 增量汇总：重算上次水位线之后有变更的预订覆盖的日期，没有水位线时全量汇总
+     * 多实例部署时只有获得锁的节点执行
+     */
+    public void rollup() {
+        try (DistributedLockService.DistributedLock lock = distributedLockService.tryLock(LOCK_NAME, 0)) {
+            if (lock == null) {
+                LOGGER.info("其他节点正在执行经营汇总，跳过本次");
+                return;
+            }
+            LocalDateTime now = dailyRoomTypeStatsMapper.selectDatabaseTime();
+            LocalDateTime watermark = dailyRoomTypeStatsMapper.selectWatermark(WATERMARK_NAME);
+            LocalDateTime since = watermark == null ? null : watermark.minusMinutes(overlapMinutes);
+            Map<String, Object> range = since == null
+                ? dailyRoomTypeStatsMapper.selectStayRange()
+                : dailyRoomTypeStatsMapper.selectChangedStayRange(since);
+
+            LocalDate startDate = range == null ? null : toLocalDate(range.get("startDate"));
+            LocalDate endDate = range == null ? null : toLocalDate(range.get("endDate"));
+            if (startDate != null && endDate != null) {
+                int rows = rebuildRange(startDate, endDate);
+                LOGGER.info("经营汇总完成，重算 {} 至 {}，写入 {} 行", startDate, endDate, rows);
+            }
+            dailyRoomTypeStatsMapper.saveWatermark(WATERMARK_NAME, now);
+            // 本次之前已处理过的待重算范围不再需要（回退窗口内的记录留给下次）
+            if (since != null) {
+                dailyRoomTypeStatsMapper.deleteDirtyRanges(since);
+            }
+        }
+    }
+
+    /**
+     * 记录预订不再覆盖的原日期范围 [startDate, endDate)，在写预订的事务内调用
+     */
+    public void markDirty(LocalDate startDate, LocalDate endDate) {
+        if (startDate != null && endDate != null && startDate.isBefore(endDate)) {
+            dailyRoomTypeStatsMapper.insertDirtyRange(startDate, endDate);
+        }
+    }
+
+    /**
+     * 手动重算指定日期范围（含两端）的汇总，不移动水位线
+     */
+    public int rebuild(LocalDate startDate, LocalDate endDate) {
+        validateRange(startDate, endDate);
+        try (DistributedLockService.DistributedLock lock = distributedLockService.tryLock(LOCK_NAME, 0)) {
+            if (lock == null) {
+                throw new ServiceException("汇总任务正在执行，请稍后重试");
+            }
+            return rebuildRange(startDate, endDate.plusDays(1));
+        }
+    }
+
+    /**
+     * 查询经营趋势
+     * @param startDate 开始日期（含）
+     * @param endDate 结束日期（含）
+     * @param granularity day 按天，month 按月
+     * @param roomTypeId 只统计该房型，为 null 时统计所有房型
+     * @param groupByRoomType 是否按房型分别返回
+     */
+    public List<RevenueTrendDTO> getTrends(LocalDate startDate, LocalDate endDate, String granularity,
+                                           Long roomTypeId, boolean groupByRoomType) {
+        validateRange(startDate, endDate);
+        boolean month;
+        if (granularity == null || "day".equals(granularity)) {
+            month = false;
+        } else if ("month".equals(granularity)) {
+            month = true;
+        } else {
+            throw new ServiceException("不支持的统计粒度：" + granularity);
+        }
+
+        LocalDate endExclusive = endDate.plusDays(1);
+        List<RevenueTrendDTO> trends = dailyRoomTypeStatsMapper.selectTrends(startDate, endExclusive, month,
+            roomTypeId, groupByRoomType);
+        Map<Long, Long> roomCounts = groupByRoomType ? countRoomsByType(trends) : Map.of();
+        long totalRooms = groupByRoomType ? 0 : countRooms(roomTypeId);
+
+        for (RevenueTrendDTO trend : trends) {
+            int nightsSold = trend.getNightsSold() == null ? 0 : trend.getNightsSold();
+            if (nightsSold > 0 && trend.getRevenue() != null) {
+                trend.setAverageRate(trend.getRevenue().divide(BigDecimal.valueOf(nightsSold), 2, RoundingMode.HALF_UP));
+            }
+            long rooms = groupByRoomType ? roomCounts.getOrDefault(trend.getRoomTypeId(), 0L) : totalRooms;
+            long days = daysInPeriod(trend.getPeriod(), month, startDate, endExclusive);
+            if (rooms > 0 && days > 0) {
+                trend.setOccupancyRate(BigDecimal.valueOf(nightsSold)
+                    .divide(BigDecimal.valueOf(rooms * days), 4, RoundingMode.HALF_UP));
+            }
+        }
+        return trends;
+    }
+
+    /**
+     * 分段重算 [startDate, endDate)，每段在一个事务中先删后插，查询不会看到缺失的日期
+     * @return 写入的汇总行数
+     */
+    private int rebuildRange(LocalDate startDate, LocalDate endDate) {
+        int rows = 0;
+        for (LocalDate from = startDate; from.isBefore(endDate); from = from.plusDays(chunkDays)) {
+            LocalDate chunkStart = from;
+            LocalDate chunkEnd = from.plusDays(chunkDays).isBefore(endDate) ? from.plusDays(chunkDays) : endDate;
+            Integer inserted = transactionTemplate.execute(status -> {
+                dailyRoomTypeStatsMapper.deleteRange(chunkStart, chunkEnd);
+                return dailyRoomTypeStatsMapper.insertRange(chunkStart, chunkEnd);
+            });
+            rows += inserted == null ? 0 : inserted;
+        }
+        return rows;
+    }
+
+    private void validateRange(LocalDate startDate, LocalDate endDate) {
+        if (startDate == null || endDate == null) {
+            throw new ServiceException("开始日期和结束日期不能为空");
+        }
+        if (endDate.isBefore(startDate)) {
+            throw new ServiceException("结束日期不能早于开始日期");
+        }
+        if (ChronoUnit.DAYS.between(startDate, endDate) >= MAX_RANGE_DAYS) {
+            throw new ServiceException("日期跨度不能超过" + MAX_RANGE_DAYS + "天");
+        }
+    }
+
+    /**
+     * 统计周期与查询范围重叠的天数
+     */
+    private long daysInPeriod(String period, boolean month, LocalDate startDate, LocalDate endExclusive) {
+        if (!month) {
+            return 1;
+        }
+        YearMonth yearMonth = YearMonth.parse(period);
+        LocalDate from = yearMonth.atDay(1).isBefore(startDate) ? startDate : yearMonth.atDay(1);
+        LocalDate to = yearMonth.plusMonths(1).atDay(1).isAfter(endExclusive) ? endExclusive : yearMonth.plusMonths(1).atDay(1);
+        return Math.max(0, ChronoUnit.DAYS.between(from, to));
+    }
+
+    private Map<Long, Long> countRoomsByType(List<RevenueTrendDTO> trends) {
+        List<Long> roomTypeIds = trends.stream().map(RevenueTrendDTO::getRoomTypeId)
+            .filter(Objects::nonNull).distinct().toList();
+        Map<Long, Long> counts = new HashMap<>();
+        if (roomTypeIds.isEmpty()) {
+            return counts;
+        }
+        for (Map<String, Object> row : roomMapper.countByRoomType(roomTypeIds)) {
+            counts.put(((Number) row.get("roomTypeId")).longValue(), ((Number) row.get("roomCount")).longValue());
+        }
+        return counts;
+    }
+
+    private long countRooms(Long roomTypeId) {
+        return roomMapper.selectCount(new LambdaQueryWrapper<Room>()
+            .eq(roomTypeId != null, Room::getRoomTypeId, roomTypeId));
+    }
+
+    private LocalDate toLocalDate(Object value) {
+        if (value instanceof LocalDate) {
+            return (LocalDate) value;
+        }
+        if (value instanceof Date) {
+            return ((Date) value).toLocalDate();
+        }
+        return value == null ? null : LocalDate.parse(value.toString());
+    }
+}
@@ -0,0 +1,242 @@
+package org.example.springboot.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import org.example.springboot.util.TransactionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+
+import java.lang.reflect.Array;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 两级缓存：进程内一级缓存（按访问顺序淘汰、带有效期）在前，Redis 二级缓存在后
+ * 用于房型目录、轮播图等很少变化但每次访问首页都要读取的数据。
+ * Redis 中的值按版本号存放（每个键一个计数器），数据变更时调用 evict，事务提交后把版本号加一
+ * 并通过 Redis 发布订阅通知所有节点清除一级缓存；加载前读到旧版本号的节点只会写入不再被读取的旧版本，
+ * 不会把变更前的数据写回 Redis。通知丢失（如 Redis 短暂不可用）时由一级缓存的有效期兜底。
+ * 一级缓存条目记录加载前读取的目录版本，返回时登记到当前请求，条件GET 按该版本计算 ETag，
+ * 收到失效通知前返回的旧内容不会带上新版本的 ETag。
+ * 返回的对象在节点内共享，调用方不能修改。
+ */
+@Service
+public class TwoLevelCache implements MessageListener {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TwoLevelCache.class);
+
+    private static final String KEY_PREFIX = "hotel:cache:";
+
+    private static final String VERSION_KEY_PREFIX = "hotel:cache-version:";
+
+    private static final String INVALIDATE_CHANNEL = "hotel:cache:invalidate";
+
+    @Resource
+    private RedisService redisService;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private CatalogVersionService catalogVersionService;
+
+    @Resource
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    // 一级缓存最多保存的键数，超出后淘汰最久未访问的
+    @Value("${hotel.cache.local-max-size:1000}")
+    private int localMaxSize;
+
+    // 一级缓存有效期，也是其他节点错过失效通知时的最长陈旧时间
+    @Value("${hotel.cache.local-ttl-seconds:60}")
+    private long localTtlSeconds;
+
+    @Value("${hotel.cache.redis-ttl-seconds:600}")
+    private long redisTtlSeconds;
+
+    private Map<String, LocalEntry> localCache;
+
+    // 每次清除一级缓存时加一，加载期间发生过清除的结果不再放入两级缓存，避免覆盖为旧数据
+    private long generation;
+
+    @PostConstruct
+    public void init() {
+        localCache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, LocalEntry> eldest) {
+                return size() > localMaxSize;
+            }
+        };
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(INVALIDATE_CHANNEL));
+    }
+
+    /**
+     * 依次读取一级缓存、Redis，都未命中时调用 loader 加载并写入两级缓存
+     * @param loader 返回 null 时不缓存
+     */
+    public <T> T get(String key, Class<T> type, Supplier<T> loader) {
+        long loadGeneration;
+        synchronized (this) {
+            LocalEntry entry = localCache.get(key);
+            if (entry != null && entry.expiresAt > System.nanoTime()) {
+                catalogVersionService.recordServed(entry.stamp);
+                return type.cast(entry.value);
+            }
+            loadGeneration = generation;
+        }
+
+        // 先读目录版本再读缓存和数据库，内容不会比记录的版本旧
+        CatalogVersionService.Stamp stamp = readStamp(key);
+        // 版本号读取失败时跳过二级缓存，直接加载且不写入 Redis
+        String version = readVersion(key);
+        T value = version == null ? null : readRemote(remoteKey(key, version), type);
+        if (value == null) {
+            value = loader.get();
+            if (value == null) {
+                return null;
+            }
+            if (version != null && isGeneration(loadGeneration)) {
+                writeRemote(remoteKey(key, version), value);
+            }
+        }
+        putLocal(key, value, stamp, loadGeneration);
+        catalogVersionService.recordServed(stamp);
+        return value;
+    }
+
+    /**
+     * 读取列表，Redis 中以数组保存
+     * @param arrayType 元素的数组类型，如 RoomType[].class
+     */
+    public <T> List<T> getList(String key, Class<T[]> arrayType, Supplier<List<T>> loader) {
+        T[] values = get(key, arrayType, () -> toArray(loader.get(), arrayType));
+        return values == null ? new ArrayList<>() : List.of(values);
+    }
+
+    /**
+     * 使缓存失效：立即清除本节点的一级缓存，所在事务提交后把 Redis 中的版本号加一、删除旧版本的值并通知其他节点
+     */
+    public void evict(String... keys) {
+        invalidateLocal(keys);
+        TransactionUtils.afterCommit(() -> {
+            invalidateLocal(keys);
+            try {
+                List<String> redisKeys = new ArrayList<>(keys.length);
+                for (String key : keys) {
+                    Long version = stringRedisTemplate.opsForValue().increment(VERSION_KEY_PREFIX + key);
+                    if (version != null) {
+                        redisKeys.add(remoteKey(key, String.valueOf(version - 1)));
+                    }
+                }
+                stringRedisTemplate.delete(redisKeys);
+                stringRedisTemplate.convertAndSend(INVALIDATE_CHANNEL, String.join(",", keys));
+            } catch (RuntimeException e) {
+                LOGGER.warn("删除缓存或发送失效通知失败，其他节点将在一级缓存过期后更新: {}", String.join(",", keys), e);
+            }
+        });
+    }
+
+    /**
+     * 收到其他节点（包括本节点）的失效通知
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        invalidateLocal(body.split(","));
+    }
+
+    private synchronized void invalidateLocal(String... keys) {
+        generation++;
+        for (String key : keys) {
+            localCache.remove(key);
+        }
+    }
+
+    private synchronized void putLocal(String key, Object value, CatalogVersionService.Stamp stamp, long loadGeneration) {
+        if (loadGeneration == generation) {
+            localCache.put(key, new LocalEntry(value, stamp, System.nanoTime() + TimeUnit.SECONDS.toNanos(localTtlSeconds)));
+        }
+    }
+
+    private synchronized boolean isGeneration(long loadGeneration) {
+        return loadGeneration == generation;
+    }
+
+    /**
+     * @return 目录的当前版本；读取失败返回 null，返回的内容不设置 ETag
+     */
+    private CatalogVersionService.Stamp readStamp(String key) {
+        try {
+            return catalogVersionService.currentStamp();
+        } catch (RuntimeException e) {
+            LOGGER.warn("读取目录版本失败: {}", key, e);
+            return null;
+        }
+    }
+
+    /**
+     * @return 键的当前版本号，没有版本号为 "0"；读取失败返回 null
+     */
+    private String readVersion(String key) {
+        try {
+            String version = stringRedisTemplate.opsForValue().get(VERSION_KEY_PREFIX + key);
+            return version == null ? "0" : version;
+        } catch (RuntimeException e) {
+            LOGGER.warn("读取二级缓存版本失败，直接加载: {}", key, e);
+            return null;
+        }
+    }
+
+    private String remoteKey(String key, String version) {
+        return KEY_PREFIX + key + "@" + version;
+    }
+
+    private <T> T readRemote(String remoteKey, Class<T> type) {
+        try {
+            return redisService.get(remoteKey, type);
+        } catch (RuntimeException e) {
+            LOGGER.warn("读取二级缓存失败，直接加载: {}", remoteKey, e);
+            return null;
+        }
+    }
+
+    private void writeRemote(String remoteKey, Object value) {
+        try {
+            redisService.set(remoteKey, value, redisTtlSeconds, TimeUnit.SECONDS);
+        } catch (RuntimeException e) {
+            LOGGER.warn("写入二级缓存失败: {}", remoteKey, e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T[] toArray(List<T> list, Class<T[]> arrayType) {
+        if (list == null) {
+            return null;
+        }
+        return list.toArray((T[]) Array.newInstance(arrayType.getComponentType(), list.size()));
+    }
+
+    private static final class LocalEntry {
+        private final Object value;
+        // 加载前读取的目录版本，读取失败时为 null
+        private final CatalogVersionService.Stamp stamp;
+        private final long expiresAt;
+
+        private LocalEntry(Object value, CatalogVersionService.Stamp stamp, long expiresAt) {
+            this.value = value;
+            this.stamp = stamp;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
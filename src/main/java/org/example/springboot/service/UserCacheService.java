@@ -2,6 +2,9 @@ package org.example.springboot.service;
 
 import jakarta.annotation.Resource;
 import org.example.springboot.entity.User;
+import org.example.springboot.util.TransactionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
 import java.util.concurrent.TimeUnit;
@@ -12,12 +15,14 @@ import java.util.concurrent.TimeUnit;
  */
 @Service
 public class UserCacheService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(UserCacheService.class);
 
     @Resource
     private RedisService redisService;
 
     // 缓存键前缀
     private static final String USER_INFO_PREFIX = "user:info:";
+    private static final String USER_INFO_VERSION_PREFIX = "user:info:version:";
     private static final String USER_TOKEN_PREFIX = "user:token:";
     private static final String LOGIN_FAIL_PREFIX = "user:login:fail:";
     private static final String EMAIL_CODE_PREFIX = "user:email:code:";
@@ -29,38 +34,79 @@ public class UserCacheService {
     private static final long EMAIL_CODE_EXPIRE = 5; // 邮箱验证码5分钟
 
     /**
-     * 缓存用户信息（暂时禁用，避免序列化问题）
+     * 读取用户信息缓存的版本号，查询数据库前调用，写回缓存时据此判断加载期间缓存是否被失效
+     * @param userId 用户ID
+     * @return 版本号，没有版本号为 "0"；Redis 不可用时返回 null，不再回填缓存
+     */
+    public String getUserInfoVersion(Long userId) {
+        if (userId == null) {
+            return null;
+        }
+        try {
+            Object version = redisService.get(USER_INFO_VERSION_PREFIX + userId);
+            return version == null ? "0" : version.toString();
+        } catch (RuntimeException e) {
+            LOGGER.warn("读取用户信息缓存版本失败，不回填缓存，用户ID：{}", userId, e);
+            return null;
+        }
+    }
+
+    /**
+     * 缓存用户信息，版本号与加载前读取的一致时才写入，Redis 不可用时只记录日志
+     * 加载期间用户被修改（如撤销管理员角色）时版本号已递增，旧数据不会写回缓存
      * @param user 用户信息
+     * @param version 查询数据库前 {@link #getUserInfoVersion} 返回的版本号
      */
-    public void cacheUserInfo(User user) {
-        // 暂时禁用用户信息缓存，避免序列化问题
-        // 等Redis配置完全稳定后再启用
-        /*
-        if (user != null && user.getId() != null) {
-            String key = USER_INFO_PREFIX + user.getId();
-            redisService.set(key, user, USER_INFO_EXPIRE, TimeUnit.MINUTES);
-        }
-        */
+    public void cacheUserInfo(User user, String version) {
+        if (user != null && user.getId() != null && version != null) {
+            try {
+                redisService.setIfVersion(USER_INFO_PREFIX + user.getId(), user,
+                    USER_INFO_VERSION_PREFIX + user.getId(), version, USER_INFO_EXPIRE, TimeUnit.MINUTES);
+            } catch (RuntimeException e) {
+                LOGGER.warn("缓存用户信息失败，用户ID：{}", user.getId(), e);
+            }
+        }
     }
 
     /**
-     * 获取缓存的用户信息（暂时禁用）
+     * 获取缓存的用户信息
      * @param userId 用户ID
-     * @return 用户信息
+     * @return 用户信息，未缓存或 Redis 不可用时返回 null
      */
     public User getCachedUserInfo(Long userId) {
-        // 暂时禁用用户信息缓存，直接返回null让系统从数据库查询
-        return null;
+        if (userId == null) {
+            return null;
+        }
+        try {
+            return redisService.get(USER_INFO_PREFIX + userId, User.class);
+        } catch (RuntimeException e) {
+            LOGGER.warn("读取用户信息缓存失败，用户ID：{}", userId, e);
+            return null;
+        }
     }
 
     /**
      * 删除用户信息缓存
+     * 在所在事务提交后（不在事务中时立即）递增版本号再删除：提交前开始的加载读到的是旧数据和旧版本号，
+     * 其写回会因版本号不一致被放弃
      * @param userId 用户ID
      */
     public void removeCachedUserInfo(Long userId) {
         if (userId != null) {
-            String key = USER_INFO_PREFIX + userId;
-            redisService.delete(key);
+            if (TransactionUtils.isInTransaction()) {
+                TransactionUtils.afterCommit(() -> evictUserInfo(userId));
+            } else {
+                evictUserInfo(userId);
+            }
+        }
+    }
+
+    private void evictUserInfo(Long userId) {
+        try {
+            redisService.increment(USER_INFO_VERSION_PREFIX + userId, 1);
+            redisService.delete(USER_INFO_PREFIX + userId);
+        } catch (RuntimeException e) {
+            LOGGER.warn("删除用户信息缓存失败，用户ID：{}", userId, e);
         }
     }
 
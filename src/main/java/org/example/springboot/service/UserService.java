@@ -78,9 +78,6 @@ public class UserService {
         // 缓存用户Token
         userCacheService.cacheUserToken(dbUser.getId(), token);
 
-        // 暂时注释掉用户信息缓存，避免序列化问题
-        // userCacheService.cacheUserInfo(dbUser);
-
         // 设置用户角色名称
         dbUser.setRoleName(dbUser.getRoleName());
         dbUser.setToken(token);
@@ -205,6 +202,8 @@ public class UserService {
         
         for (Integer id : ids) {
             userMapper.deleteById(id);
+            userCacheService.removeCachedUserInfo(id.longValue());
+            userCacheService.removeCachedUserToken(id.longValue());
         }
     }
 
@@ -216,23 +215,18 @@ public class UserService {
     }
 
     /**
-     * 根据ID获取用户
+     * 根据ID获取用户，先读缓存，未命中时查询数据库并写入缓存
+     * 不包含预订数量，供请求认证等只需要用户本身信息的地方使用
      */
-    public User getUserById(Long id) {
-        // 先从缓存中获取
-        User cachedUser = userCacheService.getCachedUserInfo(id);
-        if (cachedUser != null) {
-            // 获取用户的预订数量（这个信息变化频繁，不缓存）
-            Integer reservationCount = Math.toIntExact(reservationMapper.selectCount(
-                    new LambdaQueryWrapper<Reservation>()
-                            .eq(Reservation::getUserId, id)
-            ));
-            cachedUser.setReservationCount(reservationCount);
-            return cachedUser;
-        }
-
-        // 缓存中没有，从数据库获取
-        User user = userMapper.selectById(id);
+    public User getCachedUser(Long id) {
+        User user = userCacheService.getCachedUserInfo(id);
+        if (user != null) {
+            return user;
+        }
+
+        // 缓存中没有，先读版本号再从数据库获取
+        String version = userCacheService.getUserInfoVersion(id);
+        user = userMapper.selectById(id);
         if (user == null) {
             throw new ServiceException("用户不存在");
         }
@@ -240,16 +234,24 @@ public class UserService {
         // 设置用户角色名称
         user.setRoleName(user.getRoleName());
 
-        // 获取用户的预订数量
+        // 缓存用户信息，加载期间用户被修改时不写回
+        userCacheService.cacheUserInfo(user, version);
+        return user;
+    }
+
+    /**
+     * 根据ID获取用户
+     */
+    public User getUserById(Long id) {
+        User user = getCachedUser(id);
+
+        // 获取用户的预订数量（这个信息变化频繁，不缓存）
         Integer reservationCount = Math.toIntExact(reservationMapper.selectCount(
                 new LambdaQueryWrapper<Reservation>()
                         .eq(Reservation::getUserId, id)
         ));
         user.setReservationCount(reservationCount);
 
-        // 缓存用户信息
-        userCacheService.cacheUserInfo(user);
-
         return user;
     }
 
@@ -1,7 +1,10 @@
 package org.example.springboot.task;
 
 import jakarta.annotation.Resource;
+import org.example.springboot.service.BookingHoldService;
 import org.example.springboot.service.BusinessSyncService;
+import org.example.springboot.service.RoomOccupancyIndex;
+import org.example.springboot.service.StatsRollupService;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
@@ -13,6 +16,15 @@ public class BusinessSyncTask {
     
     @Resource
     private BusinessSyncService businessSyncService;
+
+    @Resource
+    private RoomOccupancyIndex roomOccupancyIndex;
+
+    @Resource
+    private BookingHoldService bookingHoldService;
+
+    @Resource
+    private StatsRollupService statsRollupService;
     
     /**
      * 每小时执行一次状态同步检查
@@ -28,6 +40,18 @@ public class BusinessSyncTask {
         }
     }
     
+    /**
+     * 每30秒释放过期的预订保留
+     */
+    @Scheduled(fixedDelay = 30000)
+    public void releaseExpiredHolds() {
+        try {
+            bookingHoldService.releaseExpiredHolds();
+        } catch (Exception e) {
+            System.err.println("释放过期预订保留失败: " + e.getMessage());
+        }
+    }
+    
     /**
      * 每天凌晨2点执行数据一致性全面检查
      */
@@ -37,9 +61,25 @@ public class BusinessSyncTask {
             System.out.println("开始执行每日数据一致性检查...");
             // 这里可以添加更全面的数据一致性检查逻辑
             businessSyncService.asyncStatusSyncCheck();
+            // 重建房间占用索引，纠正可能的偏差并滚动位图起点
+            roomOccupancyIndex.rebuild();
             System.out.println("每日数据一致性检查完成");
         } catch (Exception e) {
             System.err.println("每日数据一致性检查失败: " + e.getMessage());
         }
     }
+
+    /**
+     * 每天凌晨3点增量汇总每日房型经营数据
+     */
+    @Scheduled(cron = "${hotel.rollup.cron:0 0 3 * * ?}")
+    public void dailyStatsRollup() {
+        try {
+            System.out.println("开始执行每日经营数据汇总...");
+            statsRollupService.rollup();
+            System.out.println("每日经营数据汇总完成");
+        } catch (Exception e) {
+            System.err.println("每日经营数据汇总失败: " + e.getMessage());
+        }
+    }
 }
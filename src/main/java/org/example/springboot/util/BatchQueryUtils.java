@@ -0,0 +1,49 @@
+package org.example.springboot.util;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * 批量查询工具类
+ * 加载列表的关联数据时，先收集整页的关联ID，每张表用一条 IN 查询取回，再在内存中回填，
+ * 查询次数只与关联的表数有关，与列表长度无关
+ */
+public class BatchQueryUtils {
+
+    /**
+     * 收集列表中的非空关联ID（去重，保持顺序）
+     */
+    public static <T, K> Set<K> collectIds(Collection<T> rows, Function<T, K> idGetter) {
+        Set<K> ids = new LinkedHashSet<>();
+        for (T row : rows) {
+            if (row == null) {
+                continue;
+            }
+            K id = idGetter.apply(row);
+            if (id != null) {
+                ids.add(id);
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * 按ID批量查询并转为 ID -> 实体 的映射，ID为空时不查询
+     */
+    public static <T> Map<Long, T> selectByIds(BaseMapper<T> mapper, Collection<Long> ids, Function<T, Long> idGetter) {
+        Map<Long, T> result = new HashMap<>();
+        if (ids.isEmpty()) {
+            return result;
+        }
+        for (T row : mapper.selectBatchIds(ids)) {
+            result.put(idGetter.apply(row), row);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,54 @@
+package org.example.springboot.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * 紧凑编解码器：JSON 编码后再用 Deflate 压缩，适合字段多、文本长的对象，减少 Redis 内存和网络传输
+ */
+public class CompactRedisCodec implements RedisCodec {
+
+    public static final byte ID = 2;
+
+    private final JsonRedisCodec jsonCodec;
+
+    public CompactRedisCodec(JsonRedisCodec jsonCodec) {
+        this.jsonCodec = jsonCodec;
+    }
+
+    @Override
+    public byte getId() {
+        return ID;
+    }
+
+    @Override
+    public String getName() {
+        return "compact";
+    }
+
+    @Override
+    public byte[] encode(Object value) throws IOException {
+        byte[] json = jsonCodec.encode(value);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(json.length / 2 + 16);
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try (DeflaterOutputStream stream = new DeflaterOutputStream(out, deflater)) {
+            stream.write(json);
+        } finally {
+            // 自行创建的 Deflater 不会随流关闭释放本地内存
+            deflater.end();
+        }
+        return out.toByteArray();
+    }
+
+    @Override
+    public <T> T decode(byte[] data, Class<T> type) throws IOException {
+        try (InputStream in = new InflaterInputStream(new ByteArrayInputStream(data))) {
+            return jsonCodec.decode(in.readAllBytes(), type);
+        }
+    }
+}
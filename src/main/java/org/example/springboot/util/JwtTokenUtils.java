@@ -26,6 +26,8 @@ public class JwtTokenUtils {
     @Resource
     private  UserService userService;
     public static final Logger LOGGER = LoggerFactory.getLogger(JwtTokenUtils.class);
+    // 当前请求已解析出的登录用户，同一请求内多次获取时不再重复查询
+    private static final String CURRENT_USER_ATTRIBUTE = JwtTokenUtils.class.getName() + ".currentUser";
     @PostConstruct
     public void setUserService() {
         staticUserService=userService;
@@ -33,6 +35,12 @@ public class JwtTokenUtils {
     public static String genToken(String userId,String sign){
     return JWT.create().withAudience(userId).withExpiresAt(DateUtil.offsetHour(new Date(),2)).sign(Algorithm.HMAC256(sign));
     }
+    /**
+     * 记录当前请求已验证的登录用户，供 getCurrentUser 复用
+     */
+    public static void setCurrentUser(HttpServletRequest request, User user) {
+        request.setAttribute(CURRENT_USER_ATTRIBUTE, user);
+    }
     public static User getCurrentUser(){
         String token=null;
         try {
@@ -47,8 +55,14 @@ public class JwtTokenUtils {
                 return null;
             }
 
+            Object cachedUser = request.getAttribute(CURRENT_USER_ATTRIBUTE);
+            if (cachedUser != null) {
+                return (User) cachedUser;
+            }
             String userId = JWT.decode(token).getAudience().get(0);
-            return staticUserService.getUserById(Long.valueOf(userId));
+            User user = staticUserService.getCachedUser(Long.valueOf(userId));
+            request.setAttribute(CURRENT_USER_ATTRIBUTE, user);
+            return user;
         }catch (Exception e){
             LOGGER.error("获取当前用户信息失败，token{}",token,e);
             return null;
@@ -0,0 +1,77 @@
+package org.example.springboot.util;
+
+import org.example.springboot.exception.ServiceException;
+
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 列表查询的字段投影
+ * 按请求的 fields 参数从字段白名单中生成 SELECT 列表，只查询需要的列，并记录用到的表别名，
+ * 供 mapper XML 判断是否需要连接对应的表
+ */
+public class Projection {
+
+    // 请求该值时返回投影的全部字段
+    public static final String ALL_FIELDS = "summary";
+
+    private final String columns;
+
+    private final Set<String> aliases;
+
+    private Projection(String columns, Set<String> aliases) {
+        this.columns = columns;
+        this.aliases = aliases;
+    }
+
+    /**
+     * 根据 fields 参数生成投影
+     * @param columnsByField 字段名 -> 列（表别名.列名），ID 字段必须是第一个
+     * @param fields 逗号分隔的字段名，或 summary 表示全部字段；ID 总是返回
+     */
+    public static Projection of(Map<String, String> columnsByField, String fields) {
+        Set<String> selected = new LinkedHashSet<>();
+        selected.add(columnsByField.keySet().iterator().next());
+        if (ALL_FIELDS.equals(fields.trim())) {
+            selected.addAll(columnsByField.keySet());
+        } else {
+            for (String field : fields.split(",")) {
+                String name = field.trim();
+                if (name.isEmpty()) {
+                    continue;
+                }
+                if (!columnsByField.containsKey(name)) {
+                    throw new ServiceException("不支持的字段：" + name);
+                }
+                selected.add(name);
+            }
+        }
+
+        StringBuilder columns = new StringBuilder();
+        Set<String> aliases = new LinkedHashSet<>();
+        for (String field : selected) {
+            String column = columnsByField.get(field);
+            if (columns.length() > 0) {
+                columns.append(", ");
+            }
+            columns.append(column).append(" AS ").append(field);
+            aliases.add(column.substring(0, column.indexOf('.')));
+        }
+        return new Projection(columns.toString(), aliases);
+    }
+
+    /**
+     * SELECT 列表，字段名来自白名单，可以直接拼入 SQL
+     */
+    public String getColumns() {
+        return columns;
+    }
+
+    /**
+     * 投影是否用到指定别名的表
+     */
+    public boolean uses(String alias) {
+        return aliases.contains(alias);
+    }
+}
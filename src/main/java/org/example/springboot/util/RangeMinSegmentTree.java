@@ -0,0 +1,106 @@
+package org.example.springboot.util;
+
+/**
+ * 区间加、区间最小值线段树（懒标记）
+ * 下标范围为 [0, size)，所有区间参数均为左闭右开
+ * 非线程安全，由调用方负责同步
+ */
+public class RangeMinSegmentTree {
+    private final int size;
+    private final int[] min;
+    private final int[] lazy;
+
+    /**
+     * 用初始值构建线段树
+     * @param values 初始值
+     */
+    public RangeMinSegmentTree(int[] values) {
+        this.size = values.length;
+        this.min = new int[Math.max(1, 4 * size)];
+        this.lazy = new int[Math.max(1, 4 * size)];
+        if (size > 0) {
+            build(1, 0, size, values);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 区间 [from, to) 内每个值加上 delta
+     */
+    public void add(int from, int to, int delta) {
+        from = Math.max(0, from);
+        to = Math.min(size, to);
+        if (from >= to || delta == 0) {
+            return;
+        }
+        add(1, 0, size, from, to, delta);
+    }
+
+    /**
+     * 查询区间 [from, to) 内的最小值
+     * @throws IllegalArgumentException 区间为空或越界
+     */
+    public int min(int from, int to) {
+        if (from < 0 || to > size || from >= to) {
+            throw new IllegalArgumentException("invalid range [" + from + ", " + to + ") for size " + size);
+        }
+        return min(1, 0, size, from, to);
+    }
+
+    private void build(int node, int left, int right, int[] values) {
+        if (right - left == 1) {
+            min[node] = values[left];
+            return;
+        }
+        int mid = (left + right) >>> 1;
+        build(node * 2, left, mid, values);
+        build(node * 2 + 1, mid, right, values);
+        min[node] = Math.min(min[node * 2], min[node * 2 + 1]);
+    }
+
+    private void add(int node, int left, int right, int from, int to, int delta) {
+        if (from <= left && right <= to) {
+            min[node] += delta;
+            lazy[node] += delta;
+            return;
+        }
+        pushDown(node);
+        int mid = (left + right) >>> 1;
+        if (from < mid) {
+            add(node * 2, left, mid, from, to, delta);
+        }
+        if (to > mid) {
+            add(node * 2 + 1, mid, right, from, to, delta);
+        }
+        min[node] = Math.min(min[node * 2], min[node * 2 + 1]);
+    }
+
+    private int min(int node, int left, int right, int from, int to) {
+        if (from <= left && right <= to) {
+            return min[node];
+        }
+        pushDown(node);
+        int mid = (left + right) >>> 1;
+        int result = Integer.MAX_VALUE;
+        if (from < mid) {
+            result = Math.min(result, min(node * 2, left, mid, from, to));
+        }
+        if (to > mid) {
+            result = Math.min(result, min(node * 2 + 1, mid, right, from, to));
+        }
+        return result;
+    }
+
+    private void pushDown(int node) {
+        if (lazy[node] != 0) {
+            for (int child = node * 2; child <= node * 2 + 1; child++) {
+                min[child] += lazy[node];
+                lazy[child] += lazy[node];
+            }
+            lazy[node] = 0;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package org.example.springboot.util;
+
+import java.io.IOException;
+
+/**
+ * Redis 值编解码器
+ * RedisService 用配置的编解码器编码对象并在前面加上版本头，读取时按版本头中的编解码器ID选择解码器，
+ * 切换编解码器后已写入的旧值仍然可以读取
+ */
+public interface RedisCodec {
+
+    /**
+     * 写入版本头的编解码器ID，不同编解码器不能重复
+     */
+    byte getId();
+
+    /**
+     * 配置项 hotel.redis.codec 使用的名称
+     */
+    String getName();
+
+    byte[] encode(Object value) throws IOException;
+
+    <T> T decode(byte[] data, Class<T> type) throws IOException;
+}
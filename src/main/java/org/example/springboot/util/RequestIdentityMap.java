@@ -0,0 +1,79 @@
+package org.example.springboot.util;
+
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 请求级一级缓存（身份映射）
+ * 同一请求内按ID查询同一行时只访问一次数据库，后续直接返回第一次查到的对象；
+ * 通过同一 Mapper 写入时清空该 Mapper 的缓存。
+ * 只在 Web 请求线程中生效，定时任务等没有请求上下文的线程不缓存。
+ * 缓存不感知其他请求的并发写入，需要读到最新数据的地方应在加锁后用条件更新或查询校验。
+ */
+public class RequestIdentityMap {
+
+    private static final String ATTRIBUTE_NAME = RequestIdentityMap.class.getName();
+
+    // Mapper 命名空间 -> (ID -> 查询结果)
+    private final Map<String, Map<String, List<Object>>> entries = new HashMap<>();
+
+    private int hits;
+
+    private int misses;
+
+    /**
+     * 获取当前请求的缓存
+     * @param create 不存在时是否创建
+     * @return 当前请求的缓存；不在请求线程中或未创建时返回 null
+     */
+    public static RequestIdentityMap current(boolean create) {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            return null;
+        }
+        RequestIdentityMap identityMap = (RequestIdentityMap) attributes.getAttribute(ATTRIBUTE_NAME, RequestAttributes.SCOPE_REQUEST);
+        if (identityMap == null && create) {
+            identityMap = new RequestIdentityMap();
+            attributes.setAttribute(ATTRIBUTE_NAME, identityMap, RequestAttributes.SCOPE_REQUEST);
+        }
+        return identityMap;
+    }
+
+    /**
+     * 查找缓存的查询结果，同时记录命中或未命中
+     * @return 查询结果；未缓存返回 null
+     */
+    public synchronized List<Object> get(String namespace, Object id) {
+        Map<String, List<Object>> rows = entries.get(namespace);
+        List<Object> result = rows == null ? null : rows.get(String.valueOf(id));
+        if (result == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return result;
+    }
+
+    public synchronized void put(String namespace, Object id, List<Object> result) {
+        entries.computeIfAbsent(namespace, key -> new HashMap<>()).put(String.valueOf(id), result);
+    }
+
+    /**
+     * 清空一个 Mapper 的缓存
+     */
+    public synchronized void invalidate(String namespace) {
+        entries.remove(namespace);
+    }
+
+    public synchronized int getHits() {
+        return hits;
+    }
+
+    public synchronized int getMisses() {
+        return misses;
+    }
+}
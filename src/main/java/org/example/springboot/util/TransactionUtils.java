@@ -0,0 +1,52 @@
+package org.example.springboot.util;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * 事务工具类
+ * 用于把内存状态的维护推迟到数据库事务提交之后，避免事务回滚后内存与数据库不一致
+ */
+public class TransactionUtils {
+
+    /**
+     * 在当前事务提交后执行；若当前没有事务则立即执行
+     * @param action 要执行的操作
+     */
+    public static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * 在当前事务结束（提交或回滚）后执行；若当前没有事务则立即执行
+     * @param action 要执行的操作
+     */
+    public static void afterCompletion(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * 当前是否处于可注册回调的事务中
+     */
+    public static boolean isInTransaction() {
+        return TransactionSynchronizationManager.isSynchronizationActive();
+    }
+}
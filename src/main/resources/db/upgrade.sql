@@ -0,0 +1,86 @@
+-- 增量表结构，应用启动时执行，所有语句均可重复执行
+
+-- 房间栅栏令牌：拒绝分布式锁租约已过期的旧持有者写入预订，按租约的日期分段各自记录
+CREATE TABLE IF NOT EXISTS room_fence (
+    room_id BIGINT NOT NULL COMMENT '房间ID',
+    stripe BIGINT NOT NULL COMMENT '租约分段（epochDay / stripe-days）',
+    fence_token BIGINT NOT NULL DEFAULT 0 COMMENT '最近一次写入使用的栅栏令牌',
+    update_time DATETIME DEFAULT CURRENT_TIMESTAMP COMMENT '更新时间',
+    PRIMARY KEY (room_id, stripe)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='房间栅栏令牌';
+
+-- 预订房晚占用：有效预订的每一晚一行，唯一键保证同一房间同一晚只能被一个预订占用
+CREATE TABLE IF NOT EXISTS reservation_night (
+    room_id BIGINT NOT NULL COMMENT '房间ID',
+    night DATE NOT NULL COMMENT '入住的某一晚',
+    reservation_id BIGINT NOT NULL COMMENT '预订ID',
+    PRIMARY KEY (room_id, night),
+    KEY idx_reservation_night_reservation (reservation_id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='预订房晚占用';
+
+-- 为已有的有效预订补齐房晚占用（已存在的行忽略）
+-- 递归深度等于最长的入住天数，放宽默认的1000层限制，避免长住预订导致启动失败
+SET SESSION cte_max_recursion_depth = 10000;
+INSERT IGNORE INTO reservation_night (room_id, night, reservation_id)
+WITH RECURSIVE nights (reservation_id, room_id, night, end_date) AS (
+    SELECT id, room_id, start_date, end_date FROM reservation
+    WHERE status IN (0, 1) AND end_date > start_date AND end_date >= CURDATE()
+    UNION ALL
+    SELECT reservation_id, room_id, night + INTERVAL 1 DAY, end_date FROM nights
+    WHERE night + INTERVAL 1 DAY < end_date
+)
+SELECT room_id, night, reservation_id FROM nights;
+
+-- 房型评分汇总：只统计显示中的评价，随评价的创建、修改、状态变更和删除增量更新
+CREATE TABLE IF NOT EXISTS room_type_rating (
+    room_type_id BIGINT NOT NULL COMMENT '房型ID',
+    review_count INT NOT NULL DEFAULT 0 COMMENT '显示中的评价数',
+    score_sum BIGINT NOT NULL DEFAULT 0 COMMENT '评分总和',
+    score1 INT NOT NULL DEFAULT 0 COMMENT '1星评价数',
+    score2 INT NOT NULL DEFAULT 0 COMMENT '2星评价数',
+    score3 INT NOT NULL DEFAULT 0 COMMENT '3星评价数',
+    score4 INT NOT NULL DEFAULT 0 COMMENT '4星评价数',
+    score5 INT NOT NULL DEFAULT 0 COMMENT '5星评价数',
+    update_time DATETIME DEFAULT CURRENT_TIMESTAMP COMMENT '更新时间',
+    PRIMARY KEY (room_type_id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='房型评分汇总';
+
+-- 为已有评价的房型补齐评分汇总（已存在的行忽略）
+INSERT IGNORE INTO room_type_rating (room_type_id, review_count, score_sum, score1, score2, score3, score4, score5)
+SELECT room_type_id, COUNT(*), SUM(score),
+       SUM(score = 1), SUM(score = 2), SUM(score = 3), SUM(score = 4), SUM(score = 5)
+FROM review
+WHERE status = 1 AND room_type_id IS NOT NULL
+GROUP BY room_type_id;
+
+-- 每日房型经营汇总：按入住的每一晚和房型统计，由定时任务按水位线增量重算，趋势查询只读这张表
+CREATE TABLE IF NOT EXISTS daily_room_type_stats (
+    stat_date DATE NOT NULL COMMENT '统计日期（入住的某一晚）',
+    room_type_id BIGINT NOT NULL COMMENT '房型ID',
+    nights_sold INT NOT NULL DEFAULT 0 COMMENT '售出房晚数（未取消的预订）',
+    revenue DECIMAL(12,2) NOT NULL DEFAULT 0 COMMENT '房费收入（预订金额按晚均摊）',
+    cancelled_nights INT NOT NULL DEFAULT 0 COMMENT '已取消预订的房晚数',
+    refunded_nights INT NOT NULL DEFAULT 0 COMMENT '有退款订单的房晚数',
+    refund_amount DECIMAL(12,2) NOT NULL DEFAULT 0 COMMENT '退款金额（按晚均摊）',
+    update_time DATETIME DEFAULT CURRENT_TIMESTAMP COMMENT '汇总时间',
+    PRIMARY KEY (stat_date, room_type_id),
+    KEY idx_daily_room_type_stats_type (room_type_id, stat_date)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='每日房型经营汇总';
+
+-- 汇总任务的水位线：记录已汇总到的数据更新时间，没有记录时首次运行全量汇总
+CREATE TABLE IF NOT EXISTS rollup_watermark (
+    name VARCHAR(64) NOT NULL COMMENT '汇总任务名称',
+    watermark DATETIME NOT NULL COMMENT '已汇总到的数据更新时间',
+    update_time DATETIME DEFAULT CURRENT_TIMESTAMP COMMENT '更新时间',
+    PRIMARY KEY (name)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='汇总任务水位线';
+
+-- 汇总待重算的日期范围：预订改期或缩短时记录原日期范围，下次增量汇总一并重算，之后删除已处理的记录
+CREATE TABLE IF NOT EXISTS rollup_dirty_range (
+    id BIGINT NOT NULL AUTO_INCREMENT COMMENT '主键',
+    start_date DATE NOT NULL COMMENT '开始日期（含）',
+    end_date DATE NOT NULL COMMENT '结束日期（不含）',
+    create_time DATETIME DEFAULT CURRENT_TIMESTAMP COMMENT '记录时间',
+    PRIMARY KEY (id),
+    KEY idx_rollup_dirty_range_time (create_time)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='汇总待重算的日期范围';
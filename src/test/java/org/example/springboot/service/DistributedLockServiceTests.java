@@ -0,0 +1,247 @@
+package org.example.springboot.service;
+
+import org.example.springboot.exception.ServiceException;
+import org.example.springboot.mapper.RoomFenceMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 用进程内锁存储模拟两个节点争抢同一房间
+ */
+class DistributedLockServiceTests {
+
+    private final InMemoryLockStore sharedStore = new InMemoryLockStore();
+    private final List<DistributedLockService> nodes = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        nodes.forEach(DistributedLockService::shutdown);
+    }
+
+    private DistributedLockService node(long leaseMillis, long timeoutMillis) {
+        DistributedLockService node = new DistributedLockService(sharedStore, leaseMillis, timeoutMillis);
+        nodes.add(node);
+        return node;
+    }
+
+    @Test
+    void twoNodesNeverBookTheSameRoomTwice() throws Exception {
+        DistributedLockService[] cluster = {node(2000, 10000), node(2000, 10000)};
+        List<Integer> bookings = new ArrayList<>();
+        AtomicInteger inCriticalSection = new AtomicInteger();
+        AtomicInteger maxConcurrent = new AtomicInteger();
+
+        int requests = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(requests);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(requests);
+        for (int i = 0; i < requests; i++) {
+            int requestId = i;
+            DistributedLockService node = cluster[i % 2];
+            executor.execute(() -> {
+                try {
+                    start.await();
+                    try (DistributedLockService.DistributedLock ignored = node.lock("room:1")) {
+                        maxConcurrent.accumulateAndGet(inCriticalSection.incrementAndGet(), Math::max);
+                        // 检查后写入，中间留出竞争窗口
+                        boolean free = bookings.isEmpty();
+                        Thread.sleep(5);
+                        if (free) {
+                            bookings.add(requestId);
+                        }
+                        inCriticalSection.decrementAndGet();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        start.countDown();
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        executor.shutdown();
+
+        assertEquals(1, bookings.size());
+        assertEquals(1, maxConcurrent.get());
+    }
+
+    @Test
+    void renewalKeepsLeaseAlive() throws Exception {
+        DistributedLockService nodeA = node(150, 100);
+        DistributedLockService nodeB = node(150, 100);
+
+        DistributedLockService.DistributedLock lock = nodeA.lock("room:2");
+        Thread.sleep(500);
+        assertThrows(ServiceException.class, () -> nodeB.lock("room:2"));
+
+        lock.close();
+        nodeB.lock("room:2").close();
+    }
+
+    @Test
+    void staleHolderIsFencedOut() throws Exception {
+        FakeRoomFenceMapper fenceTable = new FakeRoomFenceMapper();
+        PausableLockStore pausableStore = new PausableLockStore(sharedStore);
+        DistributedLockService nodeA = new DistributedLockService(pausableStore, 60, 0);
+        nodes.add(nodeA);
+        DistributedLockService nodeB = node(1000, 1000);
+
+        // 节点A获取锁后长时间停顿，续约发不出去，租约过期
+        DistributedLockService.DistributedLock lockA = nodeA.lock("room:3");
+        pausableStore.paused = true;
+        Thread.sleep(150);
+        pausableStore.paused = false;
+
+        // 节点B获取到同一把锁并先完成写入
+        DistributedLockService.DistributedLock lockB = nodeB.lock("room:3");
+        assertTrue(lockB.getFence() > lockA.getFence());
+        assertTrue(fenceService(fenceTable, nodeB).advance(3L, 0, lockB));
+
+        // 节点A恢复后写入被拒绝，也不能换发新令牌
+        assertFalse(fenceService(fenceTable, nodeA).advance(3L, 0, lockA));
+        assertEquals(lockB.getFence(), fenceTable.fences.get("3:0"));
+        lockA.close();
+        lockB.close();
+        nodeB.lock("room:3").close();
+    }
+
+    @Test
+    void fenceCounterLossDoesNotLockRoomOut() {
+        FakeRoomFenceMapper fenceTable = new FakeRoomFenceMapper();
+        DistributedLockService before = node(1000, 1000);
+        for (int i = 0; i < 3; i++) {
+            try (DistributedLockService.DistributedLock lock = before.lock("room:4")) {
+                assertTrue(fenceService(fenceTable, before).advance(4L, 0, lock));
+            }
+        }
+        long recorded = fenceTable.fences.get("4:0");
+
+        // 锁存储被清空（如 Redis 重启且未持久化），计数器从头开始
+        DistributedLockService after = new DistributedLockService(new InMemoryLockStore(), 1000, 1000);
+        nodes.add(after);
+        try (DistributedLockService.DistributedLock lock = after.lock("room:4")) {
+            assertTrue(lock.getFence() <= recorded);
+            assertTrue(fenceService(fenceTable, after).advance(4L, 0, lock));
+            assertTrue(lock.getFence() > recorded);
+        }
+        // 之后的令牌直接大于记录，不再需要换发
+        try (DistributedLockService.DistributedLock lock = after.lock("room:4")) {
+            assertTrue(lock.getFence() > fenceTable.fences.get("4:0"));
+            assertTrue(fenceService(fenceTable, after).advance(4L, 0, lock));
+        }
+    }
+
+    @Test
+    void leasesOnlyBlockOverlappingStripes() {
+        RoomFenceService nodeA = fenceService(new FakeRoomFenceMapper(), node(1000, 0));
+        RoomFenceService nodeB = fenceService(new FakeRoomFenceMapper(), node(1000, 0));
+        LocalDate stripeStart = LocalDate.ofEpochDay(7L * 2935);
+
+        try (RoomFenceService.RoomLease ignored = nodeA.tryLease(5L, stripeStart, stripeStart.plusDays(2), 0)) {
+            // 同一分段内的区间互斥
+            assertNull(nodeB.tryLease(5L, stripeStart.plusDays(3), stripeStart.plusDays(4), 0));
+            // 跨入已锁定分段的区间也被拒绝，且不会残留已获取的下一分段
+            assertNull(nodeB.tryLease(5L, stripeStart.minusDays(1), stripeStart.plusDays(1), 0));
+            RoomFenceService.RoomLease previousWeek = nodeB.tryLease(5L, stripeStart.minusDays(3), stripeStart, 0);
+            assertNotNull(previousWeek);
+            previousWeek.close();
+            // 下一分段的预订与之并行
+            RoomFenceService.RoomLease nextWeek = nodeB.tryLease(5L, stripeStart.plusDays(7), stripeStart.plusDays(9), 0);
+            assertNotNull(nextWeek);
+            nextWeek.close();
+        }
+        nodeB.tryLease(5L, stripeStart, stripeStart.plusDays(1), 0).close();
+    }
+
+    private static RoomFenceService fenceService(RoomFenceMapper mapper, DistributedLockService lockService) {
+        RoomFenceService service = new RoomFenceService();
+        ReflectionTestUtils.setField(service, "roomFenceMapper", mapper);
+        ReflectionTestUtils.setField(service, "distributedLockService", lockService);
+        ReflectionTestUtils.setField(service, "stripeDays", 7);
+        return service;
+    }
+
+    /**
+     * 按 room_fence 表的语义模拟栅栏记录：只接受比已记录令牌更大的写入
+     */
+    private static final class FakeRoomFenceMapper implements RoomFenceMapper {
+        private final Map<String, Long> fences = new ConcurrentHashMap<>();
+
+        @Override
+        public int init(Long roomId, long stripe) {
+            return fences.putIfAbsent(roomId + ":" + stripe, 0L) == null ? 1 : 0;
+        }
+
+        @Override
+        public synchronized int advance(Long roomId, long stripe, long fenceToken) {
+            Long current = fences.get(roomId + ":" + stripe);
+            if (current == null || current >= fenceToken) {
+                return 0;
+            }
+            fences.put(roomId + ":" + stripe, fenceToken);
+            return 1;
+        }
+
+        @Override
+        public Long selectFenceForUpdate(Long roomId, long stripe) {
+            return fences.get(roomId + ":" + stripe);
+        }
+    }
+
+    /**
+     * 模拟节点停顿：停顿期间续约请求发不出去
+     */
+    private static final class PausableLockStore implements LockStore {
+        private final LockStore delegate;
+        private volatile boolean paused;
+
+        private PausableLockStore(LockStore delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public boolean tryAcquire(String key, String token, long leaseMillis) {
+            return delegate.tryAcquire(key, token, leaseMillis);
+        }
+
+        @Override
+        public boolean release(String key, String token) {
+            return delegate.release(key, token);
+        }
+
+        @Override
+        public boolean renew(String key, String token, long leaseMillis) {
+            return !paused && delegate.renew(key, token, leaseMillis);
+        }
+
+        @Override
+        public long nextFence(String key) {
+            return delegate.nextFence(key);
+        }
+
+        @Override
+        public void raiseFence(String key, long floor) {
+            delegate.raiseFence(key, floor);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package org.example.springboot.service;
+
+import org.example.springboot.entity.Reservation;
+import org.example.springboot.entity.Room;
+import org.example.springboot.mapper.ReservationMapper;
+import org.example.springboot.mapper.RoomMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 用两间同房型的房间验证日历给出的是整段都空闲的房间数，而不是每晚空闲数的最小值
+ */
+class RoomAvailabilityCalendarTests {
+
+    private static final long ROOM_TYPE_ID = 1L;
+    private static final long OTHER_ROOM_TYPE_ID = 2L;
+
+    private final LocalDate night1 = LocalDate.now().plusDays(1);
+    private final LocalDate night2 = night1.plusDays(1);
+    private final LocalDate night3 = night2.plusDays(1);
+
+    private final List<Reservation> reservations = new ArrayList<>();
+    private RoomOccupancyIndex index;
+    private RoomAvailabilityCalendar calendar;
+
+    @BeforeEach
+    void setUp() {
+        ReservationMapper reservationMapper = mock(ReservationMapper.class);
+        when(reservationMapper.selectList(any())).thenReturn(reservations);
+        RoomMapper roomMapper = mock(RoomMapper.class);
+        when(roomMapper.selectList(any())).thenReturn(List.of(room(10L, ROOM_TYPE_ID), room(11L, ROOM_TYPE_ID), room(20L, OTHER_ROOM_TYPE_ID)));
+
+        index = new RoomOccupancyIndex();
+        ReflectionTestUtils.setField(index, "reservationMapper", reservationMapper);
+        calendar = new RoomAvailabilityCalendar();
+        ReflectionTestUtils.setField(calendar, "roomMapper", roomMapper);
+        ReflectionTestUtils.setField(calendar, "roomOccupancyIndex", index);
+        ReflectionTestUtils.setField(calendar, "horizonDays", 30);
+        calendar.init();
+    }
+
+    @Test
+    void roomsBookedOnDifferentNightsLeaveNoRoomForTheWholeStay() {
+        // 房间A第1晚已订，房间B第2晚已订：每晚各空1间，但没有一间两晚都空
+        reservations.add(reservation(1L, 10L, night1, night2));
+        reservations.add(reservation(2L, 11L, night2, night3));
+        index.rebuild();
+
+        assertArrayEquals(new int[]{1, 1}, calendar.getDailyAvailability(ROOM_TYPE_ID, night1, night3));
+        assertEquals(0, calendar.countAvailable(ROOM_TYPE_ID, night1, night3));
+        assertEquals(Map.of(ROOM_TYPE_ID, 0, OTHER_ROOM_TYPE_ID, 1), calendar.countAvailableByType(night1, night3));
+        assertEquals(1, calendar.countAvailable(ROOM_TYPE_ID, night1, night2));
+    }
+
+    @Test
+    void searchCountsEveryRoomTypeInOnePass() {
+        // 房型1的房间A整段已订，房型2的房间只订了第2晚
+        reservations.add(reservation(1L, 10L, night1, night3));
+        reservations.add(reservation(2L, 20L, night2, night3));
+        index.rebuild();
+
+        assertEquals(Map.of(ROOM_TYPE_ID, 1, OTHER_ROOM_TYPE_ID, 0), calendar.countAvailableByType(night1, night3));
+        assertEquals(Map.of(ROOM_TYPE_ID, 1, OTHER_ROOM_TYPE_ID, 1), calendar.countAvailableByType(night1, night2));
+    }
+
+    @Test
+    void incrementalChangesKeepCountsExact() {
+        index.rebuild();
+        assertEquals(2, calendar.countAvailable(ROOM_TYPE_ID, night1, night3));
+
+        index.occupy(1L, 10L, night1, night2);
+        index.occupy(2L, 11L, night2, night3);
+        assertEquals(0, calendar.countAvailable(ROOM_TYPE_ID, night1, night3));
+
+        index.release(2L);
+        assertEquals(1, calendar.countAvailable(ROOM_TYPE_ID, night1, night3));
+    }
+
+    private static Room room(Long id, Long roomTypeId) {
+        Room room = new Room();
+        room.setId(id);
+        room.setRoomTypeId(roomTypeId);
+        return room;
+    }
+
+    private static Reservation reservation(Long id, Long roomId, LocalDate startDate, LocalDate endDate) {
+        Reservation reservation = new Reservation();
+        reservation.setId(id);
+        reservation.setRoomId(roomId);
+        reservation.setStartDate(startDate);
+        reservation.setEndDate(endDate);
+        reservation.setStatus(1);
+        return reservation;
+    }
+}